@@ -0,0 +1,36 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.CacheEstatisticasService;
+
+/**
+ * Caches Caffeine das consultas de estatísticas. Tamanho e TTL vêm de estatisticas.cache.spec;
+ * o TTL é só o limite de segurança, a invalidação normal é feita nas gravações
+ * (ver {@link CacheEstatisticasService}).
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheConfig.class);
+
+    @Value("${estatisticas.cache.spec:maximumSize=1000,expireAfterWrite=60s,recordStats}")
+    private String especificacao;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(CacheEstatisticasService.CACHES);
+        cacheManager.setCacheSpecification(especificacao);
+        cacheManager.setAllowNullValues(false);
+        logger.info("Caches de estatísticas: {} ({})", String.join(", ", CacheEstatisticasService.CACHES), especificacao);
+        return cacheManager;
+    }
+}
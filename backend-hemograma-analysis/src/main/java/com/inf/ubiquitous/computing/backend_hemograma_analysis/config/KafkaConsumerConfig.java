@@ -2,13 +2,19 @@ package com.inf.ubiquitous.computing.backend_hemograma_analysis.config;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
-import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.serializacao.NotificacaoHivDeserializer;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.NotificacaoRetryService;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -17,23 +23,26 @@ import java.util.Map;
 @Configuration
 public class KafkaConsumerConfig {
 
+    @Value("${notificacao.consumer.max-poll-records:500}")
+    private int maxPollRecords;
+
     @Bean
     public ConsumerFactory<String, Object> consumerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
         configProps.put(ConsumerConfig.GROUP_ID_CONFIG, "notificacao-consumer-group");
         configProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
-
-        // Configurações do JsonDeserializer
-        configProps.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
-        configProps.put(JsonDeserializer.VALUE_DEFAULT_TYPE,
-                "com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.NotificacaoHivDto");
+        // Payload que não desserializa chega como valor nulo (com a exceção no header) em vez de travar o poll
+        configProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        // Binário com esquema (NotificacaoHivCodec), com fallback para o JSON das mensagens antigas
+        configProps.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, NotificacaoHivDeserializer.class);
 
         // Configurações adicionais
         configProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         configProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
-        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 10);
+        configProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        // Só lê mensagens de transações confirmadas (produtor transacional)
+        configProps.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
 
         return new DefaultKafkaConsumerFactory<>(configProps);
     }
@@ -48,4 +57,27 @@ public class KafkaConsumerConfig {
                 org.springframework.kafka.listener.ContainerProperties.AckMode.MANUAL);
         return factory;
     }
-}
\ No newline at end of file
+
+    /**
+     * Listeners em lote: recebem o poll inteiro (até max-poll-records) e confirmam uma vez só
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaBatchListenerContainerFactory(
+            NotificacaoRetryService retryService) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(3);
+        factory.setBatchListener(true);
+        // Falhas por registro já vão para os tópicos de retry; aqui só chega erro do próprio Kafka
+        // (ex.: envio ao retry falhou). Tenta o lote algumas vezes e depois manda para o DLT, sem travar a partição
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(5);
+        backOff.setInitialInterval(1000);
+        backOff.setMultiplier(2.0);
+        backOff.setMaxInterval(30000);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(retryService.getRecuperadorDlt(), backOff));
+        factory.getContainerProperties().setAckMode(
+                org.springframework.kafka.listener.ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+}
@@ -2,21 +2,87 @@ package com.inf.ubiquitous.computing.backend_hemograma_analysis.config;
 
 import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.serializacao.NotificacaoHivSerializer;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.NotificacaoRetryService;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem.DetectorTriagem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 @Configuration
 public class KafkaProducerConfig {
 
+    /**
+     * Perfis do produtor de notificações. Todos mantêm o produtor idempotente (acks=all, até 5 requisições
+     * em voo); o que muda é quanto o produtor espera para encher um lote e quanto tempo insiste no envio.
+     */
+    public enum PerfilProdutor {
+        // Alerta chega ao consumidor o quanto antes: lote sai assim que a thread de envio pega
+        BAIXA_LATENCIA(0, 16 * 1024, "lz4", 32L * 1024 * 1024, 30_000),
+        // Picos de ingestão: lotes maiores e mais cheios, menos requisições ao broker
+        ALTO_THROUGHPUT(20, 128 * 1024, "lz4", 64L * 1024 * 1024, 120_000),
+        // Broker instável: insiste por mais tempo antes de dar o envio como perdido
+        DURAVEL(5, 32 * 1024, "zstd", 32L * 1024 * 1024, 600_000);
+
+        private final int lingerMs;
+        private final int batchSize;
+        private final String compressao;
+        private final long bufferMemory;
+        private final int deliveryTimeoutMs;
+
+        PerfilProdutor(int lingerMs, int batchSize, String compressao, long bufferMemory, int deliveryTimeoutMs) {
+            this.lingerMs = lingerMs;
+            this.batchSize = batchSize;
+            this.compressao = compressao;
+            this.bufferMemory = bufferMemory;
+            this.deliveryTimeoutMs = deliveryTimeoutMs;
+        }
+
+        /**
+         * @throws IllegalArgumentException se o nome não é de um perfil (aceita "alto-throughput" ou "ALTO_THROUGHPUT")
+         */
+        public static PerfilProdutor porNome(String nome) {
+            try {
+                return valueOf(nome.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Perfil de produtor Kafka desconhecido: " + nome + " (válidos: "
+                        + Arrays.toString(values()).toLowerCase(Locale.ROOT).replace('_', '-') + ")", e);
+            }
+        }
+    }
+
+    @Value("${notificacao.kafka.formato:binario}")
+    private String formato;
+
+    @Value("${notificacao.kafka.perfil:baixa-latencia}")
+    private String perfil;
+
+    // Vazio: usa a compressão do perfil
+    @Value("${notificacao.kafka.compressao:}")
+    private String compressao;
+
+    @Value("${notificacao.kafka.transacional:false}")
+    private boolean transacional;
+
+    @Value("${notificacao.kafka.transaction-id-prefix:notificacao-tx-}")
+    private String prefixoTransacao;
+
     @Bean
     public NewTopic topicEstatisticas() {
         return TopicBuilder.name("estatisticas-hiv")
@@ -25,25 +91,93 @@ public class KafkaProducerConfig {
                 .build();
     }
 
+    /**
+     * Um tópico por detector de triagem (mesma configuração de partições do estatisticas-hiv)
+     */
+    @Bean
+    public KafkaAdmin.NewTopics topicosTriagem(List<DetectorTriagem<?>> detectores) {
+        return new KafkaAdmin.NewTopics(detectores.stream()
+                .map(detector -> TopicBuilder.name(detector.getTopico())
+                        .partitions(5)
+                        .replicas(1)
+                        .build())
+                .toArray(NewTopic[]::new));
+    }
+
+    /**
+     * Retry (um tópico por nível) e dead-letter de cada tópico de notificação
+     */
+    @Bean
+    public KafkaAdmin.NewTopics topicosRetryNotificacao() {
+        List<NewTopic> topicos = new ArrayList<>();
+        for (String topico : NotificacaoRetryService.TOPICOS) {
+            for (int nivel = 0; nivel < NotificacaoRetryService.NIVEIS_RETRY; nivel++) {
+                topicos.add(TopicBuilder.name(NotificacaoRetryService.topicoRetry(topico, nivel))
+                        .partitions(5)
+                        .replicas(1)
+                        .build());
+            }
+            topicos.add(TopicBuilder.name(NotificacaoRetryService.topicoDlt(topico))
+                    .partitions(5)
+                    .replicas(1)
+                    .build());
+        }
+        return new KafkaAdmin.NewTopics(topicos.toArray(NewTopic[]::new));
+    }
+
     @Bean
     public ProducerFactory<String, Object> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
-        
-        // Configurações para ambiente de desenvolvimento
-        configProps.put(ProducerConfig.ACKS_CONFIG, "1");
-        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
-        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, 16384);
-        configProps.put(ProducerConfig.LINGER_MS_CONFIG, 1);
-        configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 33554432);
-        
-        return new DefaultKafkaProducerFactory<>(configProps);
+        // "binario" (padrão): NotificacaoHivCodec; "json" só para rollout com consumidores antigos
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
+                "json".equalsIgnoreCase(formato) ? JsonSerializer.class : NotificacaoHivSerializer.class);
+
+        // Produtor idempotente: retries não duplicam mensagens (exige acks=all e até 5 requisições em voo)
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+
+        // Retries sem limite de tentativas, limitados pelo delivery.timeout.ms do perfil
+        PerfilProdutor perfilProdutor = PerfilProdutor.porNome(perfil);
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, perfilProdutor.lingerMs);
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, perfilProdutor.batchSize);
+        configProps.put(ProducerConfig.BUFFER_MEMORY_CONFIG, perfilProdutor.bufferMemory);
+        configProps.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, perfilProdutor.deliveryTimeoutMs);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG,
+                compressao.isBlank() ? perfilProdutor.compressao : compressao);
+
+        DefaultKafkaProducerFactory<String, Object> factory = new DefaultKafkaProducerFactory<>(configProps);
+        if (transacional) {
+            // Transação só no replay do DLT, junto com os offsets consumidos (ver NotificacaoRetryService)
+            factory.setTransactionIdPrefix(prefixoTransacao);
+        }
+        return factory;
     }
 
+    /**
+     * Envios avulsos (notificações, retry/DLT) não abrem transação mesmo no modo transacional:
+     * sem consumo a confirmar junto, a transação só somaria custo ao send idempotente
+     */
     @Bean
     public KafkaTemplate<String, Object> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+        KafkaTemplate<String, Object> template = new KafkaTemplate<>(producerFactory());
+        template.setAllowNonTransactional(true);
+        return template;
+    }
+
+    /**
+     * Template de bytes crus: leva ao DLT, sem reserializar, payloads que não desserializaram
+     */
+    @Bean
+    public KafkaTemplate<String, byte[]> dltKafkaTemplate() {
+        Map<String, Object> configProps = new HashMap<>();
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(configProps));
     }
 }
\ No newline at end of file
@@ -0,0 +1,96 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.config;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * Pool de conexões compartilhado por todo o tráfego com o HAPI FHIR.
+ * Além do pool padrão do HttpClient 5, mede quanto tempo as requisições esperam
+ * para obter uma conexão (lease) e quantas desistem por timeout.
+ */
+public class PoolConexoesHapi extends PoolingHttpClientConnectionManager {
+
+    private final LongAdder leases = new LongAdder();
+    private final LongAdder leasesTimeout = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final LongAccumulator esperaMaximaNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicLong esperaMaximaJanelaNanos = new AtomicLong();
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest delegate = super.lease(id, route, requestTimeout, state);
+        return new LeaseRequest() {
+            @Override
+            public ConnectionEndpoint get(Timeout timeout)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                long inicio = System.nanoTime();
+                try {
+                    ConnectionEndpoint endpoint = delegate.get(timeout);
+                    leases.increment();
+                    return endpoint;
+                } catch (TimeoutException e) {
+                    leasesTimeout.increment();
+                    throw e;
+                } finally {
+                    registrarEspera(System.nanoTime() - inicio);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return delegate.cancel();
+            }
+        };
+    }
+
+    private void registrarEspera(long nanos) {
+        esperaTotalNanos.add(nanos);
+        esperaMaximaNanos.accumulate(nanos);
+        esperaMaximaJanelaNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Snapshot do pool; a espera máxima "recente" é zerada a cada leitura
+     */
+    public MetricasPool getMetricas() {
+        PoolStats stats = getTotalStats();
+        long totalLeases = leases.sum();
+        long esperaTotal = esperaTotalNanos.sum();
+        double esperaMediaMs = totalLeases == 0 ? 0.0 : esperaTotal / 1_000_000.0 / totalLeases;
+
+        return new MetricasPool(
+                stats.getLeased(),
+                stats.getAvailable(),
+                stats.getPending(),
+                stats.getMax(),
+                getDefaultMaxPerRoute(),
+                totalLeases,
+                leasesTimeout.sum(),
+                esperaMediaMs,
+                esperaMaximaNanos.get() / 1_000_000.0,
+                esperaMaximaJanelaNanos.getAndSet(0) / 1_000_000.0);
+    }
+
+    public record MetricasPool(
+        int conexoesEmUso,
+        int conexoesDisponiveis,
+        int requisicoesAguardando,
+        int maxTotal,
+        int maxPorRota,
+        long totalLeases,
+        long leasesComTimeout,
+        double esperaMediaMs,
+        double esperaMaximaMs,
+        double esperaMaximaRecenteMs
+    ) {}
+}
@@ -1,13 +1,122 @@
 package com.inf.ubiquitous.computing.backend_hemograma_analysis.config;
 
+import java.net.URI;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.io.SocketConfig;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * Cliente HTTP único para o HAPI FHIR: pool de conexões com keep-alive, limites por rota,
+ * timeouts e gzip (descompressão automática do HttpClient 5). Todo RestTemplate injetado
+ * na aplicação reaproveita os sockets deste pool.
+ */
 @Configuration
 public class RestTemplateConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(RestTemplateConfig.class);
+
+    @Value("${hapi.fhir.url:http://localhost:8090/fhir}")
+    private String hapiFhirBaseUrl;
+
+    @Value("${hapi.http.pool.max-total:50}")
+    private int maxTotal;
+
+    @Value("${hapi.http.pool.max-per-route:10}")
+    private int maxPorRota;
+
+    @Value("${hapi.http.pool.max-per-route-hapi:40}")
+    private int maxPorRotaHapi;
+
+    @Value("${hapi.http.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${hapi.http.response-timeout-ms:10000}")
+    private long responseTimeoutMs;
+
+    @Value("${hapi.http.lease-timeout-ms:3000}")
+    private long leaseTimeoutMs;
+
+    @Value("${hapi.http.keep-alive-ms:30000}")
+    private long keepAliveMs;
+
+    @Value("${hapi.http.idle-evict-ms:60000}")
+    private long idleEvictMs;
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public PoolConexoesHapi poolConexoesHapi() {
+        PoolConexoesHapi pool = new PoolConexoesHapi();
+        pool.setMaxTotal(maxTotal);
+        pool.setDefaultMaxPerRoute(maxPorRota);
+        pool.setDefaultSocketConfig(SocketConfig.custom()
+                .setSoTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                .setTcpNoDelay(true)
+                .build());
+        pool.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                .setSocketTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build());
+
+        HttpRoute rotaHapi = rotaHapi();
+        if (rotaHapi != null) {
+            pool.setMaxPerRoute(rotaHapi, maxPorRotaHapi);
+        }
+
+        logger.info("🔌 Pool HTTP do HAPI: maxTotal={}, maxPorRota={}, rota HAPI={} (max {})",
+                maxTotal, maxPorRota, rotaHapi != null ? rotaHapi.getTargetHost() : "-", maxPorRotaHapi);
+        return pool;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient hapiHttpClient(PoolConexoesHapi poolConexoesHapi) {
+        TimeValue keepAlivePadrao = TimeValue.ofMilliseconds(keepAliveMs);
+
+        return HttpClients.custom()
+                .setConnectionManager(poolConexoesHapi)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(leaseTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .setConnectionKeepAlive(keepAlivePadrao)
+                        .build())
+                // Respeita o Keep-Alive do servidor, mas nunca segura o socket além do configurado
+                .setKeepAliveStrategy((response, context) -> {
+                    TimeValue servidor = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return servidor.compareTo(keepAlivePadrao) > 0 ? keepAlivePadrao : servidor;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleEvictMs))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(CloseableHttpClient hapiHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(hapiHttpClient));
+    }
+
+    private HttpRoute rotaHapi() {
+        try {
+            URI uri = URI.create(hapiFhirBaseUrl);
+            boolean https = "https".equalsIgnoreCase(uri.getScheme());
+            int porta = uri.getPort() > 0 ? uri.getPort() : (https ? 443 : 80);
+            return new HttpRoute(new HttpHost(uri.getScheme(), uri.getHost(), porta), null, https);
+        } catch (Exception e) {
+            logger.warn("URL do HAPI inválida para limite por rota: {}", hapiFhirBaseUrl);
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
@@ -18,6 +18,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.RestTemplate;
 
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hapi.service.SyntheticToolHemogramGeneratorService;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.HemogramaDtoMapper;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.HemogramaFhirParserService;
 
 @RestController
@@ -28,6 +29,9 @@ public class ToolsController {
     
     @Autowired
     private HemogramaFhirParserService hemogramaParserService;
+
+    @Autowired
+    private HemogramaDtoMapper hemogramaDtoMapper;
     
     @Autowired
     private RestTemplate restTemplate;
@@ -121,7 +125,7 @@ public class ToolsController {
                     .filter(h -> h.isRiscoHiv())
                     .map(h -> Map.of(
                         "id", h.getObservationId(),
-                        "motivo", h.getMotivoRisco()
+                        "motivo", hemogramaDtoMapper.descreverMotivo(h)
                     ))
                     .toList()
             ));
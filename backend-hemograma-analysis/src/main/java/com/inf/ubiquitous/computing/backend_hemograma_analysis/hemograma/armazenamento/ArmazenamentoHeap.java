@@ -0,0 +1,215 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.armazenamento;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+
+/**
+ * Backend em heap. Além do mapa por ID mantém um índice temporal
+ * (skip list ordenada por dataColeta e ID): inserção e remoção do mais antigo custam O(log n)
+ * e as consultas "mais recentes primeiro" percorrem o índice já ordenado, sem sort.
+ * Os hemogramas com risco HIV têm um sub-índice próprio e um contador, mantidos junto com o buffer.
+ * Escritas passam por um lock único para a capacidade ser exata; leituras não bloqueiam.
+ */
+public class ArmazenamentoHeap implements ArmazenamentoHemogramas {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArmazenamentoHeap.class);
+
+    private final int capacidade;
+
+    private final Map<String, HemogramaCompacto> hemogramaBuffer = new ConcurrentHashMap<>();
+
+    // Mesmo conteúdo do buffer, ordenado do mais antigo para o mais recente
+    private final ConcurrentSkipListMap<ChaveTemporal, HemogramaCompacto> indiceTemporal = new ConcurrentSkipListMap<>();
+
+    // Só os hemogramas com risco HIV, na mesma ordem; listagens de risco custam O(k)
+    private final ConcurrentSkipListMap<ChaveTemporal, HemogramaCompacto> indiceRisco = new ConcurrentSkipListMap<>();
+
+    private final AtomicInteger totalComRisco = new AtomicInteger();
+
+    private final ReentrantLock escrita = new ReentrantLock();
+
+    public ArmazenamentoHeap(int capacidade) {
+        this.capacidade = capacidade;
+    }
+
+    @Override
+    public String getNome() {
+        return "heap";
+    }
+
+    @Override
+    public int getCapacidade() {
+        return capacidade;
+    }
+
+    @Override
+    public void adicionar(HemogramaCompacto hemograma) {
+        escrita.lock();
+        try {
+            HemogramaCompacto anterior = hemogramaBuffer.get(hemograma.getObservationId());
+            if (anterior != null) {
+                desindexar(ChaveTemporal.de(anterior));
+            } else if (hemogramaBuffer.size() >= capacidade) {
+                removeOldestHemograma();
+                logger.warn("Buffer cheio! Removendo hemograma mais antigo. Tamanho: {}", hemogramaBuffer.size());
+            }
+
+            ChaveTemporal chave = ChaveTemporal.de(hemograma);
+            hemogramaBuffer.put(hemograma.getObservationId(), hemograma);
+            indiceTemporal.put(chave, hemograma);
+            if (hemograma.isRiscoHiv()) {
+                indiceRisco.put(chave, hemograma);
+                totalComRisco.incrementAndGet();
+            }
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    @Override
+    public Optional<HemogramaCompacto> buscar(String observationId) {
+        return Optional.ofNullable(hemogramaBuffer.get(observationId));
+    }
+
+    /**
+     * Localizar o cursor custa O(log n) e a página O(limite)
+     */
+    @Override
+    public PaginaHemogramas recentes(int limite, String cursor, boolean apenasComRisco) {
+        ConcurrentSkipListMap<ChaveTemporal, HemogramaCompacto> indice = apenasComRisco ? indiceRisco : indiceTemporal;
+        Map<ChaveTemporal, HemogramaCompacto> visao = cursor == null || cursor.isBlank()
+                ? indice.descendingMap()
+                : indice.headMap(ChaveTemporal.deCursor(cursor), false).descendingMap();
+
+        List<HemogramaCompacto> itens = new ArrayList<>(Math.max(0, Math.min(limite, 1024)));
+        ChaveTemporal ultima = null;
+        for (Map.Entry<ChaveTemporal, HemogramaCompacto> entrada : visao.entrySet()) {
+            if (itens.size() >= limite) {
+                // Ainda há itens depois desta página
+                return new PaginaHemogramas(itens, ultima.cursor());
+            }
+            itens.add(entrada.getValue());
+            ultima = entrada.getKey();
+        }
+        return new PaginaHemogramas(itens, null);
+    }
+
+    @Override
+    public List<HemogramaCompacto> consumirRecentes(int quantidade) {
+        List<HemogramaCompacto> consumidos = new ArrayList<>(Math.max(0, Math.min(quantidade, hemogramaBuffer.size())));
+
+        escrita.lock();
+        try {
+            while (consumidos.size() < quantidade) {
+                Map.Entry<ChaveTemporal, HemogramaCompacto> maisRecente = indiceTemporal.pollLastEntry();
+                if (maisRecente == null) {
+                    break;
+                }
+                hemogramaBuffer.remove(maisRecente.getKey().observationId());
+                desindexarRisco(maisRecente.getKey());
+                consumidos.add(maisRecente.getValue());
+            }
+        } finally {
+            escrita.unlock();
+        }
+        return consumidos;
+    }
+
+    @Override
+    public int limpar() {
+        escrita.lock();
+        try {
+            int tamanhoAnterior = hemogramaBuffer.size();
+            hemogramaBuffer.clear();
+            indiceTemporal.clear();
+            indiceRisco.clear();
+            totalComRisco.set(0);
+            return tamanhoAnterior;
+        } finally {
+            escrita.unlock();
+        }
+    }
+
+    @Override
+    public int total() {
+        return hemogramaBuffer.size();
+    }
+
+    @Override
+    public int totalComRisco() {
+        return totalComRisco.get();
+    }
+
+    /**
+     * Remove o hemograma mais antigo (menor dataColeta; empate decidido pelo ID). Chamar com o lock de escrita.
+     */
+    private void removeOldestHemograma() {
+        Map.Entry<ChaveTemporal, HemogramaCompacto> oldest = indiceTemporal.pollFirstEntry();
+        if (oldest != null) {
+            hemogramaBuffer.remove(oldest.getKey().observationId());
+            desindexarRisco(oldest.getKey());
+            logger.debug("Removido hemograma antigo: {}", oldest.getKey().observationId());
+        }
+    }
+
+    /**
+     * Tira a chave dos dois índices. Chamar com o lock de escrita.
+     */
+    private void desindexar(ChaveTemporal chave) {
+        indiceTemporal.remove(chave);
+        desindexarRisco(chave);
+    }
+
+    private void desindexarRisco(ChaveTemporal chave) {
+        if (indiceRisco.remove(chave) != null) {
+            totalComRisco.decrementAndGet();
+        }
+    }
+
+    /**
+     * Chave do índice temporal: dataColeta e, em caso de empate, o ID (ordem determinística)
+     */
+    private record ChaveTemporal(long dataColeta, String observationId) implements Comparable<ChaveTemporal> {
+
+        static ChaveTemporal de(HemogramaCompacto h) {
+            return new ChaveTemporal(h.getDataColetaMillis(), h.getObservationId());
+        }
+
+        /**
+         * Cursor opaco para paginação: "dataColeta:observationId" em Base64 URL-safe
+         */
+        String cursor() {
+            String bruto = dataColeta + ":" + observationId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bruto.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static ChaveTemporal deCursor(String cursor) {
+            try {
+                String bruto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separador = bruto.indexOf(':');
+                return new ChaveTemporal(Long.parseLong(bruto.substring(0, separador)), bruto.substring(separador + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor, e);
+            }
+        }
+
+        @Override
+        public int compareTo(ChaveTemporal outra) {
+            int cmp = Long.compare(dataColeta, outra.dataColeta);
+            return cmp != 0 ? cmp : observationId.compareTo(outra.observationId);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.armazenamento;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+
+/**
+ * Backend do buffer de hemogramas usado pelo {@code HemogramaStorageService}.
+ * Implementações: {@link ArmazenamentoHeap} (objetos no heap, ordem por dataColeta) e
+ * {@link ArmazenamentoMapeado} (registros de tamanho fixo num arquivo mapeado, ordem de chegada).
+ * Todas têm capacidade exata e removem o registro mais antigo da sua ordem quando cheias.
+ */
+public interface ArmazenamentoHemogramas extends AutoCloseable {
+
+    String getNome();
+
+    int getCapacidade();
+
+    /**
+     * Insere ou substitui (mesmo observationId) o hemograma
+     */
+    void adicionar(HemogramaCompacto hemograma);
+
+    Optional<HemogramaCompacto> buscar(String observationId);
+
+    /**
+     * Página do mais recente para o mais antigo a partir de um cursor opaco gerado pelo próprio backend
+     *
+     * @throws IllegalArgumentException se o cursor for inválido
+     */
+    PaginaHemogramas recentes(int limite, String cursor, boolean apenasComRisco);
+
+    /**
+     * Remove e retorna os N mais recentes
+     */
+    List<HemogramaCompacto> consumirRecentes(int quantidade);
+
+    int limpar();
+
+    int total();
+
+    int totalComRisco();
+
+    /**
+     * Persiste o que estiver pendente (no-op para backends voláteis)
+     */
+    default void sincronizar() {
+    }
+
+    @Override
+    default void close() {
+    }
+}
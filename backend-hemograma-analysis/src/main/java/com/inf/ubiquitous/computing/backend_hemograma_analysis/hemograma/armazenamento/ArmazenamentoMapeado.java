@@ -0,0 +1,733 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.armazenamento;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.TabelaUnidades;
+
+/**
+ * Backend fora do heap: cada hemograma é um registro de tamanho fixo num arquivo mapeado em memória
+ * ({@link FileChannel#map}). O arquivo funciona como log circular: a sequência de escrita define o slot
+ * ({@code (seq - 1) % capacidade}) e, cheio, o registro mais antigo em ordem de chegada é sobrescrito.
+ * No heap ficam só o índice hash do ID → slot e o índice das sequências com risco (arrays primitivos)
+ * e a tabela de unidades, então milhões de registros não pressionam o GC. Na subida o arquivo existente é varrido e o índice
+ * reconstruído (restart a quente); a ordenação das consultas é a de chegada, não a dataColeta.
+ */
+public class ArmazenamentoMapeado implements ArmazenamentoHemogramas {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArmazenamentoMapeado.class);
+
+    private static final int MAGICO = 0x48454D4F; // "HEMO"
+    private static final int VERSAO = 1;
+
+    // Cabeçalho: magico, versao, capacidade, tamanho do registro, unidades gravadas + tabela de unidades
+    private static final int CABECALHO = 16384;
+    private static final int CAB_MAGICO = 0;
+    private static final int CAB_VERSAO = 4;
+    private static final int CAB_CAPACIDADE = 8;
+    private static final int CAB_TAMANHO_REGISTRO = 12;
+    private static final int CAB_TOTAL_UNIDADES = 16;
+    private static final int CAB_UNIDADES = 64;
+    private static final int TAMANHO_UNIDADE = 48;
+    private static final int MAX_UNIDADES = 255;
+
+    // Layout do registro
+    static final int TAMANHO_REGISTRO = 384;
+    private static final int REG_SEQUENCIA = 0;
+    private static final int REG_DATA_COLETA = 8;
+    private static final int REG_HASH_ID = 16;
+    private static final int REG_PRESENTES = 24;
+    private static final int REG_MOTIVOS = 28;
+    private static final int REG_FLAGS = 32;
+    private static final int REG_TOTAL_TRIAGEM = 33;
+    private static final int REG_TAMANHO_ID = 34;
+    private static final int REG_TRIAGEM = 36;
+    private static final int REG_UNIDADES = 44;
+    private static final int REG_VALORES = 72;
+    private static final int REG_ID = REG_VALORES + Analito.TOTAL * Double.BYTES;
+    static final int MAX_ID_BYTES = TAMANHO_REGISTRO - REG_ID;
+    private static final int MAX_TRIAGEM = REG_UNIDADES - REG_TRIAGEM;
+
+    private static final byte FLAG_RISCO = 1;
+    private static final byte FLAG_TRIAGEM = 2;
+    private static final byte FLAG_REMOVIDO = 4;
+
+    // Cada MappedByteBuffer é limitado a 2 GB; o arquivo é mapeado em segmentos
+    private static final int REGISTROS_POR_SEGMENTO = 1 << 20;
+
+    private final Path arquivo;
+    private final int capacidade;
+    private final FileChannel canal;
+    private final MappedByteBuffer cabecalho;
+    private final MappedByteBuffer[] segmentos;
+
+    private final IndiceIds indice;
+    private final SequenciasRisco sequenciasRisco = new SequenciasRisco();
+    private final int[] unidadeArquivoParaProcesso = new int[MAX_UNIDADES + 1];
+    private final int[] unidadeProcessoParaArquivo = new int[MAX_UNIDADES + 1];
+    private int totalUnidades;
+
+    private long proximaSequencia = 1;
+    private int vivos;
+    private int vivosComRisco;
+    private final AtomicLong rejeitados = new AtomicLong();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ArmazenamentoMapeado(Path arquivo, int capacidade) {
+        boolean novo;
+        this.arquivo = arquivo;
+        this.capacidade = capacidade;
+        this.indice = new IndiceIds(capacidade);
+
+        long inicio = System.nanoTime();
+        try {
+            if (arquivo.getParent() != null) {
+                Files.createDirectories(arquivo.getParent());
+            }
+            canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            long tamanhoEsperado = CABECALHO + (long) capacidade * TAMANHO_REGISTRO;
+            novo = canal.size() != tamanhoEsperado;
+            if (novo) {
+                if (canal.size() > 0) {
+                    logger.warn("Arquivo {} com tamanho diferente da capacidade configurada ({}); recriando", arquivo, capacidade);
+                }
+                canal.truncate(0);
+                canal.write(ByteBuffer.wrap(new byte[] {0}), tamanhoEsperado - 1);
+            }
+
+            cabecalho = canal.map(FileChannel.MapMode.READ_WRITE, 0, CABECALHO);
+            int totalSegmentos = (capacidade + REGISTROS_POR_SEGMENTO - 1) / REGISTROS_POR_SEGMENTO;
+            segmentos = new MappedByteBuffer[totalSegmentos];
+            for (int s = 0; s < totalSegmentos; s++) {
+                int registros = Math.min(REGISTROS_POR_SEGMENTO, capacidade - s * REGISTROS_POR_SEGMENTO);
+                segmentos[s] = canal.map(FileChannel.MapMode.READ_WRITE,
+                        CABECALHO + (long) s * REGISTROS_POR_SEGMENTO * TAMANHO_REGISTRO,
+                        (long) registros * TAMANHO_REGISTRO);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível mapear " + arquivo, e);
+        }
+
+        if (cabecalhoValido()) {
+            recuperar();
+            logger.info("💾 Buffer mapeado recuperado de {}: {} hemogramas ({} com risco) em {} ms",
+                    arquivo, vivos, vivosComRisco, (System.nanoTime() - inicio) / 1_000_000);
+        } else {
+            // Arquivo recém-criado já está zerado; um arquivo incompatível precisa ter os slots limpos
+            inicializarCabecalho(!novo);
+            logger.info("💾 Buffer mapeado criado em {} (capacidade {}, {} MB)",
+                    arquivo, capacidade, ((long) capacidade * TAMANHO_REGISTRO) >> 20);
+        }
+    }
+
+    @Override
+    public String getNome() {
+        return "mmap";
+    }
+
+    @Override
+    public int getCapacidade() {
+        return capacidade;
+    }
+
+    /**
+     * Hemogramas não gravados porque o ID excede {@link #MAX_ID_BYTES}
+     */
+    public long getRejeitados() {
+        return rejeitados.get();
+    }
+
+    @Override
+    public void adicionar(HemogramaCompacto hemograma) {
+        byte[] id = hemograma.getObservationId().getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            rejeitados.incrementAndGet();
+            logger.warn("ID com {} bytes excede o registro mapeado ({}); hemograma não armazenado: {}",
+                    id.length, MAX_ID_BYTES, hemograma.getObservationId());
+            return;
+        }
+        long hash = hash(id);
+
+        lock.writeLock().lock();
+        try {
+            int existente = localizar(hash, id);
+            if (existente >= 0) {
+                marcarRemovido(existente);
+            }
+
+            long sequencia = proximaSequencia++;
+            int slot = (int) ((sequencia - 1) % capacidade);
+            if (sequencia > capacidade) {
+                // Volta completa do log: descarta o registro mais antigo, que ocupa este slot
+                marcarRemovido(slot);
+            }
+
+            gravar(slot, sequencia, hash, id, hemograma);
+            indice.colocar(hash, slot);
+            vivos++;
+            if (hemograma.isRiscoHiv()) {
+                vivosComRisco++;
+                sequenciasRisco.adicionar(sequencia, vivosComRisco, this::vivo);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<HemogramaCompacto> buscar(String observationId) {
+        byte[] id = observationId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            int slot = localizar(hash(id), id);
+            return slot >= 0 ? Optional.of(ler(slot)) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Percorre o log da sequência mais nova para a mais antiga; o cursor é a última sequência entregue.
+     * Só com risco, percorre o índice de sequências com risco em vez dos slots: O(página), não O(capacidade).
+     */
+    @Override
+    public PaginaHemogramas recentes(int limite, String cursor, boolean apenasComRisco) {
+        long antes = cursor == null || cursor.isBlank() ? Long.MAX_VALUE : sequenciaDoCursor(cursor);
+
+        lock.readLock().lock();
+        try {
+            if (apenasComRisco) {
+                return recentesComRisco(limite, antes);
+            }
+            List<HemogramaCompacto> itens = new ArrayList<>(Math.max(0, Math.min(limite, 1024)));
+            long ultima = 0;
+            long inicio = Math.min(antes - 1, proximaSequencia - 1);
+            long fim = Math.max(1, proximaSequencia - capacidade);
+
+            for (long seq = inicio; seq >= fim; seq--) {
+                int slot = (int) ((seq - 1) % capacidade);
+                if (!vivo(slot, seq)) {
+                    continue;
+                }
+                if (itens.size() >= limite) {
+                    return new PaginaHemogramas(itens, cursorDe(ultima));
+                }
+                itens.add(ler(slot));
+                ultima = seq;
+            }
+            return new PaginaHemogramas(itens, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Chamar com o lock de leitura
+     */
+    private PaginaHemogramas recentesComRisco(int limite, long antes) {
+        List<HemogramaCompacto> itens = new ArrayList<>(Math.max(0, Math.min(limite, 1024)));
+        long ultima = 0;
+        for (int i = sequenciasRisco.indiceAntes(antes); i >= 0; i--) {
+            long seq = sequenciasRisco.get(i);
+            if (!vivo(seq)) {
+                continue;
+            }
+            if (itens.size() >= limite) {
+                return new PaginaHemogramas(itens, cursorDe(ultima));
+            }
+            itens.add(ler(slotDe(seq)));
+            ultima = seq;
+        }
+        return new PaginaHemogramas(itens, null);
+    }
+
+    @Override
+    public List<HemogramaCompacto> consumirRecentes(int quantidade) {
+        List<HemogramaCompacto> consumidos = new ArrayList<>(Math.max(0, Math.min(quantidade, 1024)));
+
+        lock.writeLock().lock();
+        try {
+            long fim = Math.max(1, proximaSequencia - capacidade);
+            for (long seq = proximaSequencia - 1; seq >= fim && consumidos.size() < quantidade; seq--) {
+                int slot = (int) ((seq - 1) % capacidade);
+                if (vivo(slot, seq)) {
+                    consumidos.add(ler(slot));
+                    marcarRemovido(slot);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return consumidos;
+    }
+
+    @Override
+    public int limpar() {
+        lock.writeLock().lock();
+        try {
+            int anterior = vivos;
+            for (int slot = 0; slot < capacidade; slot++) {
+                segmento(slot).putLong(posicao(slot) + REG_SEQUENCIA, 0L);
+            }
+            indice.limpar();
+            sequenciasRisco.limpar();
+            vivos = 0;
+            vivosComRisco = 0;
+            return anterior;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int total() {
+        lock.readLock().lock();
+        try {
+            return vivos;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int totalComRisco() {
+        lock.readLock().lock();
+        try {
+            return vivosComRisco;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void sincronizar() {
+        lock.readLock().lock();
+        try {
+            cabecalho.force();
+            for (MappedByteBuffer segmento : segmentos) {
+                segmento.force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        sincronizar();
+        try {
+            canal.close();
+        } catch (IOException e) {
+            logger.warn("Erro ao fechar {}: {}", arquivo, e.getMessage());
+        }
+    }
+
+    // ---------------------------------------------------------------- registros
+
+    private MappedByteBuffer segmento(int slot) {
+        return segmentos[slot / REGISTROS_POR_SEGMENTO];
+    }
+
+    private int posicao(int slot) {
+        return (slot % REGISTROS_POR_SEGMENTO) * TAMANHO_REGISTRO;
+    }
+
+    private int slotDe(long sequencia) {
+        return (int) ((sequencia - 1) % capacidade);
+    }
+
+    private boolean vivo(long sequencia) {
+        return vivo(slotDe(sequencia), sequencia);
+    }
+
+    private boolean vivo(int slot, long sequencia) {
+        MappedByteBuffer seg = segmento(slot);
+        int pos = posicao(slot);
+        return seg.getLong(pos + REG_SEQUENCIA) == sequencia && (seg.get(pos + REG_FLAGS) & FLAG_REMOVIDO) == 0;
+    }
+
+    private void gravar(int slot, long sequencia, long hash, byte[] id, HemogramaCompacto h) {
+        MappedByteBuffer seg = segmento(slot);
+        int pos = posicao(slot);
+
+        // Sequência zerada durante a escrita: uma queda no meio deixa o slot vazio, não corrompido
+        seg.putLong(pos + REG_SEQUENCIA, 0L);
+        seg.putLong(pos + REG_DATA_COLETA, h.getDataColetaMillis());
+        seg.putLong(pos + REG_HASH_ID, hash);
+        seg.putInt(pos + REG_PRESENTES, h.getPresentes());
+        seg.putInt(pos + REG_MOTIVOS, h.getMotivosRisco());
+
+        byte flags = h.isRiscoHiv() ? FLAG_RISCO : 0;
+        int[] triagem = h.getResultadosTriagem();
+        int totalTriagem = triagem != null ? Math.min(triagem.length, MAX_TRIAGEM) : 0;
+        if (triagem != null) {
+            flags |= FLAG_TRIAGEM;
+        }
+        seg.put(pos + REG_FLAGS, flags);
+        seg.put(pos + REG_TOTAL_TRIAGEM, (byte) totalTriagem);
+        for (int i = 0; i < MAX_TRIAGEM; i++) {
+            seg.put(pos + REG_TRIAGEM + i, (byte) (i < totalTriagem ? triagem[i] : 0));
+        }
+
+        for (int i = 0; i < Analito.TOTAL; i++) {
+            seg.put(pos + REG_UNIDADES + i, (byte) unidadeParaArquivo(h.codigoUnidade(i)));
+            seg.putDouble(pos + REG_VALORES + i * Double.BYTES, h.valor(i));
+        }
+
+        seg.putShort(pos + REG_TAMANHO_ID, (short) id.length);
+        seg.put(pos + REG_ID, id);
+
+        seg.putLong(pos + REG_SEQUENCIA, sequencia);
+    }
+
+    private HemogramaCompacto ler(int slot) {
+        MappedByteBuffer seg = segmento(slot);
+        int pos = posicao(slot);
+        HemogramaCompacto h = new HemogramaCompacto();
+
+        byte[] id = new byte[seg.getShort(pos + REG_TAMANHO_ID)];
+        seg.get(pos + REG_ID, id);
+        h.setObservationId(new String(id, StandardCharsets.UTF_8));
+        h.setDataColetaMillis(seg.getLong(pos + REG_DATA_COLETA));
+
+        int presentes = seg.getInt(pos + REG_PRESENTES);
+        for (int i = 0; i < Analito.TOTAL; i++) {
+            if ((presentes & (1 << i)) != 0) {
+                int unidade = unidadeArquivoParaProcesso[Byte.toUnsignedInt(seg.get(pos + REG_UNIDADES + i))];
+                h.definir(i, seg.getDouble(pos + REG_VALORES + i * Double.BYTES), unidade);
+            }
+        }
+
+        byte flags = seg.get(pos + REG_FLAGS);
+        h.setMotivosRisco(seg.getInt(pos + REG_MOTIVOS));
+        h.setRiscoHiv((flags & FLAG_RISCO) != 0);
+        if ((flags & FLAG_TRIAGEM) != 0) {
+            int[] triagem = new int[seg.get(pos + REG_TOTAL_TRIAGEM)];
+            for (int i = 0; i < triagem.length; i++) {
+                triagem[i] = seg.get(pos + REG_TRIAGEM + i);
+            }
+            h.setResultadosTriagem(triagem);
+        }
+        return h;
+    }
+
+    /**
+     * Slot do ID no índice, conferindo os bytes gravados (colisão de hash não devolve o registro errado)
+     */
+    private int localizar(long hash, byte[] id) {
+        int slot = indice.obter(hash);
+        if (slot < 0) {
+            return -1;
+        }
+        MappedByteBuffer seg = segmento(slot);
+        int pos = posicao(slot);
+        if (seg.getShort(pos + REG_TAMANHO_ID) != id.length) {
+            return -1;
+        }
+        for (int i = 0; i < id.length; i++) {
+            if (seg.get(pos + REG_ID + i) != id[i]) {
+                return -1;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Marca o registro como removido (substituído ou consumido). Chamar com o lock de escrita.
+     */
+    private void marcarRemovido(int slot) {
+        MappedByteBuffer seg = segmento(slot);
+        int pos = posicao(slot);
+        byte flags = seg.get(pos + REG_FLAGS);
+        if ((flags & FLAG_REMOVIDO) != 0 || seg.getLong(pos + REG_SEQUENCIA) == 0) {
+            return;
+        }
+        seg.put(pos + REG_FLAGS, (byte) (flags | FLAG_REMOVIDO));
+        indice.removerSe(seg.getLong(pos + REG_HASH_ID), slot);
+        vivos--;
+        if ((flags & FLAG_RISCO) != 0) {
+            vivosComRisco--;
+        }
+    }
+
+    // ---------------------------------------------------------------- cabeçalho e recuperação
+
+    private boolean cabecalhoValido() {
+        return cabecalho.getInt(CAB_MAGICO) == MAGICO
+                && cabecalho.getInt(CAB_VERSAO) == VERSAO
+                && cabecalho.getInt(CAB_CAPACIDADE) == capacidade
+                && cabecalho.getInt(CAB_TAMANHO_REGISTRO) == TAMANHO_REGISTRO;
+    }
+
+    private void inicializarCabecalho(boolean zerarSlots) {
+        if (zerarSlots) {
+            for (int slot = 0; slot < capacidade; slot++) {
+                segmento(slot).putLong(posicao(slot) + REG_SEQUENCIA, 0L);
+            }
+        }
+        cabecalho.putInt(CAB_TOTAL_UNIDADES, 0);
+        cabecalho.putInt(CAB_VERSAO, VERSAO);
+        cabecalho.putInt(CAB_CAPACIDADE, capacidade);
+        cabecalho.putInt(CAB_TAMANHO_REGISTRO, TAMANHO_REGISTRO);
+        cabecalho.putInt(CAB_MAGICO, MAGICO);
+        cabecalho.force();
+    }
+
+    /**
+     * Reconstrói tabela de unidades, índice e contadores a partir do arquivo existente
+     */
+    private void recuperar() {
+        totalUnidades = Math.min(cabecalho.getInt(CAB_TOTAL_UNIDADES), MAX_UNIDADES);
+        for (int f = 1; f <= totalUnidades; f++) {
+            int pos = CAB_UNIDADES + (f - 1) * TAMANHO_UNIDADE;
+            byte[] bytes = new byte[Byte.toUnsignedInt(cabecalho.get(pos))];
+            cabecalho.get(pos + 1, bytes);
+            int codigo = TabelaUnidades.codigo(new String(bytes, StandardCharsets.UTF_8));
+            unidadeArquivoParaProcesso[f] = codigo;
+            unidadeProcessoParaArquivo[codigo] = f;
+        }
+
+        long maiorSequencia = 0;
+        for (int slot = 0; slot < capacidade; slot++) {
+            MappedByteBuffer seg = segmento(slot);
+            int pos = posicao(slot);
+            long sequencia = seg.getLong(pos + REG_SEQUENCIA);
+            if (sequencia == 0) {
+                continue;
+            }
+            maiorSequencia = Math.max(maiorSequencia, sequencia);
+
+            byte flags = seg.get(pos + REG_FLAGS);
+            if ((flags & FLAG_REMOVIDO) != 0) {
+                continue;
+            }
+            indice.colocar(seg.getLong(pos + REG_HASH_ID), slot);
+            vivos++;
+            if ((flags & FLAG_RISCO) != 0) {
+                vivosComRisco++;
+                sequenciasRisco.adicionar(sequencia, vivosComRisco, s -> true);
+            }
+        }
+        proximaSequencia = maiorSequencia + 1;
+        sequenciasRisco.ordenar();
+    }
+
+    private int unidadeParaArquivo(int codigoProcesso) {
+        if (codigoProcesso == TabelaUnidades.SEM_UNIDADE) {
+            return 0;
+        }
+        int codigoArquivo = unidadeProcessoParaArquivo[codigoProcesso];
+        if (codigoArquivo != 0) {
+            return codigoArquivo;
+        }
+        String unidade = TabelaUnidades.unidade(codigoProcesso);
+        byte[] bytes = unidade.getBytes(StandardCharsets.UTF_8);
+        if (totalUnidades >= MAX_UNIDADES || bytes.length >= TAMANHO_UNIDADE) {
+            logger.warn("Unidade '{}' não cabe na tabela do arquivo mapeado; gravada sem unidade", unidade);
+            return 0;
+        }
+
+        codigoArquivo = ++totalUnidades;
+        int pos = CAB_UNIDADES + (codigoArquivo - 1) * TAMANHO_UNIDADE;
+        cabecalho.put(pos, (byte) bytes.length);
+        cabecalho.put(pos + 1, bytes);
+        cabecalho.putInt(CAB_TOTAL_UNIDADES, totalUnidades);
+        unidadeProcessoParaArquivo[codigoProcesso] = codigoArquivo;
+        unidadeArquivoParaProcesso[codigoArquivo] = codigoProcesso;
+        return codigoArquivo;
+    }
+
+    // ---------------------------------------------------------------- utilitários
+
+    private static String cursorDe(long sequencia) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("s:" + sequencia).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long sequenciaDoCursor(String cursor) {
+        try {
+            String bruto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!bruto.startsWith("s:")) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+            return Long.parseLong(bruto.substring(2));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + cursor, e);
+        }
+    }
+
+    /**
+     * FNV-1a 64 bits sobre os bytes UTF-8 do ID
+     */
+    static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Sequências dos registros com risco em ordem crescente (cada escrita usa a maior sequência até então,
+     * então adicionar é um append). Remoções (substituição, consumo, volta do log) não mexem no array: a
+     * entrada morta é pulada na leitura, conferindo a sequência do slot, e descartada na compactação,
+     * feita antes de crescer o array quando as mortas passam das vivas.
+     */
+    static final class SequenciasRisco {
+
+        private long[] sequencias = new long[1024];
+        private int total;
+
+        long get(int i) {
+            return sequencias[i];
+        }
+
+        void adicionar(long sequencia, int vivas, LongPredicate vivo) {
+            if (total == sequencias.length) {
+                if (total - vivas >= vivas) {
+                    compactar(vivo);
+                }
+                if (total == sequencias.length) {
+                    sequencias = Arrays.copyOf(sequencias, sequencias.length * 2);
+                }
+            }
+            sequencias[total++] = sequencia;
+        }
+
+        /**
+         * Só na recuperação, em que os slots são lidos fora da ordem de sequência
+         */
+        void ordenar() {
+            Arrays.sort(sequencias, 0, total);
+        }
+
+        /**
+         * Posição da maior sequência menor que {@code antes} (-1 se não houver)
+         */
+        int indiceAntes(long antes) {
+            int i = Arrays.binarySearch(sequencias, 0, total, antes);
+            return (i >= 0 ? i : -i - 1) - 1;
+        }
+
+        void limpar() {
+            total = 0;
+        }
+
+        private void compactar(LongPredicate vivo) {
+            int destino = 0;
+            for (int i = 0; i < total; i++) {
+                if (vivo.test(sequencias[i])) {
+                    sequencias[destino++] = sequencias[i];
+                }
+            }
+            total = destino;
+        }
+    }
+
+    /**
+     * Mapa hash → slot com endereçamento aberto em arrays primitivos (sem objetos por entrada).
+     * Chave 0 marca posição livre; remoção por deslocamento reverso mantém as sondagens contíguas.
+     */
+    static final class IndiceIds {
+
+        private final long[] chaves;
+        private final int[] slots;
+        private final int mascara;
+
+        IndiceIds(int capacidade) {
+            int tamanho = Integer.highestOneBit(Math.max(2, capacidade) * 2 - 1) << 1;
+            chaves = new long[tamanho];
+            slots = new int[tamanho];
+            mascara = tamanho - 1;
+        }
+
+        private static long chave(long hash) {
+            return hash == 0 ? 1 : hash;
+        }
+
+        private int inicio(long chave) {
+            return (int) (chave ^ (chave >>> 32)) * 0x9E3779B9 & mascara;
+        }
+
+        int obter(long hash) {
+            long chave = chave(hash);
+            for (int i = inicio(chave); chaves[i] != 0; i = (i + 1) & mascara) {
+                if (chaves[i] == chave) {
+                    return slots[i];
+                }
+            }
+            return -1;
+        }
+
+        void colocar(long hash, int slot) {
+            long chave = chave(hash);
+            int i = inicio(chave);
+            while (chaves[i] != 0 && chaves[i] != chave) {
+                i = (i + 1) & mascara;
+            }
+            chaves[i] = chave;
+            slots[i] = slot;
+        }
+
+        /**
+         * Remove a entrada só se ela ainda apontar para o slot informado
+         */
+        void removerSe(long hash, int slot) {
+            long chave = chave(hash);
+            int i = inicio(chave);
+            while (chaves[i] != 0) {
+                if (chaves[i] == chave) {
+                    if (slots[i] == slot) {
+                        remover(i);
+                    }
+                    return;
+                }
+                i = (i + 1) & mascara;
+            }
+        }
+
+        private void remover(int livre) {
+            chaves[livre] = 0;
+            for (int i = (livre + 1) & mascara; chaves[i] != 0; i = (i + 1) & mascara) {
+                int ideal = inicio(chaves[i]);
+                // Move a entrada para o buraco se o buraco está entre a posição ideal e a atual
+                if (((i - ideal) & mascara) >= ((i - livre) & mascara)) {
+                    chaves[livre] = chaves[i];
+                    slots[livre] = slots[i];
+                    chaves[i] = 0;
+                    livre = i;
+                }
+            }
+        }
+
+        void limpar() {
+            Arrays.fill(chaves, 0L);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.armazenamento;
+
+import java.util.List;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+
+/**
+ * Página da consulta de recentes; proximoCursor é nulo na última página
+ */
+public record PaginaHemogramas(List<HemogramaCompacto> itens, String proximoCursor) {}
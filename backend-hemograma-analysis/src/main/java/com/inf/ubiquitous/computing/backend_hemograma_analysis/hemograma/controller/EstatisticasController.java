@@ -5,7 +5,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.DashboardEstatisticasDto;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.ContadorHiv;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.PaginaCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -20,7 +22,9 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.CacheEstatisticasService;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.ContadorHivService;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.DashboardEstatisticasService;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.FhirIntegrationService;
 
 /**
@@ -36,13 +40,21 @@ public class EstatisticasController {
     
     @Autowired
     private FhirIntegrationService fhirIntegrationService;
+
+    @Autowired
+    private DashboardEstatisticasService dashboardService;
+
+    @Autowired
+    private CacheEstatisticasService cacheEstatisticas;
     
     /**
      * GET /api/estatisticas/por-regiao - contadores por região
      */
     @GetMapping("/por-regiao")
-    public ResponseEntity<Map<String, Object>> obterEstatisticasPorRegiao() {
-        Map<String, Object> estatisticas = contadorService.obterEstatisticasPorRegiao();
+    public ResponseEntity<Map<String, Object>> obterEstatisticasPorRegiao(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataFim) {
+        Map<String, Object> estatisticas = contadorService.obterEstatisticasPorRegiao(dataInicio, dataFim);
         return ResponseEntity.ok(estatisticas);
     }
     
@@ -50,8 +62,10 @@ public class EstatisticasController {
      * GET /api/estatisticas/por-idade - contadores por faixa etária
      */
     @GetMapping("/por-idade")
-    public ResponseEntity<Map<String, Object>> obterEstatisticasPorIdade() {
-        Map<String, Object> estatisticas = contadorService.obterEstatisticasPorIdade();
+    public ResponseEntity<Map<String, Object>> obterEstatisticasPorIdade(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataFim) {
+        Map<String, Object> estatisticas = contadorService.obterEstatisticasPorIdade(dataInicio, dataFim);
         return ResponseEntity.ok(estatisticas);
     }
     
@@ -59,8 +73,10 @@ public class EstatisticasController {
      * GET /api/estatisticas/por-sexo - contadores por sexo
      */
     @GetMapping("/por-sexo")
-    public ResponseEntity<Map<String, Object>> obterEstatisticasPorSexo() {
-        Map<String, Object> estatisticas = contadorService.obterEstatisticasPorSexo();
+    public ResponseEntity<Map<String, Object>> obterEstatisticasPorSexo(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataFim) {
+        Map<String, Object> estatisticas = contadorService.obterEstatisticasPorSexo(dataInicio, dataFim);
         return ResponseEntity.ok(estatisticas);
     }
     
@@ -74,19 +90,14 @@ public class EstatisticasController {
     }
     
     /**
-     * GET /api/estatisticas/dashboard - dados completos para dashboard
+     * GET /api/estatisticas/dashboard - dados completos para dashboard, numa única consulta.
+     * dataInicio/dataFim (opcionais) restringem o total e as distribuições; as janelas de 1/7/30 dias são sempre a partir de hoje.
      */
     @GetMapping("/dashboard")
-    public ResponseEntity<Map<String, Object>> obterDadosDashboard() {
-        Map<String, Object> dashboard = Map.of(
-            "resumo", contadorService.obterResumoEstatisticas(),
-            "porRegiao", contadorService.obterEstatisticasPorRegiao(),
-            "porIdade", contadorService.obterEstatisticasPorIdade(),
-            "porSexo", contadorService.obterEstatisticasPorSexo(),
-            "ultimaAtualizacao", java.time.Instant.now().toString()
-        );
-        
-        return ResponseEntity.ok(dashboard);
+    public ResponseEntity<DashboardEstatisticasDto> obterDadosDashboard(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dataFim) {
+        return ResponseEntity.ok(dashboardService.obterDashboard(dataInicio, dataFim));
     }
     
     /**
@@ -139,6 +150,10 @@ public class EstatisticasController {
      * - page: número da página (começa em 0)
      * - size: tamanho da página (padrão: 20)
      * - sort: campo de ordenação (padrão: data,desc)
+     * - cursor / keyset=true: paginação por cursor em (data, id); repassar paginacao.proximoCursor.
+     *   Custo constante por página e sem COUNT, a não ser com incluirTotal=true. Só ordena por data.
+     * - incluirTotal: inclui estatisticas.totalCasosFiltrados (soma de casos de todo o filtro) e, no cursor,
+     *   paginacao.totalElementos
      */
     @GetMapping("/lista")
     public ResponseEntity<Map<String, Object>> listarContadoresFiltrados(
@@ -150,7 +165,10 @@ public class EstatisticasController {
             @RequestParam(required = false) String sexo,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
-            @RequestParam(defaultValue = "data,desc") String[] sort) {
+            @RequestParam(defaultValue = "data,desc") String[] sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean keyset,
+            @RequestParam(defaultValue = "false") boolean incluirTotal) {
 
         try {
             // Validações
@@ -161,29 +179,64 @@ public class EstatisticasController {
                 ));
             }
 
-            // Criar Pageable com ordenação
             Sort.Direction direction = sort.length > 1 && sort[1].equalsIgnoreCase("asc")
                     ? Sort.Direction.ASC
                     : Sort.Direction.DESC;
-            Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sort[0]));
 
-            // Buscar com filtros
-            Page<ContadorHiv> resultado = contadorService.buscarContadoresFiltrados(
-                    dataInicio, dataFim, regiao, estado, faixaEtaria, sexo, pageable
-            );
+            List<ContadorHiv> contadores;
+            Map<String, Object> paginacao = new HashMap<>();
+            long totalRegistros = -1;
+
+            if (keyset || cursor != null) {
+                if (size <= 0 || !"data".equals(sort[0])) {
+                    return ResponseEntity.badRequest().body(Map.of(
+                            "erro", "Paginação por cursor exige size > 0 e ordenação por data",
+                            "status", "erro"
+                    ));
+                }
+
+                PaginaCursor<ContadorHiv> pagina;
+                try {
+                    pagina = contadorService.buscarContadoresPorCursor(dataInicio, dataFim, regiao, estado,
+                            faixaEtaria, sexo, cursor, size, direction == Sort.Direction.DESC);
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest().body(Map.of("erro", e.getMessage(), "status", "erro"));
+                }
+
+                contadores = pagina.itens();
+                paginacao.put("tamanhoPagina", size);
+                paginacao.put("proximoCursor", pagina.proximoCursor());
+                paginacao.put("ultimo", pagina.proximoCursor() == null);
+                paginacao.put("vazio", contadores.isEmpty());
+                if (incluirTotal) {
+                    totalRegistros = contadorService.contarContadoresFiltrados(
+                            dataInicio, dataFim, regiao, estado, faixaEtaria, sexo);
+                    paginacao.put("totalElementos", totalRegistros);
+                }
+            } else {
+                // Criar Pageable com ordenação
+                Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sort[0]));
+
+                // Buscar com filtros
+                Page<ContadorHiv> resultado = contadorService.buscarContadoresFiltrados(
+                        dataInicio, dataFim, regiao, estado, faixaEtaria, sexo, pageable
+                );
+
+                contadores = resultado.getContent();
+                totalRegistros = resultado.getTotalElements();
+                paginacao.put("paginaAtual", resultado.getNumber());
+                paginacao.put("totalPaginas", resultado.getTotalPages());
+                paginacao.put("totalElementos", resultado.getTotalElements());
+                paginacao.put("tamanhoPagina", resultado.getSize());
+                paginacao.put("primeiro", resultado.isFirst());
+                paginacao.put("ultimo", resultado.isLast());
+                paginacao.put("vazio", resultado.isEmpty());
+            }
 
             // Montar resposta
             Map<String, Object> response = new HashMap<>();
-            response.put("contadores", resultado.getContent());
-            response.put("paginacao", Map.of(
-                    "paginaAtual", resultado.getNumber(),
-                    "totalPaginas", resultado.getTotalPages(),
-                    "totalElementos", resultado.getTotalElements(),
-                    "tamanhoPagina", resultado.getSize(),
-                    "primeiro", resultado.isFirst(),
-                    "ultimo", resultado.isLast(),
-                    "vazio", resultado.isEmpty()
-            ));
+            response.put("contadores", contadores);
+            response.put("paginacao", paginacao);
             response.put("filtros", Map.of(
                     "dataInicio", dataInicio != null ? dataInicio.toString() : "não aplicado",
                     "dataFim", dataFim != null ? dataFim.toString() : "não aplicado",
@@ -194,14 +247,21 @@ public class EstatisticasController {
             ));
 
             // Estatísticas dos resultados filtrados
-            int totalCasos = resultado.getContent().stream()
+            int totalCasos = contadores.stream()
                     .mapToInt(ContadorHiv::getQuantidade)
                     .sum();
 
-            response.put("estatisticas", Map.of(
-                    "totalCasosNaPagina", totalCasos,
-                    "totalRegistros", resultado.getTotalElements()
-            ));
+            Map<String, Object> estatisticas = new HashMap<>();
+            estatisticas.put("totalCasosNaPagina", totalCasos);
+            if (incluirTotal) {
+                // Soma de todo o filtro (planner de rollups): só quando pedida, junto com o total de registros
+                estatisticas.put("totalCasosFiltrados", contadorService.somarCasos(dataInicio, dataFim,
+                        new ContadorHivService.FiltroContadores(regiao, estado, faixaEtaria, sexo)));
+            }
+            if (totalRegistros >= 0) {
+                estatisticas.put("totalRegistros", totalRegistros);
+            }
+            response.put("estatisticas", estatisticas);
 
             return ResponseEntity.ok(response);
 
@@ -213,6 +273,14 @@ public class EstatisticasController {
         }
     }
 
+    /**
+     * GET /api/estatisticas/cache - acertos, falhas e tempo de carga dos caches de estatísticas
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, CacheEstatisticasService.CacheMetrics>> obterMetricasCache() {
+        return ResponseEntity.ok(cacheEstatisticas.getMetricas());
+    }
+
     /**
      * GET /api/estatisticas/status - status do sistema
      */
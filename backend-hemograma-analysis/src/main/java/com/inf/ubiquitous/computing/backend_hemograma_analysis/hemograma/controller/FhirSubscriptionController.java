@@ -9,6 +9,8 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,11 +18,14 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
 
-import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.HemogramaDto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.config.PoolConexoesHapi;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.HapiObservationService;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.HemogramaFhirParserService;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.HemogramaStorageService;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.IngestaoFhirService;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.PersistenciaHemogramaService;
 
 import jakarta.servlet.http.HttpServletRequest;
 
@@ -33,8 +38,8 @@ public class FhirSubscriptionController {
     @Value("${fhir.payload.max-size:1048576}")
     private int maxPayloadSize;
 
-    @Value("${hapi.fhir.url:http://localhost:8090/fhir}")
-    private String hapiFhirBaseUrl;
+    @Value("${fhir.ingestao.assincrona:true}")
+    private boolean ingestaoAssincrona;
 
     @Autowired
     private HemogramaFhirParserService hemogramaParser;
@@ -42,7 +47,18 @@ public class FhirSubscriptionController {
     @Autowired
     private HemogramaStorageService hemogramaStorageService;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private HapiObservationService hapiObservationService;
+
+    @Autowired
+    private IngestaoFhirService ingestaoFhirService;
+
+    @Autowired
+    private PoolConexoesHapi poolConexoesHapi;
+
+    @Autowired
+    private PersistenciaHemogramaService persistenciaHemograma;
+
     private final AtomicLong requestCounter = new AtomicLong(0);
     private final AtomicLong successCounter = new AtomicLong(0);
     private final AtomicLong errorCounter = new AtomicLong(0);
@@ -71,19 +87,31 @@ public class FhirSubscriptionController {
             logger.info("Form params - Trace: {}, ID: {}, Type: {}, Status: {}", 
                        traceId, observationId, resourceType, status);
             
-            // Buscar payload FHIR real do servidor HAPI
-            String fhirPayload = buscarObservationDoHapi(observationId, resourceType, traceId);
+            if (observationId == null || observationId.isBlank() || !"Observation".equals(resourceType)) {
+                errorCounter.incrementAndGet();
+                logger.warn("ID ou tipo de recurso inválido - Trace: {}, ID: {}, Type: {}", 
+                           traceId, observationId, resourceType);
+                return ResponseEntity.badRequest()
+                    .body(createErrorResponse("Parametros id/resourceType invalidos"));
+            }
+
+            if (ingestaoAssincrona) {
+                return enfileirarNotificacao(observationId, traceId);
+            }
+
+            // Modo síncrono: busca, parse e armazenamento na thread do servlet
+            String fhirPayload = hapiObservationService.buscarObservation(observationId, traceId);
             
             logger.info("Payload obtido do HAPI - Trace: {}, Size: {} chars", 
                        traceId, fhirPayload != null ? fhirPayload.length() : 0);
 
-            if (!isValidPayload(fhirPayload)) {
+            if (!ingestaoFhirService.isPayloadValido(fhirPayload)) {
                 errorCounter.incrementAndGet();
                 return ResponseEntity.badRequest()
                     .body(createErrorResponse("Payload invalido ou muito grande"));
             }
 
-            List<HemogramaDto> hemogramas = processarPayload(fhirPayload);
+            List<HemogramaCompacto> hemogramas = processarPayload(fhirPayload);
             
             if (hemogramas.isEmpty()) {
                 logger.warn("Nenhum hemograma encontrado no payload - Trace: {}", traceId);
@@ -125,63 +153,25 @@ public class FhirSubscriptionController {
     }
 
     /**
-     * Busca dados reais da Observation no servidor HAPI FHIR
+     * Modo assíncrono: só enfileira o id e responde 202; com a fila cheia responde 429 + Retry-After
      */
-    private String buscarObservationDoHapi(String observationId, String resourceType, String traceId) {
-        
-        if (observationId == null || !"Observation".equals(resourceType)) {
-            logger.warn("ID ou tipo de recurso inválido - Trace: {}, ID: {}, Type: {}", 
-                       traceId, observationId, resourceType);
-            return null;
-        }
-        
-        try {
-            // Construir URL da API HAPI FHIR
-            String fhirUrl = hapiFhirBaseUrl + "/Observation/" + observationId;
-            
-            logger.info("Buscando Observation no HAPI - Trace: {}, URL: {}", traceId, fhirUrl);
-            
-            // Fazer chamada HTTP para buscar dados reais
-            ResponseEntity<String> response = restTemplate.getForEntity(fhirUrl, String.class);
-            
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                String fhirJson = response.getBody();
-                logger.info("Observation obtida com sucesso - Trace: {}, Size: {} chars", 
-                           traceId, fhirJson.length());
-                
-                // Log dos primeiros caracteres para debug (sem dados sensíveis)
-                String preview = fhirJson.length() > 200 ? fhirJson.substring(0, 200) + "..." : fhirJson;
-                logger.debug("Preview do FHIR JSON - Trace: {}: {}", traceId, preview);
-                
-                return fhirJson;
-            } else {
-                logger.warn("Resposta inválida do HAPI - Trace: {}, Status: {}", 
-                           traceId, response.getStatusCode());
-                return null;
-            }
-            
-        } catch (Exception e) {
-            logger.error("Erro ao buscar Observation no HAPI - Trace: {}, ID: {}, Erro: {}", 
-                        traceId, observationId, e.getMessage(), e);
-            return null;
-        }
-    }
-
-    private boolean isValidPayload(String payload) {
-        if (payload == null || payload.isBlank()) {
-            logger.warn("Payload vazio recebido");
-            return false;
-        }
-
-        if (payload.length() > maxPayloadSize) {
-            logger.warn("Payload muito grande: {} bytes (maximo: {})", payload.length(), maxPayloadSize);
-            return false;
+    private ResponseEntity<?> enfileirarNotificacao(String observationId, String traceId) {
+        if (!ingestaoFhirService.enfileirar(observationId, traceId)) {
+            errorCounter.incrementAndGet();
+            long retryAfter = ingestaoFhirService.estimarRetryAfterSegundos();
+            logger.warn("Fila de ingestão cheia - Trace: {}, ID: {}, Retry-After: {}s", traceId, observationId, retryAfter);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                .body(createErrorResponse("Fila de ingestao cheia, tente novamente"));
         }
 
-        return true;
+        successCounter.incrementAndGet();
+        logger.info("Notificação enfileirada - Trace: {}, ID: {}", traceId, observationId);
+        return ResponseEntity.accepted()
+            .body(new ApiResponse("accepted", "Observation enfileirada para processamento", 1, null));
     }
 
-    private List<HemogramaDto> processarPayload(String fhirPayload) throws FhirParsingException {
+    private List<HemogramaCompacto> processarPayload(String fhirPayload) throws FhirParsingException {
         try {
             return hemogramaParser.processarNotificacaoFhir(fhirPayload);
         } catch (Exception e) {
@@ -189,26 +179,9 @@ public class FhirSubscriptionController {
         }
     }
 
-    /**
-     * Armazena hemogramas e destaca casos com risco HIV para auditoria médica
-     */
-    private void armazenarHemogramas(List<HemogramaDto> hemogramas, String traceId) throws StorageException {
+    private void armazenarHemogramas(List<HemogramaCompacto> hemogramas, String traceId) throws StorageException {
         try {
-            int riscoCount = 0;
-            for (HemogramaDto h : hemogramas) {
-                hemogramaStorageService.addHemograma(h);
-                if (h.isRiscoHiv()) {
-                    riscoCount++;
-                    logger.warn("🚨 Hemograma com risco HIV detectado - Trace: {}, ID: {}, Motivo: {}", 
-                               traceId, h.getObservationId(), h.getMotivoRisco());
-                }
-            }
-            
-            if (riscoCount > 0) {
-                logger.warn("🚨 {} hemograma(s) com risco HIV de {} processados - Trace: {}", 
-                           riscoCount, hemogramas.size(), traceId);
-            }
-            
+            ingestaoFhirService.armazenarHemogramas(hemogramas, traceId);
         } catch (Exception e) {
             throw new StorageException("Falha no armazenamento: " + e.getMessage(), e);
         }
@@ -240,7 +213,7 @@ public class FhirSubscriptionController {
 
     @GetMapping(path = "/test", produces = MediaType.TEXT_PLAIN_VALUE)
     public ResponseEntity<String> test() {
-        return ResponseEntity.ok("Controller FHIR funcionando - Conectado ao HAPI: " + hapiFhirBaseUrl);
+        return ResponseEntity.ok("Controller FHIR funcionando - Conectado ao HAPI: " + hapiObservationService.getHapiFhirBaseUrl());
     }
 
     @GetMapping(path = "/metrics", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -253,7 +226,10 @@ public class FhirSubscriptionController {
                 successCounter.get(),
                 errorCounter.get(),
                 hemogramaStorageService.getTotalHemogramas(),
-                hemogramaStorageService.getTotalHemogramasComRisco()
+                hemogramaStorageService.getTotalHemogramasComRisco(),
+                ingestaoFhirService.getMetricas(),
+                poolConexoesHapi.getMetricas(),
+                persistenciaHemograma.getMetricas()
             );
             
             logger.debug("Métricas obtidas com sucesso: requests={}, hemogramas={}", 
@@ -305,6 +281,9 @@ public class FhirSubscriptionController {
         long successfulRequests,
         long errorRequests,
         int totalHemogramas,
-        int hemogramasComRisco
+        int hemogramasComRisco,
+        IngestaoFhirService.IngestaoMetrics ingestao,
+        PoolConexoesHapi.MetricasPool poolHapi,
+        PersistenciaHemogramaService.PersistenciaMetrics persistencia
     ) {}
 }
\ No newline at end of file
@@ -10,9 +10,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.armazenamento.PaginaHemogramas;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.HemogramaDto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.HemogramaDtoMapper;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.HemogramaStorageService;
 
 @RestController
@@ -22,6 +25,16 @@ public class HemogramaApiController {
     @Autowired
     private HemogramaStorageService storageService;
 
+    @Autowired
+    private HemogramaDtoMapper hemogramaDtoMapper;
+
+    private static final int LIMITE_MAXIMO_PAGINA = 500;
+
+    /**
+     * Header com o cursor da próxima página (ausente na última)
+     */
+    public static final String HEADER_PROXIMO_CURSOR = "X-Proximo-Cursor";
+
     /**
      * DTO resumido de hemograma, usado nas listagens rápidas.
      * Inclui dados de risco HIV para destacar casos suspeitos no frontend.
@@ -52,14 +65,37 @@ public class HemogramaApiController {
     }
 
     /**
-     * Endpoint que retorna lista resumida dos hemogramas armazenados.
-     * Exemplo: GET /api/hemogramas/recentes
+     * Endpoint que retorna lista resumida dos hemogramas armazenados, do mais recente para o mais antigo.
+     * Paginação por cursor: repassar o header X-Proximo-Cursor no parâmetro "antes".
+     * Exemplo: GET /api/hemogramas/recentes?limite=50&antes={cursor}
      */
     @GetMapping("/recentes")
-    public List<HemogramaResumoDto> getHemogramasRecentes() {
-        return storageService.getAllHemogramas().stream()
+    public ResponseEntity<List<HemogramaResumoDto>> getHemogramasRecentes(
+            @RequestParam(defaultValue = "100") int limite,
+            @RequestParam(required = false) String antes,
+            @RequestParam(defaultValue = "false") boolean apenasComRisco) {
+
+        if (limite <= 0 || limite > LIMITE_MAXIMO_PAGINA) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        PaginaHemogramas pagina;
+        try {
+            pagina = storageService.buscarRecentes(limite, antes, apenasComRisco);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<HemogramaResumoDto> itens = pagina.itens().stream()
+                .map(hemogramaDtoMapper::paraDto)
                 .map(HemogramaResumoDto::from)
                 .collect(Collectors.toList());
+
+        ResponseEntity.BodyBuilder resposta = ResponseEntity.ok();
+        if (pagina.proximoCursor() != null) {
+            resposta.header(HEADER_PROXIMO_CURSOR, pagina.proximoCursor());
+        }
+        return resposta.body(itens);
     }
 
     /**
@@ -69,6 +105,7 @@ public class HemogramaApiController {
     @GetMapping("/{id}")
     public ResponseEntity<HemogramaResumoDto> getHemogramaPorId(@PathVariable String id) {
         return storageService.findById(id)
+                .map(hemogramaDtoMapper::paraDto)
                 .map(HemogramaResumoDto::from)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
@@ -9,11 +9,15 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.HemogramaDto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.regras.MotorRegrasRiscoHiv;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.regras.RegrasCompiladas;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.HemogramaDtoMapper;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.HemogramaStorageService;
 
 /**
@@ -27,6 +31,12 @@ public class HemogramaHivController {
     
     @Autowired
     private HemogramaStorageService storageService;
+
+    @Autowired
+    private HemogramaDtoMapper hemogramaDtoMapper;
+
+    @Autowired
+    private MotorRegrasRiscoHiv motorRegrasRiscoHiv;
     
     /**
      * 🎯 ENDPOINT PRINCIPAL - Lista hemogramas com risco HIV
@@ -36,9 +46,9 @@ public class HemogramaHivController {
     public ResponseEntity<Map<String, Object>> getHemogramasComRiscoHiv(
             @RequestParam(defaultValue = "50") int limite) {
         
-        List<HemogramaDto> hemogramasComRisco = storageService.getHemogramasComRiscoHiv()
+        List<HemogramaDto> hemogramasComRisco = storageService.buscarPorCriterios(true, limite)
                 .stream()
-                .limit(limite)
+                .map(hemogramaDtoMapper::paraDto)
                 .collect(Collectors.toList());
         
         // Monta resposta detalhada para o frontend
@@ -60,28 +70,14 @@ public class HemogramaHivController {
     @GetMapping("/risco-hiv/grafico")
     public ResponseEntity<Map<String, Object>> getDadosGrafico() {
         
-        List<HemogramaDto> hemogramasComRisco = storageService.getHemogramasComRiscoHiv();
-        
-        // Agrupa por motivo de risco para o gráfico
-        Map<String, Long> porMotivo = hemogramasComRisco.stream()
-            .collect(Collectors.groupingBy(
-                h -> h.getMotivoRisco() != null ? h.getMotivoRisco() : "Motivo não especificado",
-                Collectors.counting()
-            ));
-        
-        // Agrupa por data para timeline
-        Map<String, Long> porData = hemogramasComRisco.stream()
-            .collect(Collectors.groupingBy(
-                h -> h.getDataColeta() != null ? 
-                    h.getDataColeta().toString().substring(0, 10) : // yyyy-MM-dd
-                    java.time.LocalDate.now().toString(),
-                Collectors.counting()
-            ));
+        // Contagens em cache no serviço: não materializa os hemogramas com risco a cada requisição
+        Map<String, Long> porMotivo = storageService.contarMotivosRisco();
+        Map<String, Long> porData = storageService.contarRiscoPorData();
         
         Map<String, Object> dadosGrafico = Map.of(
             "porMotivo", porMotivo,
             "porData", porData,
-            "totalCasos", hemogramasComRisco.size(),
+            "totalCasos", porMotivo.values().stream().mapToLong(Long::longValue).sum(),
             "timestamp", java.time.Instant.now().toString()
         );
         
@@ -96,6 +92,7 @@ public class HemogramaHivController {
         
         return storageService.findById(id)
             .filter(h -> h.isRiscoHiv()) // Só retorna se tiver risco HIV
+            .map(hemogramaDtoMapper::paraDto)
             .map(ResponseEntity::ok)
             .orElse(ResponseEntity.notFound().build());
     }
@@ -107,14 +104,7 @@ public class HemogramaHivController {
     public ResponseEntity<Map<String, Object>> getEstatisticasRiscoHiv() {
         
         var stats = storageService.getEstatisticas();
-        List<HemogramaDto> hemogramasComRisco = storageService.getHemogramasComRiscoHiv();
-        
-        // Calcula estatísticas por motivo
-        Map<String, Long> motivosCount = hemogramasComRisco.stream()
-            .collect(Collectors.groupingBy(
-                h -> h.getMotivoRisco() != null ? h.getMotivoRisco() : "Não especificado",
-                Collectors.counting()
-            ));
+        Map<String, Long> motivosCount = storageService.contarMotivosRisco();
         
         Map<String, Object> estatisticas = Map.of(
             "totalHemogramas", stats.getTotalHemogramas(),
@@ -151,6 +141,36 @@ public class HemogramaHivController {
         return ResponseEntity.ok(status);
     }
     
+    /**
+     * ⚙️ Regras de risco HIV em uso (arquivo e versão)
+     */
+    @GetMapping("/risco-hiv/regras")
+    public ResponseEntity<Map<String, Object>> getRegrasRiscoHiv() {
+        RegrasCompiladas regras = motorRegrasRiscoHiv.getRegras();
+
+        return ResponseEntity.ok(Map.of(
+            "arquivo", motorRegrasRiscoHiv.getArquivoRegras(),
+            "versao", String.valueOf(regras.getVersao()),
+            "totalRegras", regras.getTotalRegras()
+        ));
+    }
+
+    /**
+     * 🔄 Força a recarga do arquivo de regras (útil quando o arquivo está dentro do jar)
+     */
+    @PostMapping("/risco-hiv/regras/recarregar")
+    public ResponseEntity<Map<String, Object>> recarregarRegrasRiscoHiv() {
+        boolean sucesso = motorRegrasRiscoHiv.recarregar();
+        RegrasCompiladas regras = motorRegrasRiscoHiv.getRegras();
+
+        Map<String, Object> resposta = Map.of(
+            "status", sucesso ? "sucesso" : "erro",
+            "versao", String.valueOf(regras.getVersao()),
+            "totalRegras", regras.getTotalRegras()
+        );
+        return sucesso ? ResponseEntity.ok(resposta) : ResponseEntity.badRequest().body(resposta);
+    }
+
     private double calcularPercentualRisco() {
         var stats = storageService.getEstatisticas();
         return stats.getPercentualRisco();
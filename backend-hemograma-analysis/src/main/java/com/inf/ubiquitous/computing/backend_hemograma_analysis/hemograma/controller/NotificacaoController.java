@@ -1,7 +1,12 @@
 package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.controller;
 
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.Notificacao;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.CursorPaginacao;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository.NotificacaoRepository;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.CacheEstatisticasService;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.NotificacaoConsumerService;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.NotificacaoRetryService;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.NotificacaoService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -10,6 +15,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +28,22 @@ public class NotificacaoController {
     @Autowired
     private NotificacaoRepository notificacaoRepository;
 
+    @Autowired
+    private NotificacaoConsumerService notificacaoService;
+
+    @Autowired
+    private CacheEstatisticasService cacheEstatisticas;
+
+    @Autowired
+    private NotificacaoRetryService retryService;
+
+    @Autowired
+    private NotificacaoService notificacaoProdutor;
+
+    private static final int LIMITE_PAGINA_CURSOR = 100;
+
+    private static final int LIMITE_REPLAY_DLT = 5000;
+
     /**
      * GET /api/notificacoes/ultimas
      * Retorna as 10 últimas notificações
@@ -82,12 +104,21 @@ public class NotificacaoController {
 
     /**
      * GET /api/notificacoes
-     * Lista todas as notificações com paginação
+     * Lista todas as notificações com paginação.
+     * Com cursor (ou keyset=true) a paginação é por (dataCriacao, id): repassar proximoCursor,
+     * custo constante por página e COUNT só com incluirTotal=true.
      */
     @GetMapping
     public ResponseEntity<Map<String, Object>> listarNotificacoes(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean keyset,
+            @RequestParam(defaultValue = "false") boolean incluirTotal) {
+
+        if (keyset || cursor != null) {
+            return listarNotificacoesPorCursor(cursor, size, incluirTotal);
+        }
 
         PageRequest pageRequest = PageRequest.of(page, size, Sort.by("dataCriacao").descending());
         Page<Notificacao> pageNotificacoes = notificacaoRepository.findAllByOrderByDataCriacaoDesc(pageRequest);
@@ -101,6 +132,45 @@ public class NotificacaoController {
         return ResponseEntity.ok(response);
     }
 
+    private ResponseEntity<Map<String, Object>> listarNotificacoesPorCursor(String cursor, int size, boolean incluirTotal) {
+        if (size <= 0 || size > LIMITE_PAGINA_CURSOR) {
+            return ResponseEntity.badRequest().body(Map.of("erro", "size deve estar entre 1 e " + LIMITE_PAGINA_CURSOR));
+        }
+
+        // Um a mais para saber se existe próxima página
+        PageRequest limite = PageRequest.of(0, size + 1);
+        List<Notificacao> linhas;
+        if (cursor == null) {
+            linhas = notificacaoRepository.findAllByOrderByDataCriacaoDescIdDesc(limite);
+        } else {
+            LocalDateTime data;
+            CursorPaginacao posicao;
+            try {
+                posicao = CursorPaginacao.decodificar(cursor);
+                data = LocalDateTime.parse(posicao.valor());
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                return ResponseEntity.badRequest().body(Map.of("erro", "Cursor inválido"));
+            }
+            linhas = notificacaoRepository.buscarAntesDe(data, posicao.id(), limite);
+        }
+
+        String proximoCursor = null;
+        if (linhas.size() > size) {
+            linhas = linhas.subList(0, size);
+            Notificacao ultima = linhas.get(size - 1);
+            proximoCursor = new CursorPaginacao(ultima.getDataCriacao().toString(), ultima.getId()).codificar();
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("notificacoes", linhas);
+        response.put("proximoCursor", proximoCursor);
+        if (incluirTotal) {
+            response.put("totalItems", notificacaoRepository.count());
+        }
+
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * GET /api/notificacoes/nao-lidas
      * Retorna apenas notificações não lidas
@@ -131,6 +201,7 @@ public class NotificacaoController {
                 .map(notificacao -> {
                     notificacao.setLida(true);
                     Notificacao atualizada = notificacaoRepository.save(notificacao);
+                    cacheEstatisticas.invalidarNotificacoes();
                     return ResponseEntity.ok(atualizada);
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -145,6 +216,7 @@ public class NotificacaoController {
         List<Notificacao> naoLidas = notificacaoRepository.findByLidaFalseOrderByDataCriacaoDesc();
         naoLidas.forEach(n -> n.setLida(true));
         notificacaoRepository.saveAll(naoLidas);
+        cacheEstatisticas.invalidarNotificacoes();
 
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Todas as notificações foram marcadas como lidas");
@@ -159,15 +231,7 @@ public class NotificacaoController {
      */
     @GetMapping("/estatisticas")
     public ResponseEntity<Map<String, Object>> getEstatisticas() {
-        long total = notificacaoRepository.count();
-        long naoLidas = notificacaoRepository.countByLidaFalse();
-
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("total", total);
-        stats.put("lidas", total - naoLidas);
-        stats.put("naoLidas", naoLidas);
-
-        return ResponseEntity.ok(stats);
+        return ResponseEntity.ok(notificacaoService.obterEstatisticas());
     }
 
     /**
@@ -179,10 +243,37 @@ public class NotificacaoController {
         return notificacaoRepository.findById(id)
                 .map(notificacao -> {
                     notificacaoRepository.delete(notificacao);
+                    cacheEstatisticas.invalidarNotificacoes();
                     Map<String, String> response = new HashMap<>();
                     response.put("message", "Notificação deletada com sucesso");
                     return ResponseEntity.ok(response);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
-}
\ No newline at end of file
+
+    /**
+     * GET /api/notificacao/kafka/metricas
+     * Envios em voo, latência de envio, ocupação dos lotes e erros do produtor Kafka
+     */
+    @GetMapping("/kafka/metricas")
+    public ResponseEntity<NotificacaoService.EnvioKafkaMetrics> getMetricasKafka() {
+        return ResponseEntity.ok(notificacaoProdutor.getMetricas());
+    }
+
+    /**
+     * POST /api/notificacao/dlt/{topico}/reprocessar?limite=500
+     * Devolve ao tópico principal o próximo lote de notificações do dead-letter (hiv-detectado-dlt etc.)
+     */
+    @PostMapping("/dlt/{topico}/reprocessar")
+    public ResponseEntity<?> reprocessarDlt(@PathVariable String topico,
+                                            @RequestParam(defaultValue = "500") int limite) {
+        if (limite < 1 || limite > LIMITE_REPLAY_DLT) {
+            return ResponseEntity.badRequest().body(Map.of("erro", "limite deve estar entre 1 e " + LIMITE_REPLAY_DLT));
+        }
+        try {
+            return ResponseEntity.ok(retryService.reprocessarDlt(topico, limite));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("erro", e.getMessage()));
+        }
+    }
+}
@@ -14,7 +14,8 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.HemogramaDto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.HemogramaFhirParserService;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.HemogramaStorageService;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.SyntheticHemogramGeneratorService;
@@ -91,11 +92,11 @@ public class SyntheticHemogramController {
             String fhirBundle = hemogramGeneratorService.gerarHemogramasSinteticos(quantidade);
             
             // Processar via parser
-            List<HemogramaDto> hemogramas = fhirParser.processarNotificacaoFhir(fhirBundle);
+            List<HemogramaCompacto> hemogramas = fhirParser.processarNotificacaoFhir(fhirBundle);
             
             // Armazenar no buffer
             int hemogramasComRisco = 0;
-            for (HemogramaDto h : hemogramas) {
+            for (HemogramaCompacto h : hemogramas) {
                 storageService.addHemograma(h);
                 if (h.isRiscoHiv()) {
                     hemogramasComRisco++;
@@ -133,20 +134,20 @@ public class SyntheticHemogramController {
             logger.info("Teste de geração rápida");
             
             String fhirBundle = hemogramGeneratorService.gerarHemogramasSinteticos(1);
-            List<HemogramaDto> hemogramas = fhirParser.processarNotificacaoFhir(fhirBundle);
+            List<HemogramaCompacto> hemogramas = fhirParser.processarNotificacaoFhir(fhirBundle);
             
             if (hemogramas.isEmpty()) {
                 return ResponseEntity.internalServerError()
                     .body(createErrorResponse("Falha no teste: nenhum hemograma gerado"));
             }
 
-            HemogramaDto primeiro = hemogramas.get(0);
+            HemogramaCompacto primeiro = hemogramas.get(0);
             
             var testResult = new TestResult(
                 "OK",
                 primeiro.getObservationId(),
-                primeiro.getLeucocitos() != null,
-                primeiro.getHemoglobina() != null,
+                primeiro.possui(Analito.LEUCOCITOS),
+                primeiro.possui(Analito.HEMOGLOBINA),
                 primeiro.isRiscoHiv(),
                 "Geração sintética funcionando corretamente"
             );
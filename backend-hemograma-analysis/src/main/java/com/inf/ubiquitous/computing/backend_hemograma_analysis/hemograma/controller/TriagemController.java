@@ -0,0 +1,54 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.ContadorTriagemService;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem.DetectorTriagem;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem.TriagemService;
+
+/**
+ * 🔬 Detectores de triagem multi-doença e suas estatísticas
+ */
+@RestController
+@RequestMapping("/api/triagem")
+@CrossOrigin(origins = "*")
+public class TriagemController {
+
+    @Autowired
+    private TriagemService triagemService;
+
+    @Autowired
+    private ContadorTriagemService contadorTriagemService;
+
+    /**
+     * Lista os detectores registrados e seus tópicos Kafka
+     */
+    @GetMapping("/detectores")
+    public ResponseEntity<List<Map<String, String>>> listarDetectores() {
+        List<Map<String, String>> detectores = triagemService.getDetectores().stream()
+                .map(d -> Map.of("nome", d.getNome(), "topico", d.getTopico()))
+                .toList();
+        return ResponseEntity.ok(detectores);
+    }
+
+    /**
+     * Total, por região e por grau de um detector
+     */
+    @GetMapping("/{nome}/estatisticas")
+    public ResponseEntity<Map<String, Object>> getEstatisticas(@PathVariable String nome) {
+        DetectorTriagem<?> detector = triagemService.getDetector(nome);
+        if (detector == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(contadorTriagemService.obterEstatisticas(detector));
+    }
+}
@@ -0,0 +1,26 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto;
+
+import java.util.Map;
+
+/**
+ * Resposta de /api/estatisticas/dashboard (mesmos campos do antigo Map)
+ */
+public record DashboardEstatisticasDto(
+        Resumo resumo,
+        Map<String, Long> porRegiao,
+        Map<String, Long> porIdade,
+        Map<String, Long> porSexo,
+        String ultimaAtualizacao
+) {
+
+    /**
+     * Total do intervalo e janelas móveis contadas a partir de hoje
+     */
+    public record Resumo(
+            long totalCasos,
+            long casosHoje,
+            long casosUltimos7Dias,
+            long casosUltimos30Dias,
+            String dataAtualizacao
+    ) {}
+}
@@ -2,6 +2,7 @@ package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.Map;
 import java.util.Objects;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
@@ -52,6 +53,9 @@ public class HemogramaDto {
     private boolean riscoHiv;
     private String motivoRisco;
 
+    // Achados da triagem multi-doença (nome do detector -> descrição); null quando não há
+    private Map<String, String> triagem;
+
     // ================= Getters e Setters =================
     public String getObservationId() { return observationId; }
     public void setObservationId(String observationId) { this.observationId = observationId; }
@@ -180,6 +184,9 @@ public class HemogramaDto {
     public String getMotivoRisco() { return motivoRisco; }
     public void setMotivoRisco(String motivoRisco) { this.motivoRisco = motivoRisco; }
 
+    public Map<String, String> getTriagem() { return triagem; }
+    public void setTriagem(Map<String, String> triagem) { this.triagem = triagem; }
+
     // ================= Métodos auxiliares =================
 
     /**
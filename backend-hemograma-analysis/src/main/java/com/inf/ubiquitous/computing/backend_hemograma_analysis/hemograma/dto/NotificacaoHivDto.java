@@ -1,12 +1,17 @@
 package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class NotificacaoHivDto {
     
+    // Identificador estável do evento: reentregas e reenvios trazem o mesmo valor (deduplicação no consumidor)
+    @JsonProperty("eventoId")
+    private String eventoId;
+    
     @JsonProperty("tipo")
     private String tipo;
     
@@ -37,6 +42,7 @@ public class NotificacaoHivDto {
     
     // Constructors
     public NotificacaoHivDto() {
+        this.eventoId = UUID.randomUUID().toString();
         this.timestamp = LocalDateTime.now();
     }
     
@@ -51,10 +57,32 @@ public class NotificacaoHivDto {
         this.faixaEtaria = faixaEtaria;
         this.sexo = sexo;
         this.motivoRisco = motivoRisco;
+        this.eventoId = UUID.randomUUID().toString();
         this.timestamp = LocalDateTime.now();
     }
     
+    /**
+     * Todos os campos, sem gerar eventoId/timestamp (decodificação de mensagens)
+     */
+    public NotificacaoHivDto(String eventoId, String tipo, String hemogramaId, String pacienteId,
+                            String regiao, String estado, String faixaEtaria,
+                            String sexo, String motivoRisco, LocalDateTime timestamp) {
+        this.eventoId = eventoId;
+        this.tipo = tipo;
+        this.hemogramaId = hemogramaId;
+        this.pacienteId = pacienteId;
+        this.regiao = regiao;
+        this.estado = estado;
+        this.faixaEtaria = faixaEtaria;
+        this.sexo = sexo;
+        this.motivoRisco = motivoRisco;
+        this.timestamp = timestamp;
+    }
+    
     // Getters e Setters
+    public String getEventoId() { return eventoId; }
+    public void setEventoId(String eventoId) { this.eventoId = eventoId; }
+    
     public String getTipo() { return tipo; }
     public void setTipo(String tipo) { this.tipo = tipo; }
     
@@ -85,7 +113,8 @@ public class NotificacaoHivDto {
     @Override
     public String toString() {
         return "NotificacaoHivDto{" +
-                "tipo='" + tipo + '\'' +
+                "eventoId='" + eventoId + '\'' +
+                ", tipo='" + tipo + '\'' +
                 ", hemogramaId='" + hemogramaId + '\'' +
                 ", regiao='" + regiao + '\'' +
                 ", motivoRisco='" + motivoRisco + '\'' +
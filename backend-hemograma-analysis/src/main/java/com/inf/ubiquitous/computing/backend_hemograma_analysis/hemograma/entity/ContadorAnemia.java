@@ -0,0 +1,21 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * Contadores agregados de casos de anemia detectados na triagem
+ */
+@Entity
+@Table(name = "contador_anemia",
+       indexes = {
+           @Index(name = "idx_contador_anemia_data_regiao", columnList = "data, regiao"),
+           @Index(name = "idx_contador_anemia_demografia", columnList = "faixaEtaria, sexo, regiao")
+       },
+       uniqueConstraints = {
+           @UniqueConstraint(name = "uk_contador_anemia_chave", columnNames = {"data", "faixaEtaria", "sexo", "regiao", "estado", "grau"})
+       })
+public class ContadorAnemia extends ContadorTriagem {
+}
@@ -7,18 +7,19 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.Index;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 
 /**
  * Entity para armazenar contadores agregados de casos HIV por região, idade e sexo.
  * NÃO armazena dados individuais dos pacientes, apenas estatísticas agregadas.
  */
 @Entity
+// Índices de cobertura (com INCLUDE, que o JPA não expressa) são criados pelo EsquemaContadorHivService
 @Table(name = "contador_hiv", 
-       indexes = {
-           @Index(name = "idx_contador_data_regiao", columnList = "data, regiao"),
-           @Index(name = "idx_contador_demografia", columnList = "faixaEtaria, sexo, regiao")
+       uniqueConstraints = {
+           // Alvo do ON CONFLICT do AgregadorContadoresService
+           @UniqueConstraint(name = "uk_contador_hiv_chave", columnNames = {"data", "faixaEtaria", "sexo", "regiao", "estado"})
        })
 public class ContadorHiv {
     
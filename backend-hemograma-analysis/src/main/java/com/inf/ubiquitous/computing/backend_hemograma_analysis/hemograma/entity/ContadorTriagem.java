@@ -0,0 +1,78 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity;
+
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.MappedSuperclass;
+
+/**
+ * Base dos contadores agregados dos detectores de triagem (plaquetopenia, anemia, neutropenia...).
+ * Mesmas dimensões do {@link ContadorHiv} mais o grau de severidade; cada detector tem sua própria tabela.
+ * NÃO armazena dados individuais dos pacientes, apenas estatísticas agregadas.
+ */
+@MappedSuperclass
+public abstract class ContadorTriagem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate data;
+
+    @Column(nullable = false, length = 20)
+    private String faixaEtaria;  // "0-17", "18-29", "30-44", "45-59", "60-74", "75+"
+
+    @Column(nullable = false, length = 1)
+    private String sexo;  // "M" ou "F"
+
+    @Column(nullable = false, length = 50)
+    private String regiao;
+
+    @Column(length = 50)
+    private String estado;
+
+    @Column(nullable = false)
+    private Integer grau;  // resultado do detector (1 = leve, 2 = moderado, 3 = grave)
+
+    @Column(nullable = false)
+    private Integer quantidade;
+
+    @Column(nullable = false, updatable = false)
+    private java.time.Instant criadoEm;
+
+    @Column(nullable = false)
+    private java.time.Instant atualizadoEm;
+
+    protected ContadorTriagem() {
+        this.criadoEm = java.time.Instant.now();
+        this.atualizadoEm = java.time.Instant.now();
+    }
+
+    public Long getId() { return id; }
+    public LocalDate getData() { return data; }
+    public String getFaixaEtaria() { return faixaEtaria; }
+    public String getSexo() { return sexo; }
+    public String getRegiao() { return regiao; }
+    public String getEstado() { return estado; }
+    public Integer getGrau() { return grau; }
+    public Integer getQuantidade() { return quantidade; }
+    public java.time.Instant getCriadoEm() { return criadoEm; }
+    public java.time.Instant getAtualizadoEm() { return atualizadoEm; }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+                "data=" + data +
+                ", faixaEtaria='" + faixaEtaria + '\'' +
+                ", sexo='" + sexo + '\'' +
+                ", regiao='" + regiao + '\'' +
+                ", estado='" + estado + '\'' +
+                ", grau=" + grau +
+                ", quantidade=" + quantidade +
+                '}';
+    }
+}
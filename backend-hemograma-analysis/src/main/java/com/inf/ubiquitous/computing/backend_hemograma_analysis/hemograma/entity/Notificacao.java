@@ -8,16 +8,27 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notificacao")
+@Table(name = "notificacao", indexes = {
+        // Listagem por cursor (ORDER BY data_criacao DESC, id DESC)
+        @Index(name = "idx_notificacao_data_id", columnList = "data_criacao, id")
+}, uniqueConstraints = {
+        // Um registro por evento Kafka, mesmo com reentrega
+        @UniqueConstraint(name = "uk_notificacao_evento", columnNames = "evento_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Notificacao {
 
+    // Sequência alocada em blocos: permite INSERT em lote (ver EsquemaNotificacaoService)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notificacao_seq")
+    @SequenceGenerator(name = "notificacao_seq", sequenceName = "notificacao_seq", allocationSize = 50)
     private Long id;
 
+    @Column(name = "evento_id", length = 36)
+    private String eventoId;
+
     @Column(nullable = false)
     private String tipo;
 
@@ -0,0 +1,84 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Analitos do hemograma com seus códigos LOINC (incluindo códigos alternativos comuns).
+ * A ordem das constantes define a posição do valor em {@link HemogramaCompacto} - não reordenar.
+ */
+public enum Analito {
+
+    // Contagens principais
+    LEUCOCITOS("6690-2", "26464-8"),
+    ERITROCITOS("789-8"),
+    HEMOGLOBINA("718-7"),
+    HEMATOCRITO("4544-3"),
+    PLAQUETAS("777-3"),
+
+    // Índices hematimétricos
+    MCV("787-2"),
+    MCH("785-6"),
+    MCHC("786-4"),
+    RDW_CV("788-0"),
+    RDW_SD("21000-5"),
+
+    // Diferencial leucocitário (%)
+    NEUTROFILOS("770-8", "33743-4"),
+    LINFOCITOS("736-9", "26474-7"),
+    MONOCITOS("5905-5"),
+    EOSINOFILOS("713-8"),
+    BASOFILOS("706-2"),
+
+    // Contagem absoluta (/μL)
+    NEUTROFILOS_ABS("751-8"),
+    LINFOCITOS_ABS("731-0"),
+    MONOCITOS_ABS("742-7"),
+    EOSINOFILOS_ABS("711-2"),
+    BASOFILOS_ABS("704-7"),
+
+    // Índices plaquetários
+    MPV("32623-1"),
+    PDW("49498-9");
+
+    public static final int TOTAL = values().length;
+
+    private static final Analito[] VALORES = values();
+    private static final Map<String, Analito> POR_CODIGO_LOINC = new HashMap<>();
+
+    static {
+        for (Analito analito : VALORES) {
+            for (String codigo : analito.codigosLoinc) {
+                POR_CODIGO_LOINC.put(codigo, analito);
+            }
+        }
+    }
+
+    private final String[] codigosLoinc;
+
+    Analito(String... codigosLoinc) {
+        this.codigosLoinc = codigosLoinc;
+    }
+
+    public String[] getCodigosLoinc() {
+        return codigosLoinc.clone();
+    }
+
+    /**
+     * Bit do analito nas máscaras de presença
+     */
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Retorna o analito de um código LOINC ou null se o código não for mapeado
+     */
+    public static Analito porCodigoLoinc(String codigo) {
+        return codigo != null ? POR_CODIGO_LOINC.get(codigo) : null;
+    }
+
+    public static Analito porIndice(int indice) {
+        return VALORES[indice];
+    }
+}
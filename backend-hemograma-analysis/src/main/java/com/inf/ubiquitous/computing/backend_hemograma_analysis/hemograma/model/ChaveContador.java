@@ -0,0 +1,18 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model;
+
+import java.time.LocalDate;
+
+/**
+ * Chave de agregação dos contadores epidemiológicos (uma linha de contador_hiv / contador_&lt;detector&gt;).
+ * {@code grau} é 0 nas tabelas sem severidade (contador_hiv); estado nulo é normalizado para "".
+ */
+public record ChaveContador(LocalDate data, String faixaEtaria, String sexo, String regiao, String estado, int grau) {
+
+    public ChaveContador {
+        estado = estado != null ? estado : "";
+    }
+
+    public ChaveContador(LocalDate data, String faixaEtaria, String sexo, String regiao, String estado) {
+        this(data, faixaEtaria, sexo, regiao, estado, 0);
+    }
+}
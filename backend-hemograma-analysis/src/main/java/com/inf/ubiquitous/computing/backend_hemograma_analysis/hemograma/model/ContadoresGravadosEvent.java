@@ -0,0 +1,7 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model;
+
+/**
+ * Publicado depois que um lote de contadores foi gravado (e commitado) em {@code tabela}
+ */
+public record ContadoresGravadosEvent(String tabela) {
+}
@@ -0,0 +1,29 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Posição de paginação keyset: valor da coluna de ordenação (data / dataCriacao, em ISO-8601)
+ * e o ID como desempate. Trafega como token opaco ("valor|id" em Base64 URL-safe).
+ */
+public record CursorPaginacao(String valor, long id) {
+
+    public String codificar() {
+        String bruto = valor + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bruto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException se o token não foi gerado por {@link #codificar()}
+     */
+    public static CursorPaginacao decodificar(String token) {
+        try {
+            String bruto = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separador = bruto.lastIndexOf('|');
+            return new CursorPaginacao(bruto.substring(0, separador), Long.parseLong(bruto.substring(separador + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cursor inválido: " + token, e);
+        }
+    }
+}
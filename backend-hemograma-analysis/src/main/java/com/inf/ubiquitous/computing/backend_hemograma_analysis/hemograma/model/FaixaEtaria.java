@@ -0,0 +1,23 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model;
+
+/**
+ * Faixas etárias usadas nos contadores, nas notificações e nos dados demográficos
+ */
+public final class FaixaEtaria {
+
+    // faixa_etaria é NOT NULL e faz parte da chave dos contadores
+    public static final String NAO_INFORMADA = "Não informada";
+
+    private FaixaEtaria() {
+    }
+
+    public static String de(Integer idade) {
+        if (idade == null) return NAO_INFORMADA;
+        if (idade < 18) return "0-17";
+        if (idade < 30) return "18-29";
+        if (idade < 45) return "30-44";
+        if (idade < 60) return "45-59";
+        if (idade < 75) return "60-74";
+        return "75+";
+    }
+}
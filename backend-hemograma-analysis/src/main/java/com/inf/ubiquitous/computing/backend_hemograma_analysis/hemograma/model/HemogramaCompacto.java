@@ -0,0 +1,130 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model;
+
+import java.util.Date;
+
+/**
+ * Representação compacta de um hemograma usada internamente (parser, regras e buffer).
+ * Os 22 analitos ficam num double[] indexado por {@link Analito}, com uma máscara de bits
+ * indicando quais valores estão presentes e as unidades como códigos de {@link TabelaUnidades}.
+ * Só vira {@code HemogramaDto} na borda REST.
+ */
+public final class HemogramaCompacto {
+
+    public static final long SEM_DATA = Long.MIN_VALUE;
+
+    private String observationId;
+    private long dataColeta = SEM_DATA;
+    private final double[] valores = new double[Analito.TOTAL];
+    private final byte[] unidades = new byte[Analito.TOTAL];
+    private int presentes;
+
+    // Avaliação de risco HIV: máscara com os critérios atendidos
+    private boolean riscoHiv;
+    private int motivosRisco;
+
+    // Resultados dos detectores de triagem (índice = posição no TriagemService); null = todos negativos
+    private int[] resultadosTriagem;
+
+    public String getObservationId() { return observationId; }
+    public void setObservationId(String observationId) { this.observationId = observationId; }
+
+    /**
+     * Data de coleta em epoch millis ou {@link #SEM_DATA}
+     */
+    public long getDataColetaMillis() { return dataColeta; }
+    public void setDataColetaMillis(long dataColeta) { this.dataColeta = dataColeta; }
+
+    public boolean hasDataColeta() { return dataColeta != SEM_DATA; }
+
+    public Date getDataColeta() {
+        return hasDataColeta() ? new Date(dataColeta) : null;
+    }
+
+    public void setDataColeta(Date dataColeta) {
+        this.dataColeta = dataColeta != null ? dataColeta.getTime() : SEM_DATA;
+    }
+
+    /**
+     * Registra o valor de um analito (o último valor recebido prevalece, como no mapeamento original)
+     */
+    public void definir(Analito analito, double valor, String unidade) {
+        int i = analito.ordinal();
+        valores[i] = valor;
+        unidades[i] = (byte) TabelaUnidades.codigo(unidade);
+        presentes |= analito.bit();
+    }
+
+    /**
+     * Restaura um analito já com o código de {@link TabelaUnidades} (leitura de armazenamento serializado)
+     */
+    public void definir(int indiceAnalito, double valor, int codigoUnidade) {
+        valores[indiceAnalito] = valor;
+        unidades[indiceAnalito] = (byte) codigoUnidade;
+        presentes |= 1 << indiceAnalito;
+    }
+
+    public boolean possui(Analito analito) {
+        return (presentes & analito.bit()) != 0;
+    }
+
+    /**
+     * Valor do analito; só tem significado quando {@link #possui(Analito)} é verdadeiro
+     */
+    public double valor(Analito analito) {
+        return valores[analito.ordinal()];
+    }
+
+    /**
+     * Acesso por índice (ordinal do {@link Analito}) para avaliadores que percorrem arrays compilados
+     */
+    public double valor(int indiceAnalito) {
+        return valores[indiceAnalito];
+    }
+
+    /**
+     * Contagem celular convertida para /μL pela unidade do laudo (ver {@link TabelaUnidades#fatorPorMicrolitro})
+     */
+    public double valorPorMicrolitro(Analito analito) {
+        int i = analito.ordinal();
+        return valores[i] * TabelaUnidades.fatorPorMicrolitro(Byte.toUnsignedInt(unidades[i]));
+    }
+
+    public String unidade(Analito analito) {
+        return TabelaUnidades.unidade(Byte.toUnsignedInt(unidades[analito.ordinal()]));
+    }
+
+    public int codigoUnidade(int indiceAnalito) {
+        return Byte.toUnsignedInt(unidades[indiceAnalito]);
+    }
+
+    /**
+     * Máscara de presença: bit {@code Analito.bit()} ligado quando o valor existe
+     */
+    public int getPresentes() { return presentes; }
+
+    public boolean isRiscoHiv() { return riscoHiv; }
+    public void setRiscoHiv(boolean riscoHiv) { this.riscoHiv = riscoHiv; }
+
+    public int getMotivosRisco() { return motivosRisco; }
+    public void setMotivosRisco(int motivosRisco) { this.motivosRisco = motivosRisco; }
+
+    public int[] getResultadosTriagem() { return resultadosTriagem; }
+    public void setResultadosTriagem(int[] resultadosTriagem) { this.resultadosTriagem = resultadosTriagem; }
+
+    public boolean hasTriagemPositiva() { return resultadosTriagem != null; }
+
+    public int resultadoTriagem(int indiceDetector) {
+        return resultadosTriagem != null ? resultadosTriagem[indiceDetector] : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HemogramaCompacto{id='%s', leucocitos=%s, linfocitos=%s, hemoglobina=%s, riscoHiv=%s}",
+                observationId, formatar(Analito.LEUCOCITOS), formatar(Analito.LINFOCITOS),
+                formatar(Analito.HEMOGLOBINA), riscoHiv);
+    }
+
+    private String formatar(Analito analito) {
+        return possui(analito) ? String.valueOf(valor(analito)) : "null";
+    }
+}
@@ -0,0 +1,9 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model;
+
+import java.util.List;
+
+/**
+ * Página de uma listagem keyset. {@code proximoCursor} é nulo na última página.
+ */
+public record PaginaCursor<T>(List<T> itens, String proximoCursor) {
+}
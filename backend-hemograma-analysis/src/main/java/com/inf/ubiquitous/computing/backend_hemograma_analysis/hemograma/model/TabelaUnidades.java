@@ -0,0 +1,79 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tabela global de unidades internadas. Cada hemograma guarda só o código (1 byte) da unidade
+ * em vez de 22 Strings por registro. O código 0 significa "sem unidade".
+ */
+public final class TabelaUnidades {
+
+    private static final Logger logger = LoggerFactory.getLogger(TabelaUnidades.class);
+
+    public static final int SEM_UNIDADE = 0;
+    private static final int CAPACIDADE = 256;
+
+    private static final Map<String, Integer> codigos = new ConcurrentHashMap<>();
+    private static final String[] unidades = new String[CAPACIDADE];
+    // Multiplicador que leva uma contagem celular nesta unidade para /μL (1 quando não é uma unidade de milhares)
+    private static final double[] fatoresPorMicrolitro = new double[CAPACIDADE];
+    private static int proximoCodigo = 1;
+
+    private TabelaUnidades() {
+    }
+
+    /**
+     * Retorna o código da unidade, registrando-a na primeira ocorrência
+     */
+    public static int codigo(String unidade) {
+        if (unidade == null) {
+            return SEM_UNIDADE;
+        }
+        Integer codigo = codigos.get(unidade);
+        return codigo != null ? codigo : registrar(unidade);
+    }
+
+    public static String unidade(int codigo) {
+        return codigo == SEM_UNIDADE ? null : unidades[codigo];
+    }
+
+    /**
+     * Fator de conversão de uma contagem celular para /μL: 1000 para 10³/μL, 10^9/L, mil/mm³;
+     * 1 para /μL, /mm³ e para valores sem unidade (o padrão dos laudos recebidos)
+     */
+    public static double fatorPorMicrolitro(int codigo) {
+        return codigo == SEM_UNIDADE ? 1.0 : fatoresPorMicrolitro[codigo];
+    }
+
+    private static synchronized int registrar(String unidade) {
+        Integer existente = codigos.get(unidade);
+        if (existente != null) {
+            return existente;
+        }
+        if (proximoCodigo >= CAPACIDADE) {
+            logger.warn("Tabela de unidades cheia ({}), unidade descartada: {}", CAPACIDADE, unidade);
+            return SEM_UNIDADE;
+        }
+        int codigo = proximoCodigo++;
+        unidades[codigo] = unidade;
+        fatoresPorMicrolitro[codigo] = calcularFatorPorMicrolitro(unidade);
+        codigos.put(unidade, codigo);
+        return codigo;
+    }
+
+    private static double calcularFatorPorMicrolitro(String unidade) {
+        // "10*3/uL", "10*3/uL{cells}", "10^3/µL", "x10³/μL", "10*9/L", "mil/mm³", "K/uL" -> "103/ul", "109/l", "mil/mm3", "k/ul"
+        String normalizada = unidade.toLowerCase()
+                .replaceAll("\\{[^}]*}|[\\s^*]", "")
+                .replace('µ', 'u').replace('μ', 'u').replace('³', '3').replace('⁹', '9')
+                .replaceFirst("^x", "");
+        return switch (normalizada) {
+            case "103/ul", "103/mm3", "109/l", "mil/ul", "mil/mm3", "k/ul", "k/mm3" -> 1000.0;
+            default -> 1.0;
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.regras;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Formato do arquivo de regras de triagem (ex.: regras/risco-hiv.json)
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ConfiguracaoRegras {
+
+    private String versao;
+
+    // Só avalia se ao menos um destes analitos estiver presente (vazio = sempre avalia)
+    private List<String> exigeAlgum = new ArrayList<>();
+
+    private List<Regra> regras = new ArrayList<>();
+
+    public String getVersao() { return versao; }
+    public void setVersao(String versao) { this.versao = versao; }
+
+    public List<String> getExigeAlgum() { return exigeAlgum; }
+    public void setExigeAlgum(List<String> exigeAlgum) { this.exigeAlgum = exigeAlgum; }
+
+    public List<Regra> getRegras() { return regras; }
+    public void setRegras(List<Regra> regras) { this.regras = regras; }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Regra {
+        private String id;
+        private String analito;
+        private String operador;
+        private double limite;
+        private String descricao;
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+
+        public String getAnalito() { return analito; }
+        public void setAnalito(String analito) { this.analito = analito; }
+
+        public String getOperador() { return operador; }
+        public void setOperador(String operador) { this.operador = operador; }
+
+        public double getLimite() { return limite; }
+        public void setLimite(double limite) { this.limite = limite; }
+
+        public String getDescricao() { return descricao; }
+        public void setDescricao(String descricao) { this.descricao = descricao; }
+    }
+}
@@ -0,0 +1,264 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.regras;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Motor de regras de triagem HIV.
+ * Os critérios (analito, operador, limite e descrição) vêm de um
+ * arquivo JSON e são compilados em {@link RegrasCompiladas}. O arquivo é verificado periodicamente
+ * e recarregado quando muda; se a nova versão for inválida, as regras atuais continuam valendo.
+ *
+ * Cada regra mantém o mesmo bit entre recargas (pelo id), então máscaras já gravadas nos
+ * hemogramas do buffer continuam com a descrição correta. O bit de uma regra removida do arquivo
+ * é liberado e só é reaproveitado quando não houver nenhum bit ainda nunca usado.
+ * Entre restarts isso só vale com {@code hemograma.regras.hiv.bits-arquivo} configurado: a atribuição
+ * id → bit é gravada nesse arquivo e relida na subida, antes da primeira compilação. Sem ele os bits
+ * seguem a ordem do arquivo de regras, e máscaras do buffer mapeado ou da tabela de hemogramas
+ * gravadas antes de regras serem incluídas, removidas ou reordenadas podem ser descritas errado.
+ *
+ * Não há limites por sexo/faixa etária: os hemogramas FHIR recebidos não trazem dados do paciente.
+ */
+@Service
+public class MotorRegrasRiscoHiv {
+
+    private static final Logger logger = LoggerFactory.getLogger(MotorRegrasRiscoHiv.class);
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${hemograma.regras.hiv.arquivo:classpath:regras/risco-hiv.json}")
+    private String arquivoRegras;
+
+    // Atribuição id → bit persistida entre restarts (vazio: só em memória)
+    @Value("${hemograma.regras.hiv.bits-arquivo:}")
+    private String arquivoBits;
+
+    private volatile RegrasCompiladas regras;
+    private volatile long ultimaModificacao = -1;
+
+    // Bits atribuídos por id de regra e descrições por bit, preservados entre recargas
+    private final Map<String, Integer> bitsPorRegra = new HashMap<>();
+    private final String[] descricoesPorBit = new String[RegrasCompiladas.MAX_REGRAS];
+
+    /**
+     * Formato do arquivo de bits
+     */
+    static class AtribuicaoBits {
+        public Map<String, Integer> bits = new HashMap<>();
+        public String[] descricoes = new String[RegrasCompiladas.MAX_REGRAS];
+    }
+
+    @PostConstruct
+    public void inicializar() {
+        carregarBits();
+        if (!recarregar()) {
+            throw new IllegalStateException("Não foi possível carregar as regras de risco HIV: " + arquivoRegras);
+        }
+    }
+
+    public int avaliar(HemogramaCompacto h) {
+        return regras.avaliar(h);
+    }
+
+    public String descrever(int motivos) {
+        return regras.descrever(motivos);
+    }
+
+    public RegrasCompiladas getRegras() {
+        return regras;
+    }
+
+    public String getArquivoRegras() {
+        return arquivoRegras;
+    }
+
+    @Scheduled(fixedDelayString = "${hemograma.regras.hiv.verificacao-ms:10000}",
+               initialDelayString = "${hemograma.regras.hiv.verificacao-ms:10000}")
+    public void verificarAlteracoes() {
+        long modificacao = obterUltimaModificacao(resourceLoader.getResource(arquivoRegras));
+        if (modificacao > 0 && modificacao != ultimaModificacao) {
+            logger.info("🔄 Arquivo de regras HIV alterado, recarregando: {}", arquivoRegras);
+            recarregar();
+        }
+    }
+
+    /**
+     * Relê e recompila o arquivo de regras. Retorna false (mantendo as regras atuais) se for inválido.
+     */
+    public synchronized boolean recarregar() {
+        Resource resource = resourceLoader.getResource(arquivoRegras);
+        long modificacao = obterUltimaModificacao(resource);
+
+        try (InputStream in = resource.getInputStream()) {
+            ConfiguracaoRegras configuracao = objectMapper.readValue(in, ConfiguracaoRegras.class);
+            regras = compilar(configuracao);
+            ultimaModificacao = modificacao;
+            gravarBits();
+            logger.info("✅ Regras de risco HIV carregadas: versão={}, regras={}",
+                       regras.getVersao(), regras.getTotalRegras());
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            // Não tenta de novo até o arquivo mudar outra vez
+            ultimaModificacao = modificacao;
+            logger.error("❌ Regras de risco HIV inválidas em {}: {}", arquivoRegras, e.getMessage());
+            return false;
+        }
+    }
+
+    private RegrasCompiladas compilar(ConfiguracaoRegras configuracao) {
+        int mascaraExigida = 0;
+        for (String nome : configuracao.getExigeAlgum()) {
+            mascaraExigida |= analito(nome).bit();
+        }
+
+        List<ConfiguracaoRegras.Regra> lista = configuracao.getRegras();
+        int total = lista.size();
+        int[] analitos = new int[total];
+        int[] operadores = new int[total];
+        int[] bits = new int[total];
+        double[] limites = new double[total];
+
+        if (total > RegrasCompiladas.MAX_REGRAS) {
+            throw new IllegalArgumentException("Limite de " + RegrasCompiladas.MAX_REGRAS + " regras atingido: " + total);
+        }
+
+        // Bits novos só são efetivados se a compilação inteira for válida.
+        // Só os ids presentes no arquivo ficam com bit; os das regras removidas voltam a ficar livres.
+        Map<String, Integer> novosBits = new HashMap<>();
+        String[] novasDescricoes = descricoesPorBit.clone();
+        Set<String> ids = new HashSet<>();
+
+        for (ConfiguracaoRegras.Regra regra : lista) {
+            if (regra.getId() == null || !ids.add(regra.getId())) {
+                throw new IllegalArgumentException("Regra sem id ou com id repetido: " + regra.getId());
+            }
+            Integer bit = bitsPorRegra.get(regra.getId());
+            if (bit != null) {
+                novosBits.put(regra.getId(), bit);
+            }
+        }
+
+        for (int i = 0; i < total; i++) {
+            ConfiguracaoRegras.Regra regra = lista.get(i);
+            analitos[i] = analito(regra.getAnalito()).ordinal();
+            operadores[i] = RegrasCompiladas.operador(regra.getOperador());
+            limites[i] = regra.getLimite();
+
+            int bit = novosBits.computeIfAbsent(regra.getId(), id -> proximoBitLivre(novosBits, novasDescricoes));
+            bits[i] = 1 << bit;
+            novasDescricoes[bit] = regra.getDescricao() != null ? regra.getDescricao() : regra.getId();
+        }
+
+        bitsPorRegra.clear();
+        bitsPorRegra.putAll(novosBits);
+        System.arraycopy(novasDescricoes, 0, descricoesPorBit, 0, descricoesPorBit.length);
+
+        return new RegrasCompiladas(configuracao.getVersao(), mascaraExigida, analitos, operadores, bits,
+                limites, novasDescricoes);
+    }
+
+    private synchronized void carregarBits() {
+        if (arquivoBits == null || arquivoBits.isBlank() || !Files.exists(Path.of(arquivoBits))) {
+            return;
+        }
+        try {
+            AtribuicaoBits salvo = objectMapper.readValue(Path.of(arquivoBits).toFile(), AtribuicaoBits.class);
+            for (Map.Entry<String, Integer> regra : salvo.bits.entrySet()) {
+                int bit = regra.getValue();
+                if (bit < 0 || bit >= RegrasCompiladas.MAX_REGRAS) {
+                    throw new IllegalArgumentException("Bit fora do intervalo para a regra " + regra.getKey() + ": " + bit);
+                }
+            }
+            bitsPorRegra.putAll(salvo.bits);
+            for (int bit = 0; bit < Math.min(salvo.descricoes.length, descricoesPorBit.length); bit++) {
+                descricoesPorBit[bit] = salvo.descricoes[bit];
+            }
+            logger.info("📂 Bits das regras HIV carregados de {}: {} regras", arquivoBits, salvo.bits.size());
+        } catch (IOException | IllegalArgumentException e) {
+            // Sem a atribuição anterior, as máscaras antigas podem ser descritas errado
+            throw new IllegalStateException("Arquivo de bits das regras HIV inválido: " + arquivoBits, e);
+        }
+    }
+
+    /**
+     * Grava a atribuição atual (arquivo temporário + rename, para nunca deixar o arquivo pela metade)
+     */
+    private void gravarBits() {
+        if (arquivoBits == null || arquivoBits.isBlank()) {
+            return;
+        }
+        AtribuicaoBits atual = new AtribuicaoBits();
+        atual.bits.putAll(bitsPorRegra);
+        atual.descricoes = descricoesPorBit.clone();
+        Path destino = Path.of(arquivoBits).toAbsolutePath();
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(destino.getParent());
+            objectMapper.writeValue(temporario.toFile(), atual);
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("❌ Não foi possível gravar os bits das regras HIV em {}: {}", arquivoBits, e.getMessage());
+        }
+    }
+
+    /**
+     * Primeiro bit nunca usado; se todos já foram usados, o primeiro liberado por uma regra removida
+     * (máscaras antigas com esse bit passam a ser descritas pela regra nova)
+     */
+    private int proximoBitLivre(Map<String, Integer> usados, String[] descricoes) {
+        int ocupados = 0;
+        for (int bit : usados.values()) {
+            ocupados |= 1 << bit;
+        }
+        int liberado = -1;
+        for (int bit = 0; bit < RegrasCompiladas.MAX_REGRAS; bit++) {
+            if ((ocupados & (1 << bit)) != 0) continue;
+            if (descricoes[bit] == null) return bit;
+            if (liberado < 0) liberado = bit;
+        }
+        return liberado;
+    }
+
+    private Analito analito(String nome) {
+        try {
+            return Analito.valueOf(nome);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Analito desconhecido: " + nome);
+        }
+    }
+
+    private long obterUltimaModificacao(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            // Recurso dentro do jar não informa modificação; recarga só via endpoint
+            return 0;
+        }
+    }
+}
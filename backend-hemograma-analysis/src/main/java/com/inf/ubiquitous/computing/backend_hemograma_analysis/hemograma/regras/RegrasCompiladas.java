@@ -0,0 +1,103 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.regras;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+
+/**
+ * Conjunto de regras já compilado em arrays paralelos. A avaliação é uma única passada
+ * sobre as regras, sem alocação nem busca por nome.
+ * Imutável; uma recarga produz uma nova instância.
+ */
+public final class RegrasCompiladas {
+
+    public static final int MAX_REGRAS = Integer.SIZE;
+
+    static final int OP_MENOR = 0;
+    static final int OP_MENOR_IGUAL = 1;
+    static final int OP_MAIOR = 2;
+    static final int OP_MAIOR_IGUAL = 3;
+
+    private final String versao;
+    private final int mascaraExigida;
+    private final int total;
+    private final int[] analitos;
+    private final int[] operadores;
+    private final int[] bits;
+    private final double[] limites;
+    // Descrição por bit (inclui bits de regras removidas em recargas anteriores)
+    private final String[] descricoesPorBit;
+
+    RegrasCompiladas(String versao, int mascaraExigida, int[] analitos, int[] operadores, int[] bits,
+                     double[] limites, String[] descricoesPorBit) {
+        this.versao = versao;
+        this.mascaraExigida = mascaraExigida;
+        this.total = analitos.length;
+        this.analitos = analitos;
+        this.operadores = operadores;
+        this.bits = bits;
+        this.limites = limites;
+        this.descricoesPorBit = descricoesPorBit;
+    }
+
+    /**
+     * Avalia o hemograma; retorna a máscara de motivos (0 = sem risco)
+     */
+    public int avaliar(HemogramaCompacto h) {
+        int presentes = h.getPresentes();
+        if (mascaraExigida != 0 && (presentes & mascaraExigida) == 0) {
+            return 0;
+        }
+
+        int motivos = 0;
+        for (int i = 0; i < total; i++) {
+            int analito = analitos[i];
+            if ((presentes & (1 << analito)) == 0) {
+                continue;
+            }
+
+            double valor = h.valor(analito);
+            double limite = limites[i];
+            boolean atende = switch (operadores[i]) {
+                case OP_MENOR -> valor < limite;
+                case OP_MENOR_IGUAL -> valor <= limite;
+                case OP_MAIOR -> valor > limite;
+                default -> valor >= limite;
+            };
+            if (atende) {
+                motivos |= bits[i];
+            }
+        }
+        return motivos;
+    }
+
+    /**
+     * Explicação médica do risco a partir da máscara de motivos
+     */
+    public String descrever(int motivos) {
+        List<String> descricoes = new ArrayList<>();
+        for (int bit = 0; bit < MAX_REGRAS; bit++) {
+            if ((motivos & (1 << bit)) != 0 && descricoesPorBit[bit] != null) {
+                descricoes.add(descricoesPorBit[bit]);
+            }
+        }
+        return descricoes.isEmpty() ? "Risco indeterminado" : String.join(", ", descricoes);
+    }
+
+    public String getVersao() { return versao; }
+    public int getTotalRegras() { return total; }
+
+    static int operador(String operador) {
+        if (operador == null) {
+            throw new IllegalArgumentException("Operador não informado");
+        }
+        return switch (operador.trim()) {
+            case "<" -> OP_MENOR;
+            case "<=" -> OP_MENOR_IGUAL;
+            case ">" -> OP_MAIOR;
+            case ">=" -> OP_MAIOR_IGUAL;
+            default -> throw new IllegalArgumentException("Operador inválido: " + operador);
+        };
+    }
+}
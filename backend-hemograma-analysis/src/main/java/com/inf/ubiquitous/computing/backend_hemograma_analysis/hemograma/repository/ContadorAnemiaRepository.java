@@ -0,0 +1,9 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository;
+
+import org.springframework.stereotype.Repository;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.ContadorAnemia;
+
+@Repository
+public interface ContadorAnemiaRepository extends ContadorTriagemRepository<ContadorAnemia> {
+}
@@ -0,0 +1,73 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.ContadorHiv;
+
+import jakarta.persistence.criteria.Predicate;
+
+/**
+ * Filtros dinâmicos de {@link ContadorHiv}: só entram no WHERE os filtros informados,
+ * então o PostgreSQL planeja cada combinação com o índice certo
+ * (em vez do genérico {@code (:x IS NULL OR c.x = :x)}).
+ */
+public final class ContadorHivSpecifications {
+
+    private ContadorHivSpecifications() {
+    }
+
+    public static Specification<ContadorHiv> comFiltros(
+            LocalDate dataInicio, LocalDate dataFim, String regiao, String estado,
+            String faixaEtaria, String sexo) {
+
+        return (root, query, cb) -> {
+            List<Predicate> predicados = new ArrayList<>(6);
+            if (dataInicio != null) {
+                predicados.add(cb.greaterThanOrEqualTo(root.get("data"), dataInicio));
+            }
+            if (dataFim != null) {
+                predicados.add(cb.lessThanOrEqualTo(root.get("data"), dataFim));
+            }
+            if (regiao != null) {
+                predicados.add(cb.equal(root.get("regiao"), regiao));
+            }
+            if (estado != null) {
+                predicados.add(cb.equal(root.get("estado"), estado));
+            }
+            if (faixaEtaria != null) {
+                predicados.add(cb.equal(root.get("faixaEtaria"), faixaEtaria));
+            }
+            if (sexo != null) {
+                predicados.add(cb.equal(root.get("sexo"), sexo));
+            }
+            return cb.and(predicados.toArray(new Predicate[0]));
+        };
+    }
+
+    /**
+     * Linhas depois da posição do cursor na ordem (data, id). Combinado com ORDER BY data, id
+     * e LIMIT, cada página é uma busca no índice, sem OFFSET. O limite simples em data é redundante
+     * com o OR, mas é ele que o PostgreSQL usa como início da faixa no índice (data, id); sem ele
+     * as linhas anteriores ao cursor seriam lidas e filtradas.
+     */
+    public static Specification<ContadorHiv> depoisDe(LocalDate data, long id, boolean descendente) {
+        return (root, query, cb) -> {
+            if (descendente) {
+                return cb.and(
+                        cb.lessThanOrEqualTo(root.get("data"), data),
+                        cb.or(
+                                cb.lessThan(root.get("data"), data),
+                                cb.and(cb.equal(root.get("data"), data), cb.lessThan(root.get("id"), id))));
+            }
+            return cb.and(
+                    cb.greaterThanOrEqualTo(root.get("data"), data),
+                    cb.or(
+                            cb.greaterThan(root.get("data"), data),
+                            cb.and(cb.equal(root.get("data"), data), cb.greaterThan(root.get("id"), id))));
+        };
+    }
+}
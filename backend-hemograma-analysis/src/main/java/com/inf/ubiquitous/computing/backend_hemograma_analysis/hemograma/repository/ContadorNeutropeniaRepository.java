@@ -0,0 +1,9 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository;
+
+import org.springframework.stereotype.Repository;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.ContadorNeutropenia;
+
+@Repository
+public interface ContadorNeutropeniaRepository extends ContadorTriagemRepository<ContadorNeutropenia> {
+}
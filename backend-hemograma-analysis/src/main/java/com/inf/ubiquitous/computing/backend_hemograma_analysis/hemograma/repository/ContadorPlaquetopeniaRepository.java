@@ -0,0 +1,9 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository;
+
+import org.springframework.stereotype.Repository;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.ContadorPlaquetopenia;
+
+@Repository
+public interface ContadorPlaquetopeniaRepository extends ContadorTriagemRepository<ContadorPlaquetopenia> {
+}
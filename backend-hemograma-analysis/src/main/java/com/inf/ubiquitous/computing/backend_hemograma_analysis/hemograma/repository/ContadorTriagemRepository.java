@@ -0,0 +1,25 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.ContadorTriagem;
+
+/**
+ * Consultas comuns às tabelas de contadores de triagem (uma por detector)
+ */
+@NoRepositoryBean
+public interface ContadorTriagemRepository<C extends ContadorTriagem> extends JpaRepository<C, Long> {
+
+    @Query("SELECT c.regiao, SUM(c.quantidade) FROM #{#entityName} c GROUP BY c.regiao ORDER BY SUM(c.quantidade) DESC")
+    List<Object[]> contarPorRegiao();
+
+    @Query("SELECT c.grau, SUM(c.quantidade) FROM #{#entityName} c GROUP BY c.grau ORDER BY c.grau")
+    List<Object[]> contarPorGrau();
+
+    @Query("SELECT SUM(c.quantidade) FROM #{#entityName} c")
+    Long contarTotal();
+}
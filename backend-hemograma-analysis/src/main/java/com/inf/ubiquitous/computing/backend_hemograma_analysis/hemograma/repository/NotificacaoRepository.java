@@ -9,7 +9,9 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 @Repository
 public interface NotificacaoRepository extends JpaRepository<Notificacao, Long> {
@@ -32,6 +34,19 @@ public interface NotificacaoRepository extends JpaRepository<Notificacao, Long>
     // Busca com paginação
     Page<Notificacao> findAllByOrderByDataCriacaoDesc(Pageable pageable);
 
+    // Paginação keyset: primeira página e páginas seguintes a partir de (dataCriacao, id); passar PageRequest.of(0, n)
+    List<Notificacao> findAllByOrderByDataCriacaoDescIdDesc(Pageable limite);
+
+    // "dataCriacao <= :data" é redundante, mas é o limite que o PostgreSQL usa na faixa do índice (data_criacao, id)
+    @Query("SELECT n FROM Notificacao n WHERE n.dataCriacao <= :data " +
+           "AND (n.dataCriacao < :data OR (n.dataCriacao = :data AND n.id < :id)) " +
+           "ORDER BY n.dataCriacao DESC, n.id DESC")
+    List<Notificacao> buscarAntesDe(@Param("data") LocalDateTime data, @Param("id") Long id, Pageable limite);
+
+    // Eventos do lote que já foram gravados (deduplicação de reentregas)
+    @Query("SELECT n.eventoId FROM Notificacao n WHERE n.eventoId IN :eventos")
+    Set<String> buscarEventosExistentes(@Param("eventos") Collection<String> eventos);
+
     // Busca por período
     @Query("SELECT n FROM Notificacao n WHERE n.dataCriacao BETWEEN :inicio AND :fim ORDER BY n.dataCriacao DESC")
     List<Notificacao> findByPeriodo(LocalDateTime inicio, LocalDateTime fim);
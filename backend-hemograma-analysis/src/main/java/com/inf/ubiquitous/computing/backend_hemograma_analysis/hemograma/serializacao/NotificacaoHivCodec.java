@@ -0,0 +1,215 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.serializacao;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.NotificacaoHivDto;
+
+/**
+ * Formato binário de {@link NotificacaoHivDto} nas mensagens Kafka.
+ * <pre>
+ * byte   mágico (0x00; JSON começa com '{', então os dois formatos convivem no mesmo tópico)
+ * short  id do esquema
+ * short  bits de presença (campo nulo não ocupa espaço)
+ * ...    campos na ordem do esquema: eventoId como 16 bytes quando é UUID, textos com tamanho varint
+ *        + UTF-8, timestamp em segundos (varint; mesma precisão do JSON)
+ * </pre>
+ * {@link #LEITORES} faz as vezes de registro de esquemas: cada mensagem carrega o id do esquema com que
+ * foi escrita, um esquema novo ganha outro id e os anteriores continuam legíveis.
+ */
+public final class NotificacaoHivCodec {
+
+    public static final byte MAGICO = 0x00;
+    public static final short ESQUEMA_V1 = 1;
+    public static final short ESQUEMA_ATUAL = ESQUEMA_V1;
+
+    private static final Map<Short, Function<ByteBuffer, NotificacaoHivDto>> LEITORES =
+            Map.of(ESQUEMA_V1, NotificacaoHivCodec::lerV1);
+
+    // Esquema v1: bits de presença
+    private static final int CAMPOS_TEXTO = 8; // tipo .. motivoRisco
+    private static final int BIT_EVENTO = 1 << CAMPOS_TEXTO;
+    private static final int BIT_EVENTO_UUID = BIT_EVENTO << 1;
+    private static final int BIT_TIMESTAMP = BIT_EVENTO << 2;
+
+    private static final int CABECALHO = 1 + Short.BYTES + Short.BYTES;
+
+    private NotificacaoHivCodec() {
+    }
+
+    public static boolean isBinario(byte[] dados) {
+        return dados.length > 0 && dados[0] == MAGICO;
+    }
+
+    public static byte[] codificar(NotificacaoHivDto dto) {
+        String[] textos = textosV1(dto);
+        byte[][] bytes = new byte[CAMPOS_TEXTO][];
+        int presenca = 0;
+        int tamanho = CABECALHO;
+        for (int i = 0; i < CAMPOS_TEXTO; i++) {
+            if (textos[i] != null) {
+                bytes[i] = textos[i].getBytes(StandardCharsets.UTF_8);
+                tamanho += tamanhoVarint(bytes[i].length) + bytes[i].length;
+                presenca |= 1 << i;
+            }
+        }
+
+        UUID uuid = null;
+        byte[] evento = null;
+        if (dto.getEventoId() != null) {
+            presenca |= BIT_EVENTO;
+            uuid = comoUuid(dto.getEventoId());
+            if (uuid != null) {
+                presenca |= BIT_EVENTO_UUID;
+                tamanho += 2 * Long.BYTES;
+            } else {
+                evento = dto.getEventoId().getBytes(StandardCharsets.UTF_8);
+                tamanho += tamanhoVarint(evento.length) + evento.length;
+            }
+        }
+
+        long segundos = 0;
+        if (dto.getTimestamp() != null) {
+            presenca |= BIT_TIMESTAMP;
+            segundos = dto.getTimestamp().toEpochSecond(ZoneOffset.UTC);
+            tamanho += tamanhoVarint(segundos);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(tamanho);
+        buffer.put(MAGICO).putShort(ESQUEMA_ATUAL).putShort((short) presenca);
+        if (uuid != null) {
+            buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        } else if (evento != null) {
+            escreverBytes(buffer, evento);
+        }
+        for (int i = 0; i < CAMPOS_TEXTO; i++) {
+            if (bytes[i] != null) {
+                escreverBytes(buffer, bytes[i]);
+            }
+        }
+        if ((presenca & BIT_TIMESTAMP) != 0) {
+            escreverVarint(buffer, segundos);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws SerializationException se a mensagem não está no formato binário ou o esquema é desconhecido
+     */
+    public static NotificacaoHivDto decodificar(byte[] dados) {
+        if (!isBinario(dados) || dados.length < CABECALHO) {
+            throw new SerializationException("Mensagem não está no formato binário de notificação");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(dados);
+        buffer.get();
+        short esquema = buffer.getShort();
+        Function<ByteBuffer, NotificacaoHivDto> leitor = LEITORES.get(esquema);
+        if (leitor == null) {
+            throw new SerializationException("Esquema de notificação desconhecido: " + esquema);
+        }
+        try {
+            return leitor.apply(buffer);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new SerializationException("Mensagem de notificação truncada (esquema " + esquema + ")", e);
+        } catch (DateTimeException e) {
+            throw new SerializationException("Timestamp inválido na mensagem de notificação", e);
+        }
+    }
+
+    private static String[] textosV1(NotificacaoHivDto dto) {
+        return new String[] {
+            dto.getTipo(), dto.getHemogramaId(), dto.getPacienteId(), dto.getRegiao(),
+            dto.getEstado(), dto.getFaixaEtaria(), dto.getSexo(), dto.getMotivoRisco()
+        };
+    }
+
+    private static NotificacaoHivDto lerV1(ByteBuffer buffer) {
+        int presenca = buffer.getShort() & 0xFFFF;
+
+        String eventoId = null;
+        if ((presenca & BIT_EVENTO_UUID) != 0) {
+            eventoId = new UUID(buffer.getLong(), buffer.getLong()).toString();
+        } else if ((presenca & BIT_EVENTO) != 0) {
+            eventoId = lerTexto(buffer);
+        }
+
+        String[] textos = new String[CAMPOS_TEXTO];
+        for (int i = 0; i < CAMPOS_TEXTO; i++) {
+            if ((presenca & (1 << i)) != 0) {
+                textos[i] = lerTexto(buffer);
+            }
+        }
+
+        LocalDateTime timestamp = (presenca & BIT_TIMESTAMP) != 0
+                ? LocalDateTime.ofEpochSecond(lerVarint(buffer), 0, ZoneOffset.UTC)
+                : null;
+
+        return new NotificacaoHivDto(eventoId, textos[0], textos[1], textos[2], textos[3],
+                textos[4], textos[5], textos[6], textos[7], timestamp);
+    }
+
+    /**
+     * UUID só na forma canônica (36 caracteres), para a volta para texto devolver o mesmo valor
+     */
+    private static UUID comoUuid(String valor) {
+        if (valor.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(valor);
+            return uuid.toString().equals(valor) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void escreverBytes(ByteBuffer buffer, byte[] bytes) {
+        escreverVarint(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String lerTexto(ByteBuffer buffer) {
+        int tamanho = (int) lerVarint(buffer);
+        String texto = new String(buffer.array(), buffer.position(), tamanho, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + tamanho);
+        return texto;
+    }
+
+    private static int tamanhoVarint(long valor) {
+        int bytes = 1;
+        while ((valor & ~0x7FL) != 0) {
+            valor >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    private static void escreverVarint(ByteBuffer buffer, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            buffer.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        buffer.put((byte) valor);
+    }
+
+    private static long lerVarint(ByteBuffer buffer) {
+        long valor = 0;
+        for (int deslocamento = 0; deslocamento < 64; deslocamento += 7) {
+            byte b = buffer.get();
+            valor |= (long) (b & 0x7F) << deslocamento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new SerializationException("Varint inválido na mensagem de notificação");
+    }
+}
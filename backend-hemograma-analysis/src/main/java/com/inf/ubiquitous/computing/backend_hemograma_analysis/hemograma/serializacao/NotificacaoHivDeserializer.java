@@ -0,0 +1,35 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.serializacao;
+
+import java.io.IOException;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.JacksonUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.NotificacaoHivDto;
+
+/**
+ * Lê o formato binário ({@link NotificacaoHivCodec}) e, como fallback, o JSON das versões anteriores
+ * (mensagens ainda nos tópicos, DLT, produtores com notificacao.kafka.formato=json).
+ * O JSON é sempre lido como {@link NotificacaoHivDto}: os headers de tipo são ignorados.
+ */
+public class NotificacaoHivDeserializer implements Deserializer<NotificacaoHivDto> {
+
+    private final ObjectMapper objectMapper = JacksonUtils.enhancedObjectMapper();
+
+    @Override
+    public NotificacaoHivDto deserialize(String topic, byte[] dados) {
+        if (dados == null) {
+            return null;
+        }
+        if (NotificacaoHivCodec.isBinario(dados)) {
+            return NotificacaoHivCodec.decodificar(dados);
+        }
+        try {
+            return objectMapper.readValue(dados, NotificacaoHivDto.class);
+        } catch (IOException e) {
+            throw new SerializationException("Notificação em formato desconhecido no tópico " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.serializacao;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.NotificacaoHivDto;
+
+/**
+ * Serializer Kafka do formato binário ({@link NotificacaoHivCodec}); sem headers de tipo
+ */
+public class NotificacaoHivSerializer implements Serializer<NotificacaoHivDto> {
+
+    @Override
+    public byte[] serialize(String topic, NotificacaoHivDto dto) {
+        return dto == null ? null : NotificacaoHivCodec.codificar(dto);
+    }
+}
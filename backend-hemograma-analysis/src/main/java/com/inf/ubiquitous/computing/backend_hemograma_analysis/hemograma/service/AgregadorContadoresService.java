@@ -0,0 +1,290 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.ChaveContador;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.ContadoresGravadosEvent;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Camada de agregação em memória para os contadores epidemiológicos.
+ * Cada caso detectado só incrementa um {@link LongAdder} da sua chave (data, faixa, sexo, região, estado[, grau]);
+ * os incrementos acumulados são gravados periodicamente (ou quando passam do limite) num único
+ * batch de {@code INSERT ... ON CONFLICT DO UPDATE SET quantidade = quantidade + EXCLUDED.quantidade}.
+ * A constraint única nas colunas da chave garante a soma correta mesmo com vários nós gravando.
+ * Tabelas com rollups (ex.: contador_hiv_semanal/mensal) recebem o mesmo lote somado por período,
+ * na mesma transação da tabela diária, para o rollup nunca divergir dela.
+ * Cada lote gravado publica um {@link ContadoresGravadosEvent} (invalidação dos caches de estatísticas).
+ */
+@Service
+public class AgregadorContadoresService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AgregadorContadoresService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${contadores.flush.max-pendentes:500}")
+    private long maxPendentes;
+
+    private final Map<String, TabelaContadores> tabelas = new ConcurrentHashMap<>();
+    private final LongAdder totalPendente = new LongAdder();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * Registra uma tabela de contadores. {@code comGrau} indica se a coluna grau faz parte da chave.
+     */
+    public void registrarTabela(String tabela, boolean comGrau) {
+        tabelas.computeIfAbsent(tabela, t -> new TabelaContadores(t, comGrau, montarUpsert(t, comGrau)));
+    }
+
+    /**
+     * Passa a manter {@code tabelaRollup} junto com {@code tabela}: cada chave gravada é somada também
+     * na linha do período {@code inicioPeriodo(data)}. A tabela de rollup tem as mesmas colunas, com
+     * data = início do período. Chamar dentro de {@link #executarComFlushBloqueado} quando o rollup
+     * precisar ser carregado antes de começar a receber incrementos.
+     */
+    public void registrarRollup(String tabela, String tabelaRollup, UnaryOperator<LocalDate> inicioPeriodo) {
+        TabelaContadores contadores = tabelas.get(tabela);
+        if (contadores == null) {
+            throw new IllegalArgumentException("Tabela de contadores não registrada: " + tabela);
+        }
+        contadores.rollups.add(new Rollup(tabelaRollup, inicioPeriodo, montarUpsert(tabelaRollup, contadores.comGrau)));
+    }
+
+    /**
+     * Executa a tarefa sem nenhum flush em andamento neste nó (manutenção de esquema, carga de rollups)
+     */
+    public void executarComFlushBloqueado(Runnable tarefa) {
+        flushLock.lock();
+        try {
+            tarefa.run();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Soma um caso na chave. Não acessa o banco; dispara o flush se o volume pendente passar do limite.
+     */
+    public void incrementar(String tabela, ChaveContador chave) {
+        TabelaContadores contadores = tabelas.get(tabela);
+        if (contadores == null) {
+            throw new IllegalArgumentException("Tabela de contadores não registrada: " + tabela);
+        }
+
+        LongAdder pendente = contadores.pendentes.computeIfAbsent(chave, k -> new LongAdder());
+        pendente.increment();
+        if (contadores.pendentes.get(chave) != pendente) {
+            // O flush descartou a chave (dia passado) entre o computeIfAbsent e o increment: devolve o
+            // incremento ao mapa, a não ser que o flush já o tenha drenado junto com a chave
+            long tardio = pendente.sumThenReset();
+            if (tardio > 0) {
+                contadores.pendentes.computeIfAbsent(chave, k -> new LongAdder()).add(tardio);
+            }
+        }
+        totalPendente.increment();
+
+        if (totalPendente.sum() >= maxPendentes && flushLock.tryLock()) {
+            try {
+                gravarPendentes();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Total ainda não gravado (para métricas/diagnóstico)
+     */
+    public long getTotalPendente() {
+        return totalPendente.sum();
+    }
+
+    /**
+     * Incrementos de uma tabela ainda não gravados
+     */
+    public long getPendentes(String tabela) {
+        TabelaContadores contadores = tabelas.get(tabela);
+        return contadores != null ? contadores.pendentes.values().stream().mapToLong(LongAdder::sum).sum() : 0L;
+    }
+
+    @Scheduled(fixedDelayString = "${contadores.flush.intervalo-ms:1000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            gravarPendentes();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushFinal() {
+        flush();
+    }
+
+    private void gravarPendentes() {
+        LocalDate ontem = LocalDate.now().minusDays(1);
+
+        for (TabelaContadores tabela : tabelas.values()) {
+            List<ChaveContador> chaves = new ArrayList<>();
+            List<Long> quantidades = new ArrayList<>();
+
+            for (Map.Entry<ChaveContador, LongAdder> entrada : tabela.pendentes.entrySet()) {
+                // sumThenReset zera cada célula atomicamente: incrementos concorrentes ficam para o próximo flush
+                long quantidade = entrada.getValue().sumThenReset();
+                if (quantidade > 0) {
+                    chaves.add(entrada.getKey());
+                    quantidades.add(quantidade);
+                } else if (entrada.getKey().data().isBefore(ontem)
+                        && tabela.pendentes.remove(entrada.getKey(), entrada.getValue())) {
+                    // Chaves de dias passados não recebem mais incrementos; o que chegou entre o
+                    // sumThenReset e o remove vai neste lote (ver incrementar)
+                    long tardio = entrada.getValue().sumThenReset();
+                    if (tardio > 0) {
+                        chaves.add(entrada.getKey());
+                        quantidades.add(tardio);
+                    }
+                }
+            }
+
+            if (!chaves.isEmpty()) {
+                gravarLote(tabela, chaves, quantidades);
+            }
+        }
+    }
+
+    private void gravarLote(TabelaContadores tabela, List<ChaveContador> chaves, List<Long> quantidades) {
+        long total = quantidades.stream().mapToLong(Long::longValue).sum();
+        Timestamp agora = Timestamp.from(Instant.now());
+
+        try {
+            if (tabela.rollups.isEmpty()) {
+                executarUpsert(tabela.sqlUpsert, tabela.comGrau, chaves, quantidades, agora);
+            } else {
+                transactionTemplate.executeWithoutResult(status -> {
+                    executarUpsert(tabela.sqlUpsert, tabela.comGrau, chaves, quantidades, agora);
+                    for (Rollup rollup : tabela.rollups) {
+                        gravarRollup(tabela, rollup, chaves, quantidades, agora);
+                    }
+                });
+            }
+            totalPendente.add(-total);
+            eventPublisher.publishEvent(new ContadoresGravadosEvent(tabela.nome));
+            logger.debug("Contadores gravados em {}: {} chaves, {} casos", tabela.nome, chaves.size(), total);
+        } catch (Exception e) {
+            // Devolve os incrementos para a próxima tentativa
+            for (int i = 0; i < chaves.size(); i++) {
+                tabela.pendentes.computeIfAbsent(chaves.get(i), k -> new LongAdder()).add(quantidades.get(i));
+            }
+            logger.error("❌ Erro ao gravar contadores em {} ({} casos mantidos em memória): {}",
+                       tabela.nome, total, e.getMessage());
+        }
+    }
+
+    /**
+     * Soma o lote por período antes de gravar: vários dias da mesma semana/mês viram uma linha só
+     */
+    private void gravarRollup(TabelaContadores tabela, Rollup rollup, List<ChaveContador> chaves,
+                              List<Long> quantidades, Timestamp agora) {
+        Map<ChaveContador, Long> porPeriodo = new LinkedHashMap<>();
+        for (int i = 0; i < chaves.size(); i++) {
+            ChaveContador chave = chaves.get(i);
+            ChaveContador chavePeriodo = new ChaveContador(rollup.inicioPeriodo.apply(chave.data()),
+                    chave.faixaEtaria(), chave.sexo(), chave.regiao(), chave.estado(), chave.grau());
+            porPeriodo.merge(chavePeriodo, quantidades.get(i), Long::sum);
+        }
+        executarUpsert(rollup.sqlUpsert, tabela.comGrau, new ArrayList<>(porPeriodo.keySet()),
+                       new ArrayList<>(porPeriodo.values()), agora);
+    }
+
+    private void executarUpsert(String sql, boolean comGrau, List<ChaveContador> chaves,
+                                List<Long> quantidades, Timestamp agora) {
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int linha) throws SQLException {
+                ChaveContador chave = chaves.get(linha);
+                int i = 1;
+                ps.setDate(i++, Date.valueOf(chave.data()));
+                ps.setString(i++, chave.faixaEtaria());
+                ps.setString(i++, chave.sexo());
+                ps.setString(i++, chave.regiao());
+                ps.setString(i++, chave.estado());
+                if (comGrau) {
+                    ps.setInt(i++, chave.grau());
+                }
+                ps.setLong(i++, quantidades.get(linha));
+                ps.setTimestamp(i++, agora);
+                ps.setTimestamp(i, agora);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return chaves.size();
+            }
+        });
+    }
+
+    private String montarUpsert(String tabela, boolean comGrau) {
+        String colunasChave = comGrau
+                ? "data, faixa_etaria, sexo, regiao, estado, grau"
+                : "data, faixa_etaria, sexo, regiao, estado";
+        String parametros = comGrau ? "?, ?, ?, ?, ?, ?, ?, ?, ?" : "?, ?, ?, ?, ?, ?, ?, ?";
+
+        return "INSERT INTO " + tabela + " (" + colunasChave + ", quantidade, criado_em, atualizado_em) " +
+               "VALUES (" + parametros + ") " +
+               "ON CONFLICT (" + colunasChave + ") DO UPDATE SET " +
+               "quantidade = " + tabela + ".quantidade + EXCLUDED.quantidade, " +
+               "atualizado_em = EXCLUDED.atualizado_em";
+    }
+
+    private static final class TabelaContadores {
+        private final String nome;
+        private final boolean comGrau;
+        private final String sqlUpsert;
+        // chave -> incrementos ainda não gravados
+        private final Map<ChaveContador, LongAdder> pendentes = new ConcurrentHashMap<>();
+        private final List<Rollup> rollups = new CopyOnWriteArrayList<>();
+
+        private TabelaContadores(String nome, boolean comGrau, String sqlUpsert) {
+            this.nome = nome;
+            this.comGrau = comGrau;
+            this.sqlUpsert = sqlUpsert;
+        }
+    }
+
+    private record Rollup(String nome, UnaryOperator<LocalDate> inicioPeriodo, String sqlUpsert) {}
+}
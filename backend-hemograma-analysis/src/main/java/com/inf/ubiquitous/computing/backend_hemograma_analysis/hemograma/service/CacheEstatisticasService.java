@@ -0,0 +1,106 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.ContadoresGravadosEvent;
+
+/**
+ * Invalidação e métricas dos caches de estatísticas.
+ * Cada cache é limpo só pelo caminho que muda os dados dele:
+ * <ul>
+ *   <li>{@link #ESTATISTICAS_HIV}: flush de contador_hiv pelo agregador (ou recarga dos rollups);</li>
+ *   <li>{@link #ESTATISTICAS_NOTIFICACOES}: notificação gravada, marcada como lida ou removida;</li>
+ *   <li>{@link #ESTATISTICAS_RISCO_HIV}: mudança no conjunto de hemogramas do buffer.</li>
+ * </ul>
+ * Dentro de uma transação a limpeza fica para depois do commit, para uma leitura concorrente
+ * não recolocar no cache o valor antigo.
+ */
+@Service
+public class CacheEstatisticasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheEstatisticasService.class);
+
+    public static final String ESTATISTICAS_HIV = "estatisticasHiv";
+    public static final String ESTATISTICAS_NOTIFICACOES = "estatisticasNotificacoes";
+    public static final String ESTATISTICAS_RISCO_HIV = "estatisticasRiscoHiv";
+
+    public static final String[] CACHES = {ESTATISTICAS_HIV, ESTATISTICAS_NOTIFICACOES, ESTATISTICAS_RISCO_HIV};
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    public record CacheMetrics(
+        long tamanho,
+        long acertos,
+        long falhas,
+        double taxaAcerto,
+        long carregamentos,
+        double tempoMedioCargaMs,
+        long remocoes
+    ) {}
+
+    @EventListener
+    public void contadoresGravados(ContadoresGravadosEvent evento) {
+        if (EsquemaContadorHivService.TABELA.equals(evento.tabela())) {
+            invalidar(ESTATISTICAS_HIV);
+        }
+    }
+
+    public void invalidarNotificacoes() {
+        invalidar(ESTATISTICAS_NOTIFICACOES);
+    }
+
+    public void invalidarRiscoHiv() {
+        invalidar(ESTATISTICAS_RISCO_HIV);
+    }
+
+    public void invalidar(String nome) {
+        Cache cache = cacheManager.getCache(nome);
+        if (cache == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.clear();
+                }
+            });
+        } else {
+            cache.clear();
+        }
+        logger.debug("Cache {} invalidado", nome);
+    }
+
+    public Map<String, CacheMetrics> getMetricas() {
+        Map<String, CacheMetrics> metricas = new LinkedHashMap<>();
+        for (String nome : CACHES) {
+            if (cacheManager.getCache(nome) instanceof CaffeineCache cache) {
+                CacheStats stats = cache.getNativeCache().stats();
+                metricas.put(nome, new CacheMetrics(
+                        cache.getNativeCache().estimatedSize(),
+                        stats.hitCount(),
+                        stats.missCount(),
+                        stats.hitRate(),
+                        stats.loadCount(),
+                        TimeUnit.NANOSECONDS.toMicros((long) stats.averageLoadPenalty()) / 1000.0,
+                        stats.evictionCount()));
+            }
+        }
+        return metricas;
+    }
+}
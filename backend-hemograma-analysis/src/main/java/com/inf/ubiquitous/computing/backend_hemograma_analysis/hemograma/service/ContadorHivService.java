@@ -2,28 +2,49 @@ package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.servic
 
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.ContadorHiv;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository.ContadorHivRepository;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository.ContadorHivSpecifications;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.PacienteDto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.ChaveContador;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.CursorPaginacao;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.FaixaEtaria;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.PaginaCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.annotation.PostConstruct;
+
+import java.sql.Date;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 /**
- * Service para gerenciar contadores epidemiológicos HIV
+ * Service para gerenciar contadores epidemiológicos HIV.
+ * As estatísticas agregadas passam por um planner ({@link #planejar}) que divide o intervalo de datas
+ * em meses inteiros (contador_hiv_mensal), semanas inteiras (contador_hiv_semanal) e só as pontas em
+ * dias (contador_hiv); consultas de vários anos leem poucas centenas de linhas de rollup.
+ * Os resultados dos obter* ficam em cache até o próximo flush de contador_hiv ({@link CacheEstatisticasService}).
  */
 @Service
 public class ContadorHivService {
     
     private static final Logger logger = LoggerFactory.getLogger(ContadorHivService.class);
+
+    private static final String TABELA_CONTADOR = EsquemaContadorHivService.TABELA;
     
     @Autowired
     private ContadorHivRepository contadorRepository;
@@ -31,67 +52,81 @@ public class ContadorHivService {
     @Autowired
     private NotificacaoService notificacaoService;
 
+    @Autowired
+    private AgregadorContadoresService agregadorContadores;
+
+    @Autowired
+    private TotaisHivService totaisHiv;
+
+    @Autowired
+    private EsquemaContadorHivService esquemaContadores;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Dimensões de agrupamento das estatísticas (nome da coluna nas três tabelas)
+     */
+    public enum Dimensao {
+        REGIAO("regiao"), FAIXA_ETARIA("faixa_etaria"), SEXO("sexo");
+
+        private final String coluna;
+
+        Dimensao(String coluna) {
+            this.coluna = coluna;
+        }
+    }
+
+    /**
+     * Filtros opcionais (null = todos)
+     */
+    public record FiltroContadores(String regiao, String estado, String faixaEtaria, String sexo) {
+        public static final FiltroContadores NENHUM = new FiltroContadores(null, null, null, null);
+    }
+
+    /**
+     * Trecho do plano: linhas de {@code tabela} com data em [inicio, fim). Limites nulos = sem limite.
+     * Nos rollups a data é o início do período, então o trecho cobre períodos inteiros.
+     */
+    record Trecho(String tabela, LocalDate inicio, LocalDate fim) {}
+
+    @PostConstruct
+    public void registrarTabela() {
+        agregadorContadores.registrarTabela(TABELA_CONTADOR, false);
+    }
+
     /**
      * Incrementa contador para um caso HIV detectado
      */
-    @Transactional
     public void incrementarContador(PacienteDto paciente) {
-        incrementarContador(paciente, "Risco HIV detectado");
+        incrementarContador(null, paciente, "Risco HIV detectado");
     }
     
     /**
-     * Incrementa contador para um caso HIV detectado com motivo específico
+     * Incrementa contador para um caso HIV detectado no hemograma {@code hemogramaId} (observationId; null
+     * quando o caso não vem de um hemograma), com motivo específico.
+     * O incremento vai para o agregador em memória e é gravado em lote (ver {@link AgregadorContadoresService}).
      */
-    @Transactional
-    public void incrementarContador(PacienteDto paciente, String motivoRisco) {
+    public void incrementarContador(String hemogramaId, PacienteDto paciente, String motivoRisco) {
         try {
-            LocalDate hoje = LocalDate.now();
-            String faixaEtaria = calcularFaixaEtaria(paciente.getIdade());
-            
-            // Busca contador existente para hoje
-            Optional<ContadorHiv> contadorExistente = contadorRepository
-                .findByDataAndFaixaEtariaAndSexoAndRegiaoAndEstado(
-                    hoje, faixaEtaria, paciente.getSexo(), 
-                    paciente.getRegiao(), paciente.getEstado()
-                );
-            
-            long novoTotal = 0;
-            
-            if (contadorExistente.isPresent()) {
-                // Incrementa contador existente
-                ContadorHiv contador = contadorExistente.get();
-                contador.incrementar();
-                contadorRepository.save(contador);
-                novoTotal = contador.getQuantidade();
-                
-                logger.info("Contador HIV incrementado: {} - Total: {}", 
-                           contador.toString(), contador.getQuantidade());
-            } else {
-                // Cria novo contador
-                ContadorHiv novoContador = new ContadorHiv(
-                    hoje, faixaEtaria, paciente.getSexo(), 
-                    paciente.getRegiao(), paciente.getEstado(), 1
-                );
-                contadorRepository.save(novoContador);
-                novoTotal = 1;
-                
-                logger.info("Novo contador HIV criado: {}", novoContador.toString());
-            }
+            String faixaEtaria = FaixaEtaria.de(paciente.getIdade());
+            ChaveContador chave = new ChaveContador(LocalDate.now(), faixaEtaria, paciente.getSexo(),
+                                                    paciente.getRegiao(), paciente.getEstado());
+
+            // Agregador (gravação em lote) e totais em memória juntos, ver TotaisHivService
+            totaisHiv.incrementar(chave);
+            logger.debug("Caso HIV registrado no agregador: {}", chave);
             
             // 🆕 ENVIA NOTIFICAÇÃO KAFKA
             try {
-                notificacaoService.enviarNotificacaoHivDetectado(
-                    "COUNTER-" + System.currentTimeMillis(), 
-                    paciente, 
-                    motivoRisco
-                );
+                notificacaoService.enviarNotificacaoHivDetectado(hemogramaId, paciente, motivoRisco);
                 
                 // Envia também notificação de estatísticas atualizadas
-                long totalRegiao = calcularTotalCasosPorRegiao(paciente.getRegiao());
+                long totalRegiao = totaisHiv.totalRegiao(paciente.getRegiao());
                 notificacaoService.enviarNotificacaoEstatisticas(paciente.getRegiao(), totalRegiao);
                 
             } catch (Exception kafkaError) {
-                logger.error("Erro ao enviar notificação Kafka (contador salvo com sucesso): {}", 
+                logger.error("Erro ao enviar notificação Kafka (caso registrado): {}", 
                            kafkaError.getMessage());
             }
             
@@ -111,116 +146,227 @@ public class ContadorHivService {
         logger.info("🔍 Buscando contadores - Filtros: dataInicio={}, dataFim={}, regiao={}, estado={}, faixaEtaria={}, sexo={}",
                 dataInicio, dataFim, regiao, estado, faixaEtaria, sexo);
 
-        return contadorRepository.buscarComFiltros(
-                dataInicio, dataFim, regiao, estado, faixaEtaria, sexo, pageable
+        return contadorRepository.findAll(
+                ContadorHivSpecifications.comFiltros(dataInicio, dataFim, regiao, estado, faixaEtaria, sexo),
+                pageable
         );
     }
 
 
     /**
-     * Calcula total de casos por região para notificações
+     * Busca contadores com filtros por cursor (keyset em data, id): o custo de cada página não depende
+     * da profundidade e não há COUNT. {@code cursor} nulo começa do início.
+     *
+     * @throws IllegalArgumentException se o cursor for inválido
      */
-    private long calcularTotalCasosPorRegiao(String regiao) {
-        try {
-            List<Object[]> dados = contadorRepository.contarPorRegiao();
-            for (Object[] linha : dados) {
-                if (regiao.equals((String) linha[0])) {
-                    return ((Number) linha[1]).longValue();
-                }
+    @Transactional(readOnly = true)
+    public PaginaCursor<ContadorHiv> buscarContadoresPorCursor(
+            LocalDate dataInicio, LocalDate dataFim, String regiao, String estado,
+            String faixaEtaria, String sexo, String cursor, int tamanho, boolean descendente) {
+
+        Specification<ContadorHiv> spec = ContadorHivSpecifications.comFiltros(
+                dataInicio, dataFim, regiao, estado, faixaEtaria, sexo);
+        if (cursor != null) {
+            CursorPaginacao posicao = CursorPaginacao.decodificar(cursor);
+            LocalDate data;
+            try {
+                data = LocalDate.parse(posicao.valor());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor, e);
             }
-        } catch (Exception e) {
-            logger.error("Erro ao calcular total por região: {}", e.getMessage());
+            spec = spec.and(ContadorHivSpecifications.depoisDe(data, posicao.id(), descendente));
+        }
+
+        Sort.Direction direcao = descendente ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort ordem = Sort.by(direcao, "data").and(Sort.by(direcao, "id"));
+        // Um a mais para saber se existe próxima página
+        List<ContadorHiv> linhas = contadorRepository.findBy(spec, q -> q.sortBy(ordem).limit(tamanho + 1).all());
+
+        if (linhas.size() <= tamanho) {
+            return new PaginaCursor<>(linhas, null);
         }
-        return 0L;
+        List<ContadorHiv> pagina = linhas.subList(0, tamanho);
+        ContadorHiv ultimo = pagina.get(tamanho - 1);
+        String proximo = new CursorPaginacao(ultimo.getData().toString(), ultimo.getId()).codificar();
+        return new PaginaCursor<>(new ArrayList<>(pagina), proximo);
     }
-    
+
     /**
-     * Calcula faixa etária para agrupamento
+     * Total de linhas para os filtros (opcional na listagem por cursor)
      */
-    private String calcularFaixaEtaria(Integer idade) {
-        if (idade < 18) return "0-17";
-        if (idade < 30) return "18-29";
-        if (idade < 45) return "30-44";
-        if (idade < 60) return "45-59";
-        if (idade < 75) return "60-74";
-        return "75+";
+    @Transactional(readOnly = true)
+    public long contarContadoresFiltrados(LocalDate dataInicio, LocalDate dataFim, String regiao, String estado,
+                                         String faixaEtaria, String sexo) {
+        return contadorRepository.count(ContadorHivSpecifications.comFiltros(
+                dataInicio, dataFim, regiao, estado, faixaEtaria, sexo));
     }
+
     
     /**
-     * Retorna estatísticas por região
+     * Retorna estatísticas por região (datas nulas = sem limite)
      */
-    public Map<String, Object> obterEstatisticasPorRegiao() {
-        List<Object[]> dados = contadorRepository.contarPorRegiao();
-        Map<String, Object> resultado = new HashMap<>();
-        
-        for (Object[] linha : dados) {
-            resultado.put((String) linha[0], ((Number) linha[1]).longValue());
-        }
-        
-        return resultado;
+    @Cacheable(cacheNames = CacheEstatisticasService.ESTATISTICAS_HIV, key = "{#root.methodName, #dataInicio, #dataFim}", sync = true)
+    public Map<String, Object> obterEstatisticasPorRegiao(LocalDate dataInicio, LocalDate dataFim) {
+        return new HashMap<>(agruparCasos(Dimensao.REGIAO, dataInicio, dataFim, FiltroContadores.NENHUM));
     }
     
     /**
-     * Retorna estatísticas por faixa etária
+     * Retorna estatísticas por faixa etária (datas nulas = sem limite)
      */
-    public Map<String, Object> obterEstatisticasPorIdade() {
-        List<Object[]> dados = contadorRepository.contarPorFaixaEtaria();
-        Map<String, Object> resultado = new HashMap<>();
-        
-        for (Object[] linha : dados) {
-            resultado.put((String) linha[0], ((Number) linha[1]).longValue());
-        }
-        
-        return resultado;
+    @Cacheable(cacheNames = CacheEstatisticasService.ESTATISTICAS_HIV, key = "{#root.methodName, #dataInicio, #dataFim}", sync = true)
+    public Map<String, Object> obterEstatisticasPorIdade(LocalDate dataInicio, LocalDate dataFim) {
+        return new HashMap<>(agruparCasos(Dimensao.FAIXA_ETARIA, dataInicio, dataFim, FiltroContadores.NENHUM));
     }
     
     /**
-     * Retorna estatísticas por sexo
+     * Retorna estatísticas por sexo (datas nulas = sem limite)
      */
-    public Map<String, Object> obterEstatisticasPorSexo() {
-        List<Object[]> dados = contadorRepository.contarPorSexo();
+    @Cacheable(cacheNames = CacheEstatisticasService.ESTATISTICAS_HIV, key = "{#root.methodName, #dataInicio, #dataFim}", sync = true)
+    public Map<String, Object> obterEstatisticasPorSexo(LocalDate dataInicio, LocalDate dataFim) {
         Map<String, Object> resultado = new HashMap<>();
-        
-        for (Object[] linha : dados) {
-            String sexo = (String) linha[0];
+        agruparCasos(Dimensao.SEXO, dataInicio, dataFim, FiltroContadores.NENHUM).forEach((sexo, quantidade) -> {
             String sexoDisplay = "M".equals(sexo) ? "Masculino" : "Feminino";
-            resultado.put(sexoDisplay, ((Number) linha[1]).longValue());
-        }
-        
+            resultado.put(sexoDisplay, quantidade);
+        });
         return resultado;
     }
     
     /**
      * Retorna resumo geral das estatísticas
      */
+    @Cacheable(cacheNames = CacheEstatisticasService.ESTATISTICAS_HIV, key = "#root.methodName", sync = true)
     public Map<String, Object> obterResumoEstatisticas() {
         Map<String, Object> resumo = new HashMap<>();
+        LocalDate hoje = LocalDate.now();
         
-        Long totalCasos = contadorRepository.contarTotal();
-        resumo.put("totalCasos", totalCasos != null ? totalCasos : 0);
-        
-        // Casos hoje
-        Long casosHoje = contadorRepository.contarPorPeriodo(LocalDate.now(), LocalDate.now());
-        resumo.put("casosHoje", casosHoje != null ? casosHoje : 0);
-        
-        // Casos últimos 7 dias
-        LocalDate seteDiasAtras = LocalDate.now().minusDays(7);
-        Long casosUltimos7Dias = contadorRepository.contarPorPeriodo(seteDiasAtras, LocalDate.now());
-        resumo.put("casosUltimos7Dias", casosUltimos7Dias != null ? casosUltimos7Dias : 0);
+        resumo.put("totalCasos", somarCasos(null, null, FiltroContadores.NENHUM));
+        resumo.put("casosHoje", somarCasos(hoje, hoje, FiltroContadores.NENHUM));
+        resumo.put("casosUltimos7Dias", somarCasos(hoje.minusDays(7), hoje, FiltroContadores.NENHUM));
+        resumo.put("casosUltimos30Dias", somarCasos(hoje.minusDays(30), hoje, FiltroContadores.NENHUM));
         
-        // Casos últimos 30 dias
-        LocalDate trintaDiasAtras = LocalDate.now().minusDays(30);
-        Long casosUltimos30Dias = contadorRepository.contarPorPeriodo(trintaDiasAtras, LocalDate.now());
-        resumo.put("casosUltimos30Dias", casosUltimos30Dias != null ? casosUltimos30Dias : 0);
-        
-        resumo.put("dataAtualizacao", LocalDate.now().toString());
+        resumo.put("dataAtualizacao", hoje.toString());
         
         return resumo;
     }
+
+    /**
+     * Casos por valor da dimensão no intervalo [dataInicio, dataFim] (datas inclusivas, null = sem limite)
+     */
+    public Map<String, Long> agruparCasos(Dimensao dimensao, LocalDate dataInicio, LocalDate dataFim,
+                                          FiltroContadores filtro) {
+        List<Object> parametros = new ArrayList<>();
+        String origem = montarOrigem(dimensao.coluna + ", quantidade", dataInicio, dataFim, filtro, parametros);
+        String sql = "SELECT " + dimensao.coluna + ", SUM(quantidade) FROM (" + origem + ") p GROUP BY " + dimensao.coluna;
+
+        Map<String, Long> resultado = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            resultado.put(rs.getString(1), rs.getLong(2));
+        }, parametros.toArray());
+        return resultado;
+    }
+
+    /**
+     * Total de casos no intervalo [dataInicio, dataFim] (datas inclusivas, null = sem limite)
+     */
+    public long somarCasos(LocalDate dataInicio, LocalDate dataFim, FiltroContadores filtro) {
+        List<Object> parametros = new ArrayList<>();
+        String origem = montarOrigem("quantidade", dataInicio, dataFim, filtro, parametros);
+        Long total = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantidade), 0) FROM (" + origem + ") p", Long.class, parametros.toArray());
+        return total != null ? total : 0L;
+    }
+
+    /**
+     * UNION ALL dos trechos do plano, já com filtros
+     */
+    String montarOrigem(String colunas, LocalDate dataInicio, LocalDate dataFim,
+                        FiltroContadores filtro, List<Object> parametros) {
+        LocalDate fimExclusivo = dataFim != null ? dataFim.plusDays(1) : null;
+        List<Trecho> plano = esquemaContadores.isRollupsProntos()
+                ? planejar(dataInicio, fimExclusivo)
+                : List.of(new Trecho(TABELA_CONTADOR, dataInicio, fimExclusivo));
+        logger.debug("Plano de consulta de contadores [{}, {}): {}", dataInicio, fimExclusivo, plano);
+
+        List<String> partes = new ArrayList<>(plano.size());
+        for (Trecho trecho : plano) {
+            StringBuilder parte = new StringBuilder("SELECT ").append(colunas).append(" FROM ").append(trecho.tabela())
+                    .append(" WHERE 1 = 1");
+            if (trecho.inicio() != null) {
+                parte.append(" AND data >= ?");
+                parametros.add(Date.valueOf(trecho.inicio()));
+            }
+            if (trecho.fim() != null) {
+                parte.append(" AND data < ?");
+                parametros.add(Date.valueOf(trecho.fim()));
+            }
+            filtrar(parte, "regiao", filtro.regiao(), parametros);
+            filtrar(parte, "estado", filtro.estado(), parametros);
+            filtrar(parte, "faixa_etaria", filtro.faixaEtaria(), parametros);
+            filtrar(parte, "sexo", filtro.sexo(), parametros);
+            partes.add(parte.toString());
+        }
+        return String.join(" UNION ALL ", partes);
+    }
+
+    private void filtrar(StringBuilder sql, String coluna, String valor, List<Object> parametros) {
+        if (valor != null) {
+            sql.append(" AND ").append(coluna).append(" = ?");
+            parametros.add(valor);
+        }
+    }
+
+    /**
+     * Divide [inicio, fim) no menor número de linhas a ler: meses inteiros no rollup mensal,
+     * semanas inteiras das pontas no semanal e os dias que sobram na tabela diária.
+     * Limites nulos significam "sem limite" (todo o histórico cabe no mensal).
+     */
+    static List<Trecho> planejar(LocalDate inicio, LocalDate fim) {
+        List<Trecho> plano = new ArrayList<>(5);
+
+        LocalDate primeiroMes = inicio == null ? null
+                : inicio.getDayOfMonth() == 1 ? inicio : inicio.withDayOfMonth(1).plusMonths(1);
+        LocalDate fimMeses = fim == null ? null : fim.withDayOfMonth(1);
+
+        if (primeiroMes == null || fimMeses == null || primeiroMes.isBefore(fimMeses)) {
+            plano.add(new Trecho(EsquemaContadorHivService.TABELA_MENSAL, primeiroMes, fimMeses));
+            if (inicio != null) {
+                planejarSemanas(inicio, primeiroMes, plano);
+            }
+            if (fim != null) {
+                planejarSemanas(fimMeses, fim, plano);
+            }
+        } else {
+            planejarSemanas(inicio, fim, plano);
+        }
+        return plano;
+    }
+
+    private static void planejarSemanas(LocalDate inicio, LocalDate fim, List<Trecho> plano) {
+        if (!inicio.isBefore(fim)) {
+            return;
+        }
+        LocalDate primeiraSemana = inicio.with(TemporalAdjusters.nextOrSame(DayOfWeek.MONDAY));
+        LocalDate fimSemanas = fim.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+
+        if (primeiraSemana.isBefore(fimSemanas)) {
+            plano.add(new Trecho(EsquemaContadorHivService.TABELA_SEMANAL, primeiraSemana, fimSemanas));
+            planejarDias(inicio, primeiraSemana, plano);
+            planejarDias(fimSemanas, fim, plano);
+        } else {
+            planejarDias(inicio, fim, plano);
+        }
+    }
+
+    private static void planejarDias(LocalDate inicio, LocalDate fim, List<Trecho> plano) {
+        if (inicio.isBefore(fim)) {
+            plano.add(new Trecho(TABELA_CONTADOR, inicio, fim));
+        }
+    }
     
     /**
      * Retorna tendência temporal (últimos 30 dias)
      */
+    @Cacheable(cacheNames = CacheEstatisticasService.ESTATISTICAS_HIV, key = "#root.methodName", sync = true)
     public Map<String, Object> obterTendenciaTemporal() {
         LocalDate dataLimite = LocalDate.now().minusDays(30);
         List<Object[]> dados = contadorRepository.casosRecentes(dataLimite);
@@ -0,0 +1,92 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.PacienteDto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.ChaveContador;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.FaixaEtaria;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository.ContadorTriagemRepository;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem.DetectorTriagem;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Contadores epidemiológicos dos detectores de triagem (mesma lógica do {@link ContadorHivService},
+ * mas cada detector grava na sua tabela e publica no seu tópico)
+ */
+@Service
+public class ContadorTriagemService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContadorTriagemService.class);
+
+    @Autowired
+    private NotificacaoService notificacaoService;
+
+    @Autowired
+    private AgregadorContadoresService agregadorContadores;
+
+    @Autowired
+    private List<DetectorTriagem<?>> detectores;
+
+    @PostConstruct
+    public void registrarTabelas() {
+        for (DetectorTriagem<?> detector : detectores) {
+            agregadorContadores.registrarTabela(detector.getTabelaContador(), true);
+        }
+    }
+
+    /**
+     * Registra o caso no agregador em memória (gravado em lote na tabela do detector) e publica no tópico dele
+     */
+    public void incrementarContador(DetectorTriagem<?> detector, String hemogramaId, PacienteDto paciente, int resultado) {
+        String faixaEtaria = FaixaEtaria.de(paciente.getIdade());
+        ChaveContador chave = new ChaveContador(LocalDate.now(), faixaEtaria, paciente.getSexo(),
+                paciente.getRegiao(), paciente.getEstado(), resultado);
+
+        agregadorContadores.incrementar(detector.getTabelaContador(), chave);
+        logger.debug("Caso de {} registrado: {}", detector.getNome(), chave);
+
+        try {
+            notificacaoService.enviarNotificacaoTriagem(detector.getTopico(),
+                    "NOVO_CASO_" + detector.getNome().toUpperCase(), hemogramaId, paciente,
+                    detector.descrever(resultado));
+        } catch (Exception kafkaError) {
+            logger.error("Erro ao enviar notificação Kafka de {} (caso registrado): {}",
+                       detector.getNome(), kafkaError.getMessage());
+        }
+    }
+
+    /**
+     * Resumo do detector: total, por região e por grau
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> obterEstatisticas(DetectorTriagem<?> detector) {
+        ContadorTriagemRepository<?> repositorio = detector.getRepositorio();
+        Map<String, Object> resultado = new HashMap<>();
+
+        Long total = repositorio.contarTotal();
+        resultado.put("totalCasos", total != null ? total : 0);
+        resultado.put("porRegiao", agrupar(repositorio.contarPorRegiao()));
+        resultado.put("porGrau", agrupar(repositorio.contarPorGrau()));
+
+        return resultado;
+    }
+
+    private Map<String, Long> agrupar(List<Object[]> dados) {
+        Map<String, Long> resultado = new HashMap<>();
+        for (Object[] linha : dados) {
+            resultado.put(String.valueOf(linha[0]), ((Number) linha[1]).longValue());
+        }
+        return resultado;
+    }
+
+}
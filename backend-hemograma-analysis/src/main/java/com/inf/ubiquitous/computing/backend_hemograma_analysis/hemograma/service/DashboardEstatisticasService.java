@@ -0,0 +1,124 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.DashboardEstatisticasDto;
+
+/**
+ * Dados do dashboard numa única consulta. As linhas do intervalo vêm do planner de rollups
+ * ({@link ContadorHivService#montarOrigem}) e as dos últimos 30 dias da tabela diária; um
+ * {@code GROUP BY GROUPING SETS ((), (regiao), (faixa_etaria), (sexo))} devolve o total geral e as três
+ * distribuições, e as janelas de 1, 7 e 30 dias saem de {@code SUM(CASE ...)} na mesma passada.
+ */
+@Service
+public class DashboardEstatisticasService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardEstatisticasService.class);
+
+    // Marca de origem de cada linha: intervalo (rollups) ou janela recente (diária)
+    private static final int ORIGEM_INTERVALO = 0;
+    private static final int ORIGEM_JANELA = 1;
+
+    @Autowired
+    private ContadorHivService contadorHivService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param dataInicio início do intervalo das distribuições e do total (null = todo o histórico)
+     * @param dataFim    fim do intervalo, inclusivo (null = sem limite)
+     */
+    @Cacheable(cacheNames = CacheEstatisticasService.ESTATISTICAS_HIV, key = "{#root.methodName, #dataInicio, #dataFim}", sync = true)
+    public DashboardEstatisticasDto obterDashboard(LocalDate dataInicio, LocalDate dataFim) {
+        LocalDate hoje = LocalDate.now();
+        LocalDate inicio7Dias = hoje.minusDays(7);
+        LocalDate inicio30Dias = hoje.minusDays(30);
+
+        List<Object> parametros = new ArrayList<>();
+        String intervalo = contadorHivService.montarOrigem(
+                "regiao, faixa_etaria, sexo, quantidade", dataInicio, dataFim,
+                ContadorHivService.FiltroContadores.NENHUM, parametros);
+
+        String sql = "SELECT regiao, faixa_etaria, sexo,"
+                + " GROUPING(regiao) AS sem_regiao, GROUPING(faixa_etaria) AS sem_faixa, GROUPING(sexo) AS sem_sexo,"
+                + " SUM(CASE WHEN origem = " + ORIGEM_INTERVALO + " THEN quantidade ELSE 0 END) AS total,"
+                + " SUM(CASE WHEN origem = " + ORIGEM_JANELA + " AND data = ? THEN quantidade ELSE 0 END) AS hoje,"
+                + " SUM(CASE WHEN origem = " + ORIGEM_JANELA + " AND data >= ? THEN quantidade ELSE 0 END) AS ultimos_7,"
+                + " SUM(CASE WHEN origem = " + ORIGEM_JANELA + " THEN quantidade ELSE 0 END) AS ultimos_30"
+                + " FROM ("
+                + "SELECT regiao, faixa_etaria, sexo, CAST(NULL AS DATE) AS data, quantidade, " + ORIGEM_INTERVALO + " AS origem"
+                + " FROM (" + intervalo + ") i"
+                + " UNION ALL"
+                + " SELECT regiao, faixa_etaria, sexo, data, quantidade, " + ORIGEM_JANELA + " AS origem"
+                + " FROM " + EsquemaContadorHivService.TABELA + " WHERE data >= ? AND data <= ?"
+                + ") b"
+                + " GROUP BY GROUPING SETS ((), (regiao), (faixa_etaria), (sexo))";
+
+        List<Object> todos = new ArrayList<>();
+        todos.add(Date.valueOf(hoje));
+        todos.add(Date.valueOf(inicio7Dias));
+        todos.addAll(parametros);
+        todos.add(Date.valueOf(inicio30Dias));
+        todos.add(Date.valueOf(hoje));
+
+        Map<String, Long> porRegiao = new HashMap<>();
+        Map<String, Long> porIdade = new HashMap<>();
+        Map<String, Long> porSexo = new HashMap<>();
+        long[] resumo = new long[4];
+
+        jdbcTemplate.query(sql, rs -> {
+            boolean semRegiao = rs.getInt("sem_regiao") == 1;
+            boolean semFaixa = rs.getInt("sem_faixa") == 1;
+            boolean semSexo = rs.getInt("sem_sexo") == 1;
+            long total = rs.getLong("total");
+
+            if (semRegiao && semFaixa && semSexo) {
+                resumo[0] = total;
+                resumo[1] = rs.getLong("hoje");
+                resumo[2] = rs.getLong("ultimos_7");
+                resumo[3] = rs.getLong("ultimos_30");
+            } else if (total > 0) {
+                // Dimensões só com casos recentes fora do intervalo ficam de fora, como nas consultas por região/idade/sexo
+                if (!semRegiao) {
+                    somar(porRegiao, rs.getString("regiao"), total);
+                } else if (!semFaixa) {
+                    somar(porIdade, rs.getString("faixa_etaria"), total);
+                } else {
+                    String sexo = rs.getString("sexo");
+                    if (sexo != null) {
+                        somar(porSexo, "M".equals(sexo) ? "Masculino" : "Feminino", total);
+                    }
+                }
+            }
+        }, todos.toArray());
+
+        logger.debug("Dashboard calculado: total={}, regiões={}", resumo[0], porRegiao.size());
+
+        return new DashboardEstatisticasDto(
+                new DashboardEstatisticasDto.Resumo(resumo[0], resumo[1], resumo[2], resumo[3], hoje.toString()),
+                porRegiao,
+                porIdade,
+                porSexo,
+                Instant.now().toString());
+    }
+
+    private void somar(Map<String, Long> mapa, String chave, long quantidade) {
+        if (chave != null) {
+            mapa.merge(chave, quantidade, Long::sum);
+        }
+    }
+}
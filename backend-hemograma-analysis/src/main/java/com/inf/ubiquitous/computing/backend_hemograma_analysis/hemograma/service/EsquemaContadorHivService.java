@@ -0,0 +1,308 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.ContadoresGravadosEvent;
+
+/**
+ * Estrutura física dos contadores HIV.
+ * <ul>
+ *   <li>Rollups contador_hiv_semanal e contador_hiv_mensal (data = segunda-feira / dia 1), mantidos pelo
+ *       {@link AgregadorContadoresService} na mesma transação da tabela diária. Carregados a partir de
+ *       contador_hiv quando estão vazios (primeira subida) ou quando contadores.hiv.rollups.reconstruir=true.</li>
+ *   <li>Particionamento anual opcional de contador_hiv (RANGE em data). Com a flag ligada, uma tabela comum
+ *       é migrada na subida (renomeia, copia, remove); as partições dos próximos anos são criadas pelo cron.
+ *       Fazer a migração com um único nó no ar.</li>
+ *   <li>Índices de cobertura da listagem filtrada ({@link #INDICES_COBERTURA}).</li>
+ * </ul>
+ * A tabela diária continua sendo a entidade {@code ContadorHiv}; o Hibernate reconhece tabelas particionadas.
+ */
+@Service
+public class EsquemaContadorHivService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EsquemaContadorHivService.class);
+
+    public static final String TABELA = "contador_hiv";
+    public static final String TABELA_SEMANAL = "contador_hiv_semanal";
+    public static final String TABELA_MENSAL = "contador_hiv_mensal";
+
+    private static final String TABELA_LEGADO = "contador_hiv_legado";
+    private static final String SEQUENCIA_ID = "contador_hiv_id_seq";
+
+    /**
+     * Índices da listagem filtrada (/api/estatisticas/lista), um por filtro de entrada mais comum.
+     * O INCLUDE traz as demais colunas filtráveis, quantidade e id, para COUNT/SUM filtrados
+     * serem index-only scans; a página em si só visita o heap para as linhas retornadas.
+     */
+    private static final String[][] INDICES_COBERTURA = {
+        {"idx_contador_hiv_data", "(data, regiao, estado) INCLUDE (faixa_etaria, sexo, quantidade, id)"},
+        {"idx_contador_hiv_regiao", "(regiao, estado, data) INCLUDE (faixa_etaria, sexo, quantidade, id)"},
+        {"idx_contador_hiv_demografia", "(faixa_etaria, sexo, data) INCLUDE (regiao, estado, quantidade, id)"},
+        // Ordem da paginação por cursor sem filtros (ORDER BY data, id)
+        {"idx_contador_hiv_data_id", "(data, id)"}
+    };
+
+    // Índices simples das versões anteriores, substituídos pelos de cobertura
+    private static final String[] INDICES_ANTIGOS = {"idx_contador_data_regiao", "idx_contador_demografia"};
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private AgregadorContadoresService agregadorContadores;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${contadores.hiv.rollups.enabled:true}")
+    private boolean rollupsHabilitados;
+
+    @Value("${contadores.hiv.rollups.reconstruir:false}")
+    private boolean reconstruirRollups;
+
+    @Value("${contadores.hiv.particionamento.enabled:false}")
+    private boolean particionamentoHabilitado;
+
+    @Value("${contadores.hiv.particoes.anos-adiante:1}")
+    private int anosAdiante;
+
+    private volatile boolean rollupsProntos;
+
+    // Data da subida: flushes anteriores ao registro dos rollups só podem ter gravado datas a partir dela
+    private final LocalDate dataSubida = LocalDate.now();
+
+    /**
+     * Semana ISO (segunda-feira), igual ao date_trunc('week') do PostgreSQL
+     */
+    public static LocalDate inicioSemana(LocalDate data) {
+        return data.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    public static LocalDate inicioMes(LocalDate data) {
+        return data.withDayOfMonth(1);
+    }
+
+    /**
+     * Só depois da carga os rollups refletem a tabela diária; antes disso o planner lê só contador_hiv
+     */
+    public boolean isRollupsProntos() {
+        return rollupsProntos;
+    }
+
+    /**
+     * Rollups primeiro: o flush agendado e a ingestão já estão no ar, e até o registro dos rollups os
+     * flushes gravam só a tabela diária. Índices (CONCURRENTLY, pode levar minutos) ficam por último.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preparar() {
+        if (rollupsHabilitados) {
+            try {
+                criarRollups();
+                agregadorContadores.executarComFlushBloqueado(() -> {
+                    carregarRollups();
+                    agregadorContadores.registrarRollup(TABELA, TABELA_SEMANAL, EsquemaContadorHivService::inicioSemana);
+                    agregadorContadores.registrarRollup(TABELA, TABELA_MENSAL, EsquemaContadorHivService::inicioMes);
+                });
+                rollupsProntos = true;
+                logger.info("📊 Rollups de {} ativos ({}, {})", TABELA, TABELA_SEMANAL, TABELA_MENSAL);
+            } catch (Exception e) {
+                logger.error("❌ Erro ao preparar rollups de {} (consultas seguem na tabela diária): {}",
+                           TABELA, e.getMessage());
+            }
+        }
+
+        if (particionamentoHabilitado) {
+            try {
+                agregadorContadores.executarComFlushBloqueado(this::migrarParaParticionada);
+                manterParticoes();
+            } catch (Exception e) {
+                logger.error("❌ Erro ao particionar {}: {}", TABELA, e.getMessage());
+            }
+        }
+
+        try {
+            criarIndices();
+        } catch (Exception e) {
+            logger.error("❌ Erro ao criar índices de {}: {}", TABELA, e.getMessage());
+        }
+    }
+
+    /**
+     * Garante as partições anuais do ano corrente até N anos adiante
+     */
+    @Scheduled(cron = "${contadores.hiv.particoes.cron:0 20 3 * * *}")
+    public void manterParticoes() {
+        if (!particionamentoHabilitado || !isParticionada()) {
+            return;
+        }
+        try {
+            int anoAtual = LocalDate.now().getYear();
+            for (int ano = anoAtual; ano <= anoAtual + anosAdiante; ano++) {
+                criarParticao(ano);
+            }
+        } catch (Exception e) {
+            logger.error("Erro ao manter partições de {}: {}", TABELA, e.getMessage());
+        }
+    }
+
+    private boolean isParticionada() {
+        String tipo = jdbcTemplate.queryForObject(
+                "SELECT COALESCE((SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)), '')",
+                String.class, TABELA);
+        return "p".equals(tipo);
+    }
+
+    /**
+     * Troca a tabela comum por uma particionada por ano, preservando IDs, numa única transação.
+     * A PK passa a ser (id, data): em tabela particionada toda constraint única inclui a chave de partição.
+     */
+    private void migrarParaParticionada() {
+        if (isParticionada()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE " + TABELA + " IN ACCESS EXCLUSIVE MODE");
+            jdbcTemplate.execute("ALTER TABLE " + TABELA + " RENAME TO " + TABELA_LEGADO);
+            jdbcTemplate.execute("ALTER TABLE " + TABELA_LEGADO + " RENAME CONSTRAINT " + TABELA + "_pkey TO "
+                    + TABELA_LEGADO + "_pkey");
+            // Nomes de índice são globais no schema: libera os nomes usados na tabela nova
+            jdbcTemplate.execute("ALTER TABLE " + TABELA_LEGADO + " DROP CONSTRAINT IF EXISTS uk_contador_hiv_chave");
+            for (String[] indice : INDICES_COBERTURA) {
+                jdbcTemplate.execute("DROP INDEX IF EXISTS " + indice[0]);
+            }
+
+            jdbcTemplate.execute("CREATE TABLE " + TABELA + " ("
+                    + "id BIGINT NOT NULL, "
+                    + "data DATE NOT NULL, "
+                    + "faixa_etaria VARCHAR(20) NOT NULL, "
+                    + "sexo VARCHAR(1) NOT NULL, "
+                    + "regiao VARCHAR(50) NOT NULL, "
+                    + "estado VARCHAR(50), "
+                    + "quantidade INTEGER NOT NULL, "
+                    + "criado_em TIMESTAMP(6) WITH TIME ZONE NOT NULL, "
+                    + "atualizado_em TIMESTAMP(6) WITH TIME ZONE NOT NULL, "
+                    + "PRIMARY KEY (id, data)"
+                    + ") PARTITION BY RANGE (data)");
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABELA + "_default PARTITION OF " + TABELA + " DEFAULT");
+
+            Date menorData = jdbcTemplate.queryForObject("SELECT MIN(data) FROM " + TABELA_LEGADO, Date.class);
+            int anoAtual = LocalDate.now().getYear();
+            int primeiroAno = menorData != null ? Math.min(menorData.toLocalDate().getYear(), anoAtual) : anoAtual;
+            for (int ano = primeiroAno; ano <= anoAtual + anosAdiante; ano++) {
+                criarParticao(ano);
+            }
+
+            int copiadas = jdbcTemplate.update("INSERT INTO " + TABELA
+                    + " (id, data, faixa_etaria, sexo, regiao, estado, quantidade, criado_em, atualizado_em)"
+                    + " SELECT id, data, faixa_etaria, sexo, regiao, estado, quantidade, criado_em, atualizado_em"
+                    + " FROM " + TABELA_LEGADO);
+            // Remove também a sequência de identidade da tabela antiga, liberando o nome
+            jdbcTemplate.execute("DROP TABLE " + TABELA_LEGADO);
+
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCIA_ID + " OWNED BY " + TABELA + ".id");
+            jdbcTemplate.execute("SELECT setval('" + SEQUENCIA_ID + "', COALESCE((SELECT MAX(id) FROM " + TABELA + "), 0) + 1, false)");
+            jdbcTemplate.execute("ALTER TABLE " + TABELA + " ALTER COLUMN id SET DEFAULT nextval('" + SEQUENCIA_ID + "')");
+
+            jdbcTemplate.execute("ALTER TABLE " + TABELA + " ADD CONSTRAINT uk_contador_hiv_chave"
+                    + " UNIQUE (data, faixa_etaria, sexo, regiao, estado)");
+
+            logger.info("🗄️ {} migrada para tabela particionada por ano ({} linhas, partições {}..{})",
+                       TABELA, copiadas, primeiroAno, anoAtual + anosAdiante);
+        });
+    }
+
+    private void criarParticao(int ano) {
+        LocalDate inicio = LocalDate.of(ano, 1, 1);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABELA + "_" + ano + " PARTITION OF " + TABELA
+                + " FOR VALUES FROM ('" + inicio + "') TO ('" + inicio.plusYears(1) + "')");
+    }
+
+    /**
+     * Em tabela comum usa CONCURRENTLY (não bloqueia o flush); em particionada o PostgreSQL não permite
+     */
+    private void criarIndices() {
+        String modo = isParticionada() ? "" : "CONCURRENTLY ";
+        for (String[] indice : INDICES_COBERTURA) {
+            jdbcTemplate.execute("CREATE INDEX " + modo + "IF NOT EXISTS " + indice[0] + " ON " + TABELA + " " + indice[1]);
+        }
+        for (String antigo : INDICES_ANTIGOS) {
+            jdbcTemplate.execute("DROP INDEX IF EXISTS " + antigo);
+        }
+    }
+
+    private void criarRollups() {
+        for (String rollup : new String[] {TABELA_SEMANAL, TABELA_MENSAL}) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + rollup + " ("
+                    + "data DATE NOT NULL, "
+                    + "faixa_etaria VARCHAR(20) NOT NULL, "
+                    + "sexo VARCHAR(1) NOT NULL, "
+                    + "regiao VARCHAR(50) NOT NULL, "
+                    + "estado VARCHAR(50) NOT NULL DEFAULT '', "
+                    + "quantidade BIGINT NOT NULL, "
+                    + "criado_em TIMESTAMP(6) WITH TIME ZONE NOT NULL, "
+                    + "atualizado_em TIMESTAMP(6) WITH TIME ZONE NOT NULL, "
+                    + "PRIMARY KEY (data, faixa_etaria, sexo, regiao, estado)"
+                    + ")");
+        }
+    }
+
+    /**
+     * Recalcula os rollups a partir da tabela diária: inteiros quando estão vazios (primeira subida) ou com
+     * contadores.hiv.rollups.reconstruir=true; senão só a semana e o mês da subida em diante, que os flushes
+     * feitos antes do registro dos rollups gravaram só na tabela diária. O LOCK bloqueia flushes de outros
+     * nós no ponto em que gravam o rollup; como eles gravam a tabela diária antes, na mesma transação,
+     * nenhum incremento é contado duas vezes nem perdido.
+     */
+    private void carregarRollups() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("LOCK TABLE " + TABELA_SEMANAL + ", " + TABELA_MENSAL + " IN EXCLUSIVE MODE");
+
+            Boolean vazio = jdbcTemplate.queryForObject(
+                    "SELECT NOT EXISTS (SELECT 1 FROM " + TABELA_MENSAL + ")", Boolean.class);
+            boolean completo = reconstruirRollups || Boolean.TRUE.equals(vazio);
+
+            int semanas = recalcular(TABELA_SEMANAL, "week", completo ? null : inicioSemana(dataSubida));
+            int meses = recalcular(TABELA_MENSAL, "month", completo ? null : inicioMes(dataSubida));
+            if (completo) {
+                logger.info("📊 Rollups de {} recalculados: {} linhas semanais, {} mensais", TABELA, semanas, meses);
+            } else {
+                logger.info("📊 Rollups de {} recalculados desde {}: {} linhas semanais, {} mensais",
+                           TABELA, dataSubida, semanas, meses);
+            }
+        });
+        eventPublisher.publishEvent(new ContadoresGravadosEvent(TABELA));
+    }
+
+    /**
+     * @param desde início do primeiro período recalculado (null: todos)
+     */
+    private int recalcular(String rollup, String unidade, LocalDate desde) {
+        String filtro = desde != null ? " WHERE data >= ?" : "";
+        Object[] parametros = desde != null ? new Object[] {Date.valueOf(desde)} : new Object[0];
+        jdbcTemplate.update("DELETE FROM " + rollup + filtro, parametros);
+        return jdbcTemplate.update("INSERT INTO " + rollup
+                + " (data, faixa_etaria, sexo, regiao, estado, quantidade, criado_em, atualizado_em)"
+                + " SELECT CAST(date_trunc('" + unidade + "', data) AS DATE), faixa_etaria, sexo, regiao,"
+                + " COALESCE(estado, ''), SUM(quantidade), now(), now()"
+                + " FROM " + TABELA + filtro
+                + " GROUP BY 1, 2, 3, 4, 5", parametros);
+    }
+}
@@ -0,0 +1,48 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Sequência de IDs de notificacao. Os IDs vêm de notificacao_seq em blocos (allocationSize da entidade),
+ * para os INSERTs dos consumidores em lote serem agrupados; com IDENTITY o Hibernate precisava
+ * inserir linha a linha para ler o ID gerado.
+ * Roda no {@link PostConstruct}, depois do ddl-auto do Hibernate (que cria a sequência)
+ * e antes de os listeners Kafka começarem a consumir.
+ */
+@Service
+@DependsOn("entityManagerFactory")
+public class EsquemaNotificacaoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EsquemaNotificacaoService.class);
+
+    public static final String SEQUENCIA_ID = "notificacao_seq";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Tabelas criadas com IDENTITY já têm IDs acima do início da sequência nova: avança a sequência
+     * até o maior ID existente (só na primeira subida; depois ela já está à frente).
+     */
+    @PostConstruct
+    public void ajustarSequencia() {
+        try {
+            Long maiorId = jdbcTemplate.queryForObject(
+                    "SELECT MAX(id) FROM notificacao WHERE id > (SELECT last_value FROM " + SEQUENCIA_ID + ")",
+                    Long.class);
+            if (maiorId != null) {
+                jdbcTemplate.queryForObject("SELECT setval('" + SEQUENCIA_ID + "', ?)", Long.class, maiorId);
+                logger.info("🔢 Sequência {} avançada para {}", SEQUENCIA_ID, maiorId);
+            }
+        } catch (Exception e) {
+            logger.error("❌ Erro ao ajustar a sequência {}: {}", SEQUENCIA_ID, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import java.net.URI;
+import java.util.Collection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Busca no servidor HAPI FHIR as Observations notificadas pela Subscription (REST-hook só envia o id)
+ */
+@Service
+public class HapiObservationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HapiObservationService.class);
+
+    @Value("${hapi.fhir.url:http://localhost:8090/fhir}")
+    private String hapiFhirBaseUrl;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    public String getHapiFhirBaseUrl() {
+        return hapiFhirBaseUrl;
+    }
+
+    /**
+     * Busca dados reais da Observation no servidor HAPI FHIR
+     */
+    public String buscarObservation(String observationId, String traceId) {
+        try {
+            // Construir URL da API HAPI FHIR
+            String fhirUrl = hapiFhirBaseUrl + "/Observation/" + observationId;
+            
+            logger.info("Buscando Observation no HAPI - Trace: {}, URL: {}", traceId, fhirUrl);
+            
+            // Fazer chamada HTTP para buscar dados reais
+            ResponseEntity<String> response = restTemplate.getForEntity(fhirUrl, String.class);
+            
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                String fhirJson = response.getBody();
+                logger.info("Observation obtida com sucesso - Trace: {}, Size: {} chars", 
+                           traceId, fhirJson.length());
+                
+                // Log dos primeiros caracteres para debug (sem dados sensíveis)
+                String preview = fhirJson.length() > 200 ? fhirJson.substring(0, 200) + "..." : fhirJson;
+                logger.debug("Preview do FHIR JSON - Trace: {}: {}", traceId, preview);
+                
+                return fhirJson;
+            } else {
+                logger.warn("Resposta inválida do HAPI - Trace: {}, Status: {}", 
+                           traceId, response.getStatusCode());
+                return null;
+            }
+            
+        } catch (Exception e) {
+            logger.error("Erro ao buscar Observation no HAPI - Trace: {}, ID: {}, Erro: {}", 
+                        traceId, observationId, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Busca várias Observations numa única chamada: GET /Observation?_id=a,b,c&_count=N.
+     * Retorna o Bundle searchset (ids inexistentes simplesmente não aparecem) ou null em caso de erro.
+     */
+    public String buscarObservations(Collection<String> observationIds, String traceId) {
+        try {
+            URI fhirUrl = UriComponentsBuilder.fromUriString(hapiFhirBaseUrl)
+                    .path("/Observation")
+                    .queryParam("_id", String.join(",", observationIds))
+                    .queryParam("_count", observationIds.size())
+                    .build()
+                    .encode()
+                    .toUri();
+
+            logger.info("Buscando {} Observations no HAPI - Trace: {}", observationIds.size(), traceId);
+
+            ResponseEntity<String> response = restTemplate.getForEntity(fhirUrl, String.class);
+
+            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                logger.info("Bundle obtido com sucesso - Trace: {}, Size: {} chars", traceId, response.getBody().length());
+                return response.getBody();
+            }
+
+            logger.warn("Resposta inválida do HAPI na busca em lote - Trace: {}, Status: {}",
+                       traceId, response.getStatusCode());
+            return null;
+
+        } catch (Exception e) {
+            logger.error("Erro na busca em lote no HAPI - Trace: {}, IDs: {}, Erro: {}",
+                        traceId, observationIds.size(), e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.HemogramaDto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.regras.MotorRegrasRiscoHiv;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem.TriagemService;
+
+/**
+ * Converte o hemograma compacto no DTO JSON. Usado apenas na borda REST.
+ */
+@Component
+public class HemogramaDtoMapper {
+
+    @Autowired
+    private MotorRegrasRiscoHiv motorRegrasRiscoHiv;
+
+    @Autowired
+    private TriagemService triagemService;
+
+    public HemogramaDto paraDto(HemogramaCompacto h) {
+        HemogramaDto dto = new HemogramaDto();
+
+        dto.setObservationId(h.getObservationId());
+        dto.setDataColeta(h.getDataColeta());
+
+        for (Analito analito : Analito.values()) {
+            if (h.possui(analito)) {
+                definirValor(dto, analito, BigDecimal.valueOf(h.valor(analito)), h.unidade(analito));
+            }
+        }
+
+        dto.setRiscoHiv(h.isRiscoHiv());
+        if (h.isRiscoHiv()) {
+            dto.setMotivoRisco(descreverMotivo(h));
+        }
+        if (h.hasTriagemPositiva()) {
+            dto.setTriagem(triagemService.descrever(h));
+        }
+
+        return dto;
+    }
+
+    public List<HemogramaDto> paraDtos(List<HemogramaCompacto> hemogramas) {
+        return hemogramas.stream().map(this::paraDto).collect(Collectors.toList());
+    }
+
+    /**
+     * Texto do motivo de risco HIV (null quando não há risco)
+     */
+    public String descreverMotivo(HemogramaCompacto h) {
+        return h.isRiscoHiv() ? motorRegrasRiscoHiv.descrever(h.getMotivosRisco()) : null;
+    }
+
+    private void definirValor(HemogramaDto dto, Analito analito, BigDecimal valor, String unidade) {
+        switch (analito) {
+            case LEUCOCITOS -> { dto.setLeucocitos(valor); dto.setUnidadeLeucocitos(unidade); }
+            case ERITROCITOS -> { dto.setEritrocitos(valor); dto.setUnidadeEritrocitos(unidade); }
+            case HEMOGLOBINA -> { dto.setHemoglobina(valor); dto.setUnidadeHemoglobina(unidade); }
+            case HEMATOCRITO -> { dto.setHematocrito(valor); dto.setUnidadeHematocrito(unidade); }
+            case PLAQUETAS -> { dto.setPlaquetas(valor); dto.setUnidadePlaquetas(unidade); }
+
+            case MCV -> { dto.setMcv(valor); dto.setUnidadeMcv(unidade); }
+            case MCH -> { dto.setMch(valor); dto.setUnidadeMch(unidade); }
+            case MCHC -> { dto.setMchc(valor); dto.setUnidadeMchc(unidade); }
+            case RDW_CV -> { dto.setRdwCv(valor); dto.setUnidadeRdwCv(unidade); }
+            case RDW_SD -> { dto.setRdwSd(valor); dto.setUnidadeRdwSd(unidade); }
+
+            case NEUTROFILOS -> { dto.setNeutrofilos(valor); dto.setUnidadeNeutrofilos(unidade); }
+            case LINFOCITOS -> { dto.setLinfocitos(valor); dto.setUnidadeLinfocitos(unidade); }
+            case MONOCITOS -> { dto.setMonocitos(valor); dto.setUnidadeMonocitos(unidade); }
+            case EOSINOFILOS -> { dto.setEosinofilos(valor); dto.setUnidadeEosinofilos(unidade); }
+            case BASOFILOS -> { dto.setBasofilos(valor); dto.setUnidadeBasofilos(unidade); }
+
+            case NEUTROFILOS_ABS -> { dto.setNeutrofilosAbs(valor); dto.setUnidadeNeutrofilosAbs(unidade); }
+            case LINFOCITOS_ABS -> { dto.setLinfocitosAbs(valor); dto.setUnidadeLinfocitosAbs(unidade); }
+            case MONOCITOS_ABS -> { dto.setMonocitosAbs(valor); dto.setUnidadeMonocitosAbs(unidade); }
+            case EOSINOFILOS_ABS -> { dto.setEosinofilosAbs(valor); dto.setUnidadeEosinofilosAbs(unidade); }
+            case BASOFILOS_ABS -> { dto.setBasofilosAbs(valor); dto.setUnidadeBasofilosAbs(unidade); }
+
+            case MPV -> { dto.setMpv(valor); dto.setUnidadeMpv(unidade); }
+            case PDW -> { dto.setPdw(valor); dto.setUnidadePdw(unidade); }
+        }
+    }
+}
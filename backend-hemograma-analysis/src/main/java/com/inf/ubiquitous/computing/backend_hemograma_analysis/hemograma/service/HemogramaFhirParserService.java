@@ -4,21 +4,32 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import org.hl7.fhir.instance.model.api.IBaseResource;
 import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.IdType;
 import org.hl7.fhir.r4.model.Observation;
 import org.hl7.fhir.r4.model.Quantity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.HemogramaDto;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.PacienteDto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.regras.MotorRegrasRiscoHiv;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem.TriagemService;
 
 import ca.uhn.fhir.context.FhirContext;
 import ca.uhn.fhir.parser.IParser;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class HemogramaFhirParserService {
@@ -28,6 +39,34 @@ public class HemogramaFhirParserService {
     @Autowired
     private ContadorHivService contadorHivService;
 
+    @Autowired
+    private MotorRegrasRiscoHiv motorRegrasRiscoHiv;
+
+    @Autowired
+    private TriagemService triagemService;
+
+    @Autowired
+    private HemogramaFhirStreamingParser streamingParser;
+
+    @Value("${hemograma.parser.streaming.enabled:true}")
+    private boolean streamingEnabled;
+
+    @Value("${hemograma.parser.paralelo.enabled:true}")
+    private boolean paraleloEnabled;
+
+    // Abaixo deste número de itens o custo de coordenação supera o ganho: fica sequencial
+    @Value("${hemograma.parser.paralelo.limiar:64}")
+    private int limiarParalelo;
+
+    @Value("${hemograma.parser.paralelo.bloco:32}")
+    private int tamanhoBloco;
+
+    // 0 = número de núcleos disponíveis
+    @Value("${hemograma.parser.paralelo.threads:0}")
+    private int threadsParalelo;
+
+    private ForkJoinPool poolParalelo;
+
     private final FhirContext fhirContext;
     private final IParser jsonParser;
 
@@ -36,25 +75,54 @@ public class HemogramaFhirParserService {
         this.jsonParser = fhirContext.newJsonParser();
     }
 
-    public List<HemogramaDto> processarNotificacaoFhir(String fhirJson) {
+    @PostConstruct
+    public void inicializar() {
+        if (!paraleloEnabled) {
+            return;
+        }
+        int threads = threadsParalelo > 0 ? threadsParalelo : Runtime.getRuntime().availableProcessors();
+        poolParalelo = new ForkJoinPool(threads);
+        logger.info("⚡ Processamento paralelo de Bundles: {} threads, limiar={}, bloco={}",
+                threads, limiarParalelo, tamanhoBloco);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        if (poolParalelo != null) {
+            poolParalelo.shutdown();
+        }
+    }
+
+    public List<HemogramaCompacto> processarNotificacaoFhir(String fhirJson) {
+        return processarNotificacaoFhir(fhirJson, id -> { });
+    }
+
+    /**
+     * @param observationsLidas recebe o ID normalizado de toda Observation do payload (CBC ou não)
+     */
+    public List<HemogramaCompacto> processarNotificacaoFhir(String fhirJson, Consumer<String> observationsLidas) {
         logger.info("Iniciando processamento do FHIR JSON");
-        List<HemogramaData> hemogramas = new ArrayList<>();
+        List<HemogramaCompacto> hemogramas;
         int totalObservations = 0;
 
         try {
-            final IBaseResource resource = jsonParser.parseResource(fhirJson);
-
-            if (resource instanceof Bundle bundle) {
-                logger.info("Bundle FHIR com {} entradas encontrado", bundle.getEntry().size());
-                for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
-                    if (entry.getResource() instanceof Observation obs) {
-                        totalObservations++;
-                        processObservation(hemogramas, obs);
+            if (streamingEnabled) {
+                // Sequencial: a extração acompanha a leitura do stream e a avaliação (sem alocação) custa
+                // menos que distribuir os hemogramas em blocos
+                List<HemogramaCompacto> avaliados = new ArrayList<>();
+                totalObservations = streamingParser.parse(fhirJson, this::mapearComponenteHemograma,
+                        h -> avaliarHemograma(avaliados, h), observationsLidas);
+                hemogramas = avaliados;
+            } else {
+                List<Observation> observations = lerObservationsComHapi(fhirJson);
+                totalObservations = observations.size();
+                for (Observation observation : observations) {
+                    String observationId = observationId(observation);
+                    if (observationId != null) {
+                        observationsLidas.accept(observationId);
                     }
                 }
-            } else if (resource instanceof Observation obs) {
-                totalObservations = 1;
-                processObservation(hemogramas, obs);
+                hemogramas = processarEmBlocos(observations, this::processObservation);
             }
 
         } catch (Exception e) {
@@ -68,30 +136,90 @@ public class HemogramaFhirParserService {
             logger.warn("ATENÇÃO: Nenhum CBC (Complete Blood Count) foi encontrado nas Observations analisadas");
         }
 
-        List<HemogramaDto> dtos = new ArrayList<>();
-        for (HemogramaData h : hemogramas) {
-            HemogramaDto dto = converterParaDto(h);
-            dtos.add(dto);
-        }
+        // *** NOVA FUNCIONALIDADE: Incrementa contadores para casos HIV e achados de triagem ***
+        for (HemogramaCompacto h : hemogramas) {
+            if (!h.isRiscoHiv() && !h.hasTriagemPositiva()) {
+                continue;
+            }
 
-        // *** NOVA FUNCIONALIDADE: Incrementa contadores para casos HIV detectados ***
-        for (HemogramaDto dto : dtos) {
-            if (dto.isRiscoHiv()) {
+            // Cria paciente fictício para contadores (já que hemograma não tem dados pessoais)
+            PacienteDto pacienteFicticio = criarPacienteFicticio();
+
+            if (h.isRiscoHiv()) {
                 try {
-                    // Cria paciente fictício para contadores (já que hemograma não tem dados pessoais)
-                    PacienteDto pacienteFicticio = criarPacienteFicticio();
-                    contadorHivService.incrementarContador(pacienteFicticio);
+                    String motivoRisco = gerarMotivoRisco(h);
+                    contadorHivService.incrementarContador(h.getObservationId(), pacienteFicticio, motivoRisco);
                     
                     logger.warn("🚨 RISCO HIV DETECTADO no hemograma {} - Contador incrementado! Motivo: {}", 
-                               dto.getObservationId(), dto.getMotivoRisco());
+                               h.getObservationId(), motivoRisco);
                                
                 } catch (Exception e) {
                     logger.error("Erro ao incrementar contador HIV: {}", e.getMessage());
                 }
             }
+
+            triagemService.registrarCasos(h, pacienteFicticio);
+        }
+
+        return hemogramas;
+    }
+
+    /**
+     * Caminho original: monta a árvore completa do HAPI antes de olhar as Observations
+     */
+    private List<Observation> lerObservationsComHapi(String fhirJson) {
+        final IBaseResource resource = jsonParser.parseResource(fhirJson);
+        List<Observation> observations = new ArrayList<>();
+
+        if (resource instanceof Bundle bundle) {
+            logger.info("Bundle FHIR com {} entradas encontrado", bundle.getEntry().size());
+            for (Bundle.BundleEntryComponent entry : bundle.getEntry()) {
+                if (entry.getResource() instanceof Observation obs) {
+                    observations.add(obs);
+                }
+            }
+        } else if (resource instanceof Observation obs) {
+            observations.add(obs);
+        }
+
+        return observations;
+    }
+
+    /**
+     * Aplica o processador a cada item (caminho HAPI: extração + regras por Observation). Listas grandes
+     * são divididas em blocos avaliados em paralelo no pool dedicado; cada bloco gera sua própria lista e
+     * as listas são concatenadas na ordem original, então o resultado é idêntico ao do caminho sequencial.
+     */
+    private <T> List<HemogramaCompacto> processarEmBlocos(List<T> itens,
+                                                         BiConsumer<List<HemogramaCompacto>, T> processador) {
+        int total = itens.size();
+        if (poolParalelo == null || total < limiarParalelo) {
+            List<HemogramaCompacto> resultado = new ArrayList<>(total);
+            for (T item : itens) {
+                processador.accept(resultado, item);
+            }
+            return resultado;
         }
 
-        return dtos;
+        int bloco = Math.max(1, tamanhoBloco);
+        List<ForkJoinTask<List<HemogramaCompacto>>> tarefas = new ArrayList<>((total + bloco - 1) / bloco);
+        for (int inicio = 0; inicio < total; inicio += bloco) {
+            List<T> fatia = itens.subList(inicio, Math.min(inicio + bloco, total));
+            tarefas.add(poolParalelo.submit(() -> {
+                List<HemogramaCompacto> parcial = new ArrayList<>(fatia.size());
+                for (T item : fatia) {
+                    processador.accept(parcial, item);
+                }
+                return parcial;
+            }));
+        }
+
+        List<HemogramaCompacto> resultado = new ArrayList<>(total);
+        for (ForkJoinTask<List<HemogramaCompacto>> tarefa : tarefas) {
+            resultado.addAll(tarefa.join());
+        }
+        logger.debug("{} itens processados em {} blocos paralelos", total, tarefas.size());
+        return resultado;
     }
 
     /**
@@ -119,87 +247,46 @@ public class HemogramaFhirParserService {
     }
 
     /**
-     * Converte HemogramaData completo para HemogramaDto com todos os campos mapeados
+     * Gera explicação médica do motivo do risco HIV a partir da máscara de critérios
      */
-    private HemogramaDto converterParaDto(HemogramaData h) {
-        HemogramaDto dto = new HemogramaDto();
-        
-        dto.setObservationId(h.getObservationId());
-        dto.setDataColeta(h.getDataColeta());
-        
-        dto.setLeucocitos(h.getLeucocitos());
-        dto.setEritrocitos(h.getHemacias());
-        dto.setHemoglobina(h.getHemoglobina());
-        dto.setHematocrito(h.getHematocrito());
-        dto.setPlaquetas(h.getPlaquetas());
-        
-        dto.setMcv(h.getMcv());
-        dto.setMch(h.getMch());
-        dto.setMchc(h.getMchc());
-        dto.setRdwCv(h.getRdwCv());
-        dto.setRdwSd(h.getRdwSd());
-        
-        dto.setNeutrofilos(h.getNeutrofilos());
-        dto.setLinfocitos(h.getLinfocitos());
-        dto.setMonocitos(h.getMonocitos());
-        dto.setEosinofilos(h.getEosinofilos());
-        dto.setBasofilos(h.getBasofilos());
-        
-        dto.setNeutrofilosAbs(h.getNeutrofilosAbs());
-        dto.setLinfocitosAbs(h.getLinfocitosAbs());
-        dto.setMonocitosAbs(h.getMonocitosAbs());
-        dto.setEosinofilosAbs(h.getEosinofilosAbs());
-        dto.setBasofilosAbs(h.getBasofilosAbs());
-        
-        dto.setMpv(h.getMpv());
-        dto.setPdw(h.getPdw());
-        
-        dto.setRiscoHiv(h.isPossivelRiscoHiv());
-        if (h.isPossivelRiscoHiv()) {
-            dto.setMotivoRisco(gerarMotivoRisco(h));
-        }
-        
-        return dto;
+    private String gerarMotivoRisco(HemogramaCompacto h) {
+        return motorRegrasRiscoHiv.descrever(h.getMotivosRisco());
     }
 
-    /**
-     * Gera explicação médica do motivo do risco HIV baseado nos valores laboratoriais
-     */
-    private String gerarMotivoRisco(HemogramaData h) {
-        List<String> motivos = new ArrayList<>();
-        
-        if (h.getLeucocitos() != null && h.getLeucocitos().doubleValue() < 4000) {
-            motivos.add("Leucopenia (< 4000/μL)");
-        }
-        
-        if (h.getLinfocitos() != null && h.getLinfocitos().doubleValue() < 20) {
-            motivos.add("Linfopenia (< 20%)");
-        }
-        
-        if (h.getHemoglobina() != null && h.getHemoglobina().doubleValue() < 11) {
-            motivos.add("Anemia (< 11 g/dL)");
-        }
-        
-        if (h.getLinfocitosAbs() != null && h.getLinfocitosAbs().doubleValue() < 1000) {
-            motivos.add("Linfopenia absoluta (< 1000/μL)");
-        }
-        
-        return motivos.isEmpty() ? "Risco indeterminado" : String.join(", ", motivos);
-    }
-
-    private void processObservation(List<HemogramaData> hemogramas, Observation observation) {
+    private void processObservation(List<HemogramaCompacto> hemogramas, Observation observation) {
         if (isHemograma(observation)) {
-            HemogramaData h = extrairDadosHemograma(observation);
+            HemogramaCompacto h = extrairDadosHemograma(observation);
             if (h != null) {
-                h.setPossivelRiscoHiv(avaliarRiscoHiv(h));
-                hemogramas.add(h);
-                logger.info("CBC processado: {}", h);
+                avaliarHemograma(hemogramas, h);
             }
         } else {
             logger.info("Observation ignorada (não é CBC): ID={}", observation.getId());
         }
     }
 
+    private void avaliarHemograma(List<HemogramaCompacto> hemogramas, HemogramaCompacto h) {
+        avaliarRiscoHiv(h);
+        triagemService.avaliar(h);
+        hemogramas.add(h);
+        logger.info("CBC processado: {}", h);
+    }
+
+    /**
+     * Mesmo formato do caminho streaming ({@link HemogramaFhirStreamingParser#normalizarObservationId}):
+     * o HAPI preenche o id com o fullUrl da entry, absoluto num searchset
+     */
+    private static String observationId(Observation observation) {
+        IdType id = observation.getIdElement();
+        if (id.isUrn()) {
+            return id.getValue();
+        }
+        if (!id.hasIdPart()) {
+            return null;
+        }
+        String versao = id.hasVersionIdPart() ? id.getVersionIdPart() : observation.getMeta().getVersionId();
+        return HemogramaFhirStreamingParser.normalizarObservationId(id.getIdPart(), versao);
+    }
+
     private boolean isHemograma(Observation observation) {
         return observation.getCode().getCoding().stream().anyMatch(coding ->
                 "58410-2".equals(coding.getCode()) ||
@@ -209,9 +296,9 @@ public class HemogramaFhirParserService {
         );
     }
 
-    private HemogramaData extrairDadosHemograma(Observation observation) {
-        HemogramaData hemograma = new HemogramaData();
-        hemograma.setObservationId(observation.getId());
+    private HemogramaCompacto extrairDadosHemograma(Observation observation) {
+        HemogramaCompacto hemograma = new HemogramaCompacto();
+        hemograma.setObservationId(observationId(observation));
 
         Date coleta = null;
         if (observation.hasEffectiveDateTimeType()) coleta = observation.getEffectiveDateTimeType().getValue();
@@ -224,7 +311,7 @@ public class HemogramaFhirParserService {
             String unidade = extrairUnidadeComponent(component);
 
             if (codigo != null && valor != null) {
-                mapearComponenteHemograma(hemograma, codigo, valor, unidade);
+                mapearComponenteHemograma(hemograma, codigo, valor.doubleValue(), unidade);
             }
         }
 
@@ -251,128 +338,24 @@ public class HemogramaFhirParserService {
     }
 
     /**
-     * Mapeia códigos LOINC para campos do hemograma. Inclui códigos alternativos comuns.
+     * Mapeia códigos LOINC para analitos do hemograma. Inclui códigos alternativos comuns (ver {@link Analito}).
      */
-    private void mapearComponenteHemograma(HemogramaData h, String codigo, BigDecimal valor, String unidade) {
-        switch (codigo) {
-            case "6690-2", "26464-8" -> h.setLeucocitos(valor);
-            case "789-8" -> h.setHemacias(valor);
-            case "718-7" -> h.setHemoglobina(valor);
-            case "4544-3" -> h.setHematocrito(valor);
-            case "777-3" -> h.setPlaquetas(valor);
-
-            case "787-2" -> h.setMcv(valor);
-            case "785-6" -> h.setMch(valor);
-            case "786-4" -> h.setMchc(valor);
-            case "788-0" -> h.setRdwCv(valor);
-            case "21000-5" -> h.setRdwSd(valor);
-
-            case "770-8", "33743-4" -> h.setNeutrofilos(valor);
-            case "736-9", "26474-7" -> h.setLinfocitos(valor);
-            case "5905-5" -> h.setMonocitos(valor);
-            case "713-8" -> h.setEosinofilos(valor);
-            case "706-2" -> h.setBasofilos(valor);
-
-            case "751-8" -> h.setNeutrofilosAbs(valor);
-            case "731-0" -> h.setLinfocitosAbs(valor);
-            case "742-7" -> h.setMonocitosAbs(valor);
-            case "711-2" -> h.setEosinofilosAbs(valor);
-            case "704-7" -> h.setBasofilosAbs(valor);
-
-            case "32623-1" -> h.setMpv(valor);
-            case "49498-9" -> h.setPdw(valor);
-
-            default -> logger.debug("Código LOINC não mapeado: {} = {} {}", codigo, valor, unidade);
+    private void mapearComponenteHemograma(HemogramaCompacto h, String codigo, double valor, String unidade) {
+        Analito analito = Analito.porCodigoLoinc(codigo);
+        if (analito != null) {
+            h.definir(analito, valor, unidade);
+        } else {
+            logger.debug("Código LOINC não mapeado: {} = {} {}", codigo, valor, unidade);
         }
     }
 
     /**
-     * Avalia risco HIV baseado em critérios clínicos: leucopenia, linfopenia, anemia
+     * Avalia risco HIV com as regras configuradas (leucopenia, linfopenia, anemia...).
+     * Ver {@link MotorRegrasRiscoHiv}; a avaliação não aloca.
      */
-    private boolean avaliarRiscoHiv(HemogramaData h) {
-        if (h.getLeucocitos() == null && h.getLinfocitos() == null && h.getHemoglobina() == null) {
-            return false;
-        }
-
-        boolean leucopenia = h.getLeucocitos() != null && h.getLeucocitos().doubleValue() < 4000;
-        boolean linfopenia = h.getLinfocitos() != null && h.getLinfocitos().doubleValue() < 20;
-        boolean anemia = h.getHemoglobina() != null && h.getHemoglobina().doubleValue() < 11;
-        boolean linfopenia_abs = h.getLinfocitosAbs() != null && h.getLinfocitosAbs().doubleValue() < 1000;
-
-        return leucopenia || linfopenia || anemia || linfopenia_abs;
-    }
-
-    public static class HemogramaData {
-        private String observationId;
-        private Date dataColeta;
-        private BigDecimal leucocitos, hemacias, hemoglobina, hematocrito, plaquetas;
-        private BigDecimal mcv, mch, mchc, rdwCv, rdwSd;
-        private BigDecimal neutrofilos, linfocitos, monocitos, eosinofilos, basofilos;
-        private BigDecimal neutrofilosAbs, linfocitosAbs, monocitosAbs, eosinofilosAbs, basofilosAbs;
-        private BigDecimal mpv, pdw;
-        private boolean possivelRiscoHiv;
-
-        public String getObservationId() { return observationId; }
-        public void setObservationId(String observationId) { this.observationId = observationId; }
-        public Date getDataColeta() { return dataColeta; }
-        public void setDataColeta(Date dataColeta) { this.dataColeta = dataColeta; }
-
-        public BigDecimal getLeucocitos() { return leucocitos; }
-        public void setLeucocitos(BigDecimal leucocitos) { this.leucocitos = leucocitos; }
-        public BigDecimal getHemacias() { return hemacias; }
-        public void setHemacias(BigDecimal hemacias) { this.hemacias = hemacias; }
-        public BigDecimal getHemoglobina() { return hemoglobina; }
-        public void setHemoglobina(BigDecimal hemoglobina) { this.hemoglobina = hemoglobina; }
-        public BigDecimal getHematocrito() { return hematocrito; }
-        public void setHematocrito(BigDecimal hematocrito) { this.hematocrito = hematocrito; }
-        public BigDecimal getPlaquetas() { return plaquetas; }
-        public void setPlaquetas(BigDecimal plaquetas) { this.plaquetas = plaquetas; }
-
-        public BigDecimal getMcv() { return mcv; }
-        public void setMcv(BigDecimal mcv) { this.mcv = mcv; }
-        public BigDecimal getMch() { return mch; }
-        public void setMch(BigDecimal mch) { this.mch = mch; }
-        public BigDecimal getMchc() { return mchc; }
-        public void setMchc(BigDecimal mchc) { this.mchc = mchc; }
-        public BigDecimal getRdwCv() { return rdwCv; }
-        public void setRdwCv(BigDecimal rdwCv) { this.rdwCv = rdwCv; }
-        public BigDecimal getRdwSd() { return rdwSd; }
-        public void setRdwSd(BigDecimal rdwSd) { this.rdwSd = rdwSd; }
-
-        public BigDecimal getNeutrofilos() { return neutrofilos; }
-        public void setNeutrofilos(BigDecimal neutrofilos) { this.neutrofilos = neutrofilos; }
-        public BigDecimal getLinfocitos() { return linfocitos; }
-        public void setLinfocitos(BigDecimal linfocitos) { this.linfocitos = linfocitos; }
-        public BigDecimal getMonocitos() { return monocitos; }
-        public void setMonocitos(BigDecimal monocitos) { this.monocitos = monocitos; }
-        public BigDecimal getEosinofilos() { return eosinofilos; }
-        public void setEosinofilos(BigDecimal eosinofilos) { this.eosinofilos = eosinofilos; }
-        public BigDecimal getBasofilos() { return basofilos; }
-        public void setBasofilos(BigDecimal basofilos) { this.basofilos = basofilos; }
-
-        public BigDecimal getNeutrofilosAbs() { return neutrofilosAbs; }
-        public void setNeutrofilosAbs(BigDecimal neutrofilosAbs) { this.neutrofilosAbs = neutrofilosAbs; }
-        public BigDecimal getLinfocitosAbs() { return linfocitosAbs; }
-        public void setLinfocitosAbs(BigDecimal linfocitosAbs) { this.linfocitosAbs = linfocitosAbs; }
-        public BigDecimal getMonocitosAbs() { return monocitosAbs; }
-        public void setMonocitosAbs(BigDecimal monocitosAbs) { this.monocitosAbs = monocitosAbs; }
-        public BigDecimal getEosinofilosAbs() { return eosinofilosAbs; }
-        public void setEosinofilosAbs(BigDecimal eosinofilosAbs) { this.eosinofilosAbs = eosinofilosAbs; }
-        public BigDecimal getBasofilosAbs() { return basofilosAbs; }
-        public void setBasofilosAbs(BigDecimal basofilosAbs) { this.basofilosAbs = basofilosAbs; }
-
-        public BigDecimal getMpv() { return mpv; }
-        public void setMpv(BigDecimal mpv) { this.mpv = mpv; }
-        public BigDecimal getPdw() { return pdw; }
-        public void setPdw(BigDecimal pdw) { this.pdw = pdw; }
-
-        public boolean isPossivelRiscoHiv() { return possivelRiscoHiv; }
-        public void setPossivelRiscoHiv(boolean possivelRiscoHiv) { this.possivelRiscoHiv = possivelRiscoHiv; }
-
-        @Override
-        public String toString() {
-            return String.format("HemogramaData{id='%s', leucocitos=%s, linfocitos=%s, hemoglobina=%s, riscoHiv=%s}",
-                    observationId, leucocitos, linfocitos, hemoglobina, possivelRiscoHiv);
-        }
+    private void avaliarRiscoHiv(HemogramaCompacto h) {
+        int motivos = motorRegrasRiscoHiv.avaliar(h);
+        h.setMotivosRisco(motivos);
+        h.setRiscoHiv(motivos != 0);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,383 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.hl7.fhir.r4.model.DateTimeType;
+import org.hl7.fhir.r4.model.InstantType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+
+/**
+ * Parser FHIR em modo streaming (Jackson token a token).
+ * Percorre Bundle/Observation sem montar a árvore HAPI: cada entry.resource é lido uma única vez,
+ * Observations que não são CBC são descartadas sem virar objeto e os componentes de um CBC
+ * vão direto para o {@link HemogramaCompacto}. O consumo de memória não cresce com o tamanho do Bundle.
+ */
+@Component
+public class HemogramaFhirStreamingParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(HemogramaFhirStreamingParser.class);
+
+    private static final String HISTORICO = "/_history/";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Recebe cada componente extraído de um CBC (mesma assinatura de mapearComponenteHemograma)
+     */
+    @FunctionalInterface
+    public interface ComponenteHandler {
+        void mapear(HemogramaCompacto hemograma, String codigo, double valor, String unidade);
+    }
+
+    /**
+     * Processa o JSON FHIR entregando cada CBC encontrado ao consumidor, na ordem do documento.
+     *
+     * @return quantidade de Observations analisadas (CBC ou não)
+     */
+    public int parse(String fhirJson, ComponenteHandler handler, Consumer<HemogramaCompacto> consumidor) throws IOException {
+        return parse(fhirJson, handler, consumidor, id -> { });
+    }
+
+    /**
+     * Como {@link #parse(String, ComponenteHandler, Consumer)}, informando também o ID normalizado de toda
+     * Observation lida (CBC ou não)
+     */
+    public int parse(String fhirJson, ComponenteHandler handler, Consumer<HemogramaCompacto> consumidor,
+                     Consumer<String> observationsLidas) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(fhirJson)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Documento FHIR deve ser um objeto JSON");
+            }
+            ContextoParse contexto = new ContextoParse(handler, consumidor, observationsLidas);
+            finalizarRecurso(lerRecurso(parser, contexto), null, contexto);
+            return contexto.totalObservations;
+        }
+    }
+
+    /**
+     * Lê um recurso (Bundle ou Observation) a partir do START_OBJECT corrente.
+     * Campos de Bundle e Observation são tratados no mesmo laço porque "resourceType"
+     * não é garantidamente o primeiro campo do objeto.
+     */
+    private RecursoLido lerRecurso(JsonParser parser, ContextoParse contexto) throws IOException {
+        RecursoLido recurso = new RecursoLido();
+        String effectiveDateTime = null;
+        String issued = null;
+        Boolean cbc = null;
+        List<ComponentePendente> componentes = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            JsonToken valor = parser.nextToken();
+
+            switch (campo) {
+                case "resourceType" -> {
+                    recurso.resourceType = parser.getText();
+                    if (!"Observation".equals(recurso.resourceType) && !"Bundle".equals(recurso.resourceType)) {
+                        cbc = Boolean.FALSE;
+                    }
+                }
+                case "id" -> recurso.id = parser.getValueAsString();
+                case "meta" -> recurso.versionId = lerVersionId(parser, valor);
+                case "effectiveDateTime" -> effectiveDateTime = parser.getValueAsString();
+                case "issued" -> issued = parser.getValueAsString();
+                case "code" -> cbc = isCodigoHemograma(parser, valor);
+                case "entry" -> lerEntradas(parser, contexto, valor);
+                case "component" -> {
+                    if (Boolean.FALSE.equals(cbc) || valor != JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                    } else {
+                        componentes = lerComponentes(parser);
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (!"Observation".equals(recurso.resourceType) || !Boolean.TRUE.equals(cbc)) {
+            return recurso;
+        }
+
+        HemogramaCompacto hemograma = new HemogramaCompacto();
+        hemograma.setDataColeta(converterDataColeta(effectiveDateTime, issued));
+
+        if (componentes != null) {
+            for (ComponentePendente c : componentes) {
+                if (c.codigo != null && c.temValor) {
+                    contexto.handler.mapear(hemograma, c.codigo, c.valor, c.unidade);
+                }
+            }
+        }
+
+        recurso.hemograma = hemograma;
+        return recurso;
+    }
+
+    /**
+     * Atribui o ID final e entrega o CBC. Chamado só ao fim da entry porque
+     * "fullUrl" pode vir depois de "resource".
+     */
+    private void finalizarRecurso(RecursoLido recurso, String fullUrl, ContextoParse contexto) {
+        if (recurso == null || !"Observation".equals(recurso.resourceType)) {
+            return;
+        }
+
+        contexto.totalObservations++;
+        String observationId = montarObservationId(fullUrl, recurso.id, recurso.versionId);
+        if (observationId != null) {
+            contexto.observationsLidas.accept(observationId);
+        }
+
+        if (recurso.hemograma == null) {
+            logger.info("Observation ignorada (não é CBC): ID={}", observationId);
+            return;
+        }
+
+        recurso.hemograma.setObservationId(observationId);
+        contexto.consumidor.accept(recurso.hemograma);
+    }
+
+    private void lerEntradas(JsonParser parser, ContextoParse contexto, JsonToken valor) throws IOException {
+        if (valor != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String fullUrl = null;
+            RecursoLido recurso = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String campo = parser.currentName();
+                JsonToken token = parser.nextToken();
+
+                if ("fullUrl".equals(campo)) {
+                    fullUrl = parser.getValueAsString();
+                } else if ("resource".equals(campo) && token == JsonToken.START_OBJECT && recurso == null) {
+                    recurso = lerRecurso(parser, contexto);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            finalizarRecurso(recurso, fullUrl, contexto);
+        }
+    }
+
+    /**
+     * Verifica os codings do "code" da Observation (painel LOINC 58410-2 / 57021-8 ou display equivalente)
+     */
+    private boolean isCodigoHemograma(JsonParser parser, JsonToken valor) throws IOException {
+        if (valor != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return false;
+        }
+
+        boolean hemograma = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            JsonToken token = parser.nextToken();
+
+            if (!"coding".equals(campo) || token != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String campoCoding = parser.currentName();
+                    parser.nextToken();
+
+                    if ("code".equals(campoCoding)) {
+                        String code = parser.getValueAsString();
+                        hemograma |= "58410-2".equals(code) || "57021-8".equals(code);
+                    } else if ("display".equals(campoCoding)) {
+                        String display = parser.getValueAsString();
+                        hemograma |= "hemograma".equalsIgnoreCase(display)
+                                || "complete blood count".equalsIgnoreCase(display);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return hemograma;
+    }
+
+    private List<ComponentePendente> lerComponentes(JsonParser parser) throws IOException {
+        List<ComponentePendente> componentes = new ArrayList<>();
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            ComponentePendente componente = new ComponentePendente();
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String campo = parser.currentName();
+                JsonToken token = parser.nextToken();
+
+                if ("code".equals(campo) && token == JsonToken.START_OBJECT) {
+                    componente.codigo = lerPrimeiroCodigo(parser);
+                } else if ("valueQuantity".equals(campo) && token == JsonToken.START_OBJECT) {
+                    lerValueQuantity(parser, componente);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            componentes.add(componente);
+        }
+        return componentes;
+    }
+
+    /**
+     * Equivalente a code.coding.stream().findFirst().map(Coding::getCode)
+     */
+    private String lerPrimeiroCodigo(JsonParser parser) throws IOException {
+        String codigo = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            JsonToken token = parser.nextToken();
+
+            if (!"coding".equals(campo) || token != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+
+            boolean primeiro = true;
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String campoCoding = parser.currentName();
+                    parser.nextToken();
+                    if (primeiro && "code".equals(campoCoding)) {
+                        codigo = parser.getValueAsString();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                primeiro = false;
+            }
+        }
+        return codigo;
+    }
+
+    private void lerValueQuantity(JsonParser parser, ComponentePendente componente) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            JsonToken token = parser.nextToken();
+
+            if ("value".equals(campo) && token.isNumeric()) {
+                componente.valor = parser.getDoubleValue();
+                componente.temValor = true;
+            } else if ("unit".equals(campo)) {
+                componente.unidade = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private String lerVersionId(JsonParser parser, JsonToken valor) throws IOException {
+        if (valor != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+
+        String versionId = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String campo = parser.currentName();
+            parser.nextToken();
+            if ("versionId".equals(campo)) {
+                versionId = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return versionId;
+    }
+
+    /**
+     * ID do hemograma: Observation/{id}/_history/{versionId} (sem versão quando o recurso não tem), igual
+     * na busca individual e na busca em lote. O fullUrl da entry (absoluto num searchset) só é usado
+     * quando o recurso não traz id.
+     */
+    private String montarObservationId(String fullUrl, String id, String versionId) {
+        if (id != null) {
+            return normalizarObservationId(id, versionId);
+        }
+        if (fullUrl == null || fullUrl.isBlank()) {
+            return null;
+        }
+        if (fullUrl.startsWith("urn:")) {
+            return fullUrl;
+        }
+        int historico = fullUrl.indexOf(HISTORICO);
+        String base = historico >= 0 ? fullUrl.substring(0, historico) : fullUrl;
+        String versaoUrl = historico >= 0 ? fullUrl.substring(historico + HISTORICO.length()) : null;
+        return normalizarObservationId(base.substring(base.lastIndexOf('/') + 1),
+                versionId != null ? versionId : versaoUrl);
+    }
+
+    public static String normalizarObservationId(String id, String versionId) {
+        if (versionId != null && !versionId.isBlank()) {
+            return "Observation/" + id + HISTORICO + versionId;
+        }
+        return "Observation/" + id;
+    }
+
+    /**
+     * ID lógico ("123") de "Observation/123/_history/1", "Observation/123" ou "123"
+     */
+    public static String idLogico(String observationId) {
+        int historico = observationId.indexOf(HISTORICO);
+        String base = historico >= 0 ? observationId.substring(0, historico) : observationId;
+        return base.substring(base.lastIndexOf('/') + 1);
+    }
+
+    private Date converterDataColeta(String effectiveDateTime, String issued) {
+        if (effectiveDateTime != null) {
+            return new DateTimeType(effectiveDateTime).getValue();
+        }
+        if (issued != null) {
+            return new InstantType(issued).getValue();
+        }
+        return null;
+    }
+
+    private static final class ContextoParse {
+        private final ComponenteHandler handler;
+        private final Consumer<HemogramaCompacto> consumidor;
+        private final Consumer<String> observationsLidas;
+        private int totalObservations;
+
+        private ContextoParse(ComponenteHandler handler, Consumer<HemogramaCompacto> consumidor,
+                              Consumer<String> observationsLidas) {
+            this.handler = handler;
+            this.consumidor = consumidor;
+            this.observationsLidas = observationsLidas;
+        }
+    }
+
+    private static final class RecursoLido {
+        private String resourceType;
+        private String id;
+        private String versionId;
+        private HemogramaCompacto hemograma;
+    }
+
+    private static final class ComponentePendente {
+        private String codigo;
+        private boolean temValor;
+        private double valor;
+        private String unidade;
+    }
+}
@@ -1,19 +1,37 @@
 package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
 
-import java.util.Comparator;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.HemogramaDto;
-
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.armazenamento.ArmazenamentoHeap;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.armazenamento.ArmazenamentoHemogramas;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.armazenamento.ArmazenamentoMapeado;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.armazenamento.PaginaHemogramas;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.regras.MotorRegrasRiscoHiv;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Buffer limitado de hemogramas. O armazenamento fica num {@link ArmazenamentoHemogramas}
+ * escolhido por hemograma.buffer.backend: "heap" (padrão, índices em skip list) ou
+ * "mmap" (arquivo mapeado em memória, sobrevive a restart e comporta milhões de registros).
+ */
 @Service
 public class HemogramaStorageService {
 
@@ -22,114 +40,167 @@ public class HemogramaStorageService {
     @Value("${hemograma.buffer.max-size:10000}")
     private int maxBufferSize;
 
-    private final Map<String, HemogramaDto> hemogramaBuffer = new ConcurrentHashMap<>();
+    @Value("${hemograma.buffer.backend:heap}")
+    private String backend;
+
+    @Value("${hemograma.buffer.mmap.arquivo:./data/hemogramas.ring}")
+    private String arquivoMapeado;
+
+    @Autowired
+    private MotorRegrasRiscoHiv motorRegrasRiscoHiv;
+
+    @Autowired
+    private PersistenciaHemogramaService persistenciaHemograma;
+
+    @Autowired
+    private CacheEstatisticasService cacheEstatisticas;
+
+    private ArmazenamentoHemogramas armazenamento;
+
+    @PostConstruct
+    public void inicializar() {
+        if ("mmap".equalsIgnoreCase(backend)) {
+            armazenamento = new ArmazenamentoMapeado(Path.of(arquivoMapeado), maxBufferSize);
+        } else {
+            if (!"heap".equalsIgnoreCase(backend)) {
+                logger.warn("Backend de buffer desconhecido '{}'; usando heap", backend);
+            }
+            armazenamento = new ArmazenamentoHeap(maxBufferSize);
+        }
+        logger.info("Buffer de hemogramas: backend={}, capacidade={}", armazenamento.getNome(), maxBufferSize);
+    }
+
+    /**
+     * Grava no disco as páginas alteradas do backend mapeado (no-op em heap)
+     */
+    @Scheduled(fixedDelayString = "${hemograma.buffer.mmap.sync-ms:5000}")
+    public void sincronizar() {
+        armazenamento.sincronizar();
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        armazenamento.close();
+    }
 
     /**
      * Adiciona um novo hemograma ao buffer com controle de tamanho
      */
-    public void addHemograma(HemogramaDto hemograma) {
+    public void addHemograma(HemogramaCompacto hemograma) {
         if (hemograma != null && hemograma.getObservationId() != null) {
-            
-            if (hemogramaBuffer.size() >= maxBufferSize) {
-                removeOldestHemograma();
-                logger.warn("Buffer cheio! Removendo hemograma mais antigo. Tamanho: {}", hemogramaBuffer.size());
+
+            int comRiscoAntes = armazenamento.totalComRisco();
+            armazenamento.adicionar(hemograma);
+            // Só muda a contagem por motivo se entrou um caso de risco ou se um saiu pelo limite do buffer
+            if (hemograma.isRiscoHiv() || armazenamento.totalComRisco() != comRiscoAntes) {
+                cacheEstatisticas.invalidarRiscoHiv();
             }
-            
-            hemogramaBuffer.put(hemograma.getObservationId(), hemograma);
-            
+            // Write-behind: só enfileira, a gravação no banco acontece em lote em outra thread
+            persistenciaHemograma.enfileirar(hemograma);
+
             if (hemograma.isRiscoHiv()) {
                 logger.info("Hemograma com risco HIV armazenado: ID={}, Motivo={}", 
-                           hemograma.getObservationId(), hemograma.getMotivoRisco());
+                           hemograma.getObservationId(), motorRegrasRiscoHiv.descrever(hemograma.getMotivosRisco()));
             }
             
-            logger.debug("Hemograma adicionado ao buffer. Total: {}", hemogramaBuffer.size());
+            logger.debug("Hemograma adicionado ao buffer. Total: {}", armazenamento.total());
         }
     }
 
-    public Optional<HemogramaDto> findById(String observationId) {
-        return Optional.ofNullable(hemogramaBuffer.get(observationId));
+    public Optional<HemogramaCompacto> findById(String observationId) {
+        return armazenamento.buscar(observationId);
     }
 
-    public List<HemogramaDto> getRecentHemogramas() {
-        return hemogramaBuffer.values().stream()
-                .sorted(Comparator.comparing(HemogramaDto::getDataColeta,
-                        Comparator.nullsLast(Comparator.reverseOrder())))
-                .collect(Collectors.toList());
-    }
-
-    public List<HemogramaDto> getAllHemogramas() {
-        return hemogramaBuffer.values().stream().collect(Collectors.toList());
+    /**
+     * Página de hemogramas do mais recente para o mais antigo, começando logo depois do cursor
+     * (ou do topo, se o cursor for nulo).
+     *
+     * @throws IllegalArgumentException se o cursor não foi gerado por este serviço
+     */
+    public PaginaHemogramas buscarRecentes(int limite, String antes, boolean apenasComRisco) {
+        return armazenamento.recentes(limite, antes, apenasComRisco);
     }
 
     public void clearHemogramas() {
-        int tamanhoAnterior = hemogramaBuffer.size();
-        hemogramaBuffer.clear();
+        int tamanhoAnterior = armazenamento.limpar();
+        cacheEstatisticas.invalidarRiscoHiv();
         logger.info("Buffer limpo. {} hemogramas removidos", tamanhoAnterior);
     }
 
     /**
      * Retorna hemogramas que foram identificados com possível risco de HIV
      */
-    public List<HemogramaDto> getHemogramasComRiscoHiv() {
-        return hemogramaBuffer.values().stream()
-                .filter(h -> h.isRiscoHiv())
-                .sorted(Comparator.comparing(HemogramaDto::getDataColeta,
-                        Comparator.nullsLast(Comparator.reverseOrder())))
-                .collect(Collectors.toList());
+    public List<HemogramaCompacto> getHemogramasComRiscoHiv() {
+        return armazenamento.recentes(Integer.MAX_VALUE, null, true).itens();
     }
 
     /**
      * Retorna o número total de hemogramas no buffer
      */
     public int getTotalHemogramas() {
-        return hemogramaBuffer.size();
+        return armazenamento.total();
     }
 
     /**
      * Retorna o número de hemogramas com risco HIV
      */
     public int getTotalHemogramasComRisco() {
-        return (int) hemogramaBuffer.values().stream()
-                .filter(h -> h.isRiscoHiv())
-                .count();
+        return armazenamento.totalComRisco();
     }
 
     /**
-     * Retorna estatísticas completas do buffer
+     * Quantidade de hemogramas com risco no buffer por motivo descrito. Fica em cache até entrar
+     * ou sair um caso de risco; a chave inclui as regras carregadas, então recarregar o arquivo
+     * de regras (novos textos de motivo) já gera outra entrada.
      */
-    public BufferStats getEstatisticas() {
-        int total = hemogramaBuffer.size();
-        int comRisco = getTotalHemogramasComRisco();
-        
-        return new BufferStats(total, comRisco, maxBufferSize);
+    @Cacheable(cacheNames = CacheEstatisticasService.ESTATISTICAS_RISCO_HIV, key = "{#root.methodName, @motorRegrasRiscoHiv.getRegras()}", sync = true)
+    public Map<String, Long> contarMotivosRisco() {
+        Map<String, Long> motivos = new TreeMap<>();
+        for (HemogramaCompacto h : getHemogramasComRiscoHiv()) {
+            String motivo = motorRegrasRiscoHiv.descrever(h.getMotivosRisco());
+            motivos.merge(motivo != null ? motivo : "Não especificado", 1L, Long::sum);
+        }
+        return motivos;
     }
 
     /**
-     * Remove hemogramas mais antigos para manter o buffer no limite
+     * Quantidade de hemogramas com risco no buffer por data de coleta (yyyy-MM-dd; sem data conta como hoje).
+     * Mesmo cache de {@link #contarMotivosRisco()}.
      */
-    private void removeOldestHemograma() {
-        hemogramaBuffer.values().stream()
-                .min(Comparator.comparing(HemogramaDto::getDataColeta, 
-                     Comparator.nullsFirst(Comparator.naturalOrder())))
-                .ifPresent(oldest -> {
-                    hemogramaBuffer.remove(oldest.getObservationId());
-                    logger.debug("Removido hemograma antigo: {}", oldest.getObservationId());
-                });
+    @Cacheable(cacheNames = CacheEstatisticasService.ESTATISTICAS_RISCO_HIV, key = "#root.methodName", sync = true)
+    public Map<String, Long> contarRiscoPorData() {
+        Map<String, Long> datas = new TreeMap<>();
+        String hoje = LocalDate.now().toString();
+        for (HemogramaCompacto h : getHemogramasComRiscoHiv()) {
+            String data = h.hasDataColeta()
+                    ? Instant.ofEpochMilli(h.getDataColetaMillis()).atZone(ZoneId.systemDefault()).toLocalDate().toString()
+                    : hoje;
+            datas.merge(data, 1L, Long::sum);
+        }
+        return datas;
     }
 
     /**
-     * Remove e retorna os últimos N hemogramas (FIFO)
+     * Retorna estatísticas completas do buffer
      */
-    public List<HemogramaDto> consumirHemogramas(int quantidade) {
-        List<HemogramaDto> todos = getRecentHemogramas();
-        List<HemogramaDto> consumidos = todos.stream()
-                .limit(quantidade)
-                .collect(Collectors.toList());
-        
-        consumidos.forEach(h -> hemogramaBuffer.remove(h.getObservationId()));
+    public BufferStats getEstatisticas() {
+        int total = armazenamento.total();
+        int comRisco = armazenamento.totalComRisco();
         
+        return new BufferStats(total, comRisco, maxBufferSize);
+    }
+
+    /**
+     * Remove e retorna os últimos N hemogramas (FIFO)
+     */
+    public List<HemogramaCompacto> consumirHemogramas(int quantidade) {
+        List<HemogramaCompacto> consumidos = armazenamento.consumirRecentes(quantidade);
+        if (consumidos.stream().anyMatch(HemogramaCompacto::isRiscoHiv)) {
+            cacheEstatisticas.invalidarRiscoHiv();
+        }
+
         logger.info("Consumidos {} hemogramas do buffer. Restam: {}", 
-                   consumidos.size(), hemogramaBuffer.size());
+                   consumidos.size(), armazenamento.total());
         
         return consumidos;
     }
@@ -137,13 +208,8 @@ public class HemogramaStorageService {
     /**
      * Busca hemogramas por critérios específicos
      */
-    public List<HemogramaDto> buscarPorCriterios(boolean apenasComRisco, int limite) {
-        return hemogramaBuffer.values().stream()
-                .filter(h -> !apenasComRisco || h.isRiscoHiv())
-                .sorted(Comparator.comparing(HemogramaDto::getDataColeta,
-                        Comparator.nullsLast(Comparator.reverseOrder())))
-                .limit(limite)
-                .collect(Collectors.toList());
+    public List<HemogramaCompacto> buscarPorCriterios(boolean apenasComRisco, int limite) {
+        return armazenamento.recentes(limite, null, apenasComRisco).itens();
     }
 
     /**
@@ -0,0 +1,367 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Ingestão assíncrona das notificações da Subscription FHIR.
+ * O controller só valida e enfileira o id da Observation (fila limitada); um pool de workers
+ * esvazia a fila em micro-lotes: as notificações que chegam dentro de uma janela curta são
+ * buscadas no HAPI com uma única busca {@code _id=a,b,c} e o Bundle vai inteiro para o parser.
+ * Com a fila cheia o chamador deve responder 429 com Retry-After ({@link #estimarRetryAfterSegundos()}).
+ */
+@Service
+public class IngestaoFhirService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestaoFhirService.class);
+
+    @Value("${fhir.ingestao.fila.capacidade:1000}")
+    private int capacidadeFila;
+
+    @Value("${fhir.ingestao.workers:4}")
+    private int totalWorkers;
+
+    @Value("${fhir.ingestao.lote:20}")
+    private int tamanhoLote;
+
+    // Tempo máximo que a primeira notificação do lote espera por outras antes da busca em lote
+    @Value("${fhir.ingestao.janela-ms:50}")
+    private long janelaMs;
+
+    @Value("${fhir.payload.max-size:1048576}")
+    private int maxPayloadSize;
+
+    @Autowired
+    private HapiObservationService hapiObservationService;
+
+    @Autowired
+    private HemogramaFhirParserService hemogramaParser;
+
+    @Autowired
+    private HemogramaStorageService hemogramaStorageService;
+
+    @Autowired
+    private HemogramaDtoMapper hemogramaDtoMapper;
+
+    private BlockingQueue<TarefaIngestao> fila;
+    private ExecutorService workers;
+
+    // Métricas
+    private final LongAdder aceitas = new LongAdder();
+    private final LongAdder rejeitadas = new LongAdder();
+    private final LongAdder processadas = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final LongAccumulator esperaMaximaNanos = new LongAccumulator(Math::max, 0);
+    private final AtomicInteger emProcessamento = new AtomicInteger();
+    private final LongAdder chamadasHapi = new LongAdder();
+    private final LongAdder observationsBuscadas = new LongAdder();
+
+    // Vazão de drenagem (itens/s) medida entre duas execuções de atualizarVazao()
+    private final AtomicLong ultimaContagem = new AtomicLong();
+    private volatile long ultimaMedicaoNanos = System.nanoTime();
+    private volatile double vazaoPorSegundo;
+
+    public record TarefaIngestao(String observationId, String traceId, long enfileiradaEmNanos) {}
+
+    public record IngestaoMetrics(
+        int profundidadeFila,
+        int capacidadeFila,
+        int emProcessamento,
+        long aceitas,
+        long rejeitadas,
+        long processadas,
+        long falhas,
+        double esperaMediaMs,
+        double esperaMaximaMs,
+        double vazaoPorSegundo,
+        long chamadasHapi,
+        double observationsPorChamada
+    ) {}
+
+    @PostConstruct
+    public void iniciar() {
+        fila = new ArrayBlockingQueue<>(capacidadeFila);
+        AtomicInteger sequencia = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(totalWorkers, r -> {
+            Thread t = new Thread(r, "fhir-ingestao-" + sequencia.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 0; i < totalWorkers; i++) {
+            workers.submit(this::executarWorker);
+        }
+        logger.info("📥 Ingestão FHIR assíncrona: fila={}, workers={}, lote={}, janela={}ms",
+                   capacidadeFila, totalWorkers, tamanhoLote, janelaMs);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        workers.shutdownNow();
+        if (!fila.isEmpty()) {
+            logger.warn("⚠️ Encerrando com {} notificações FHIR não processadas na fila", fila.size());
+        }
+    }
+
+    /**
+     * Enfileira sem bloquear. Retorna false quando a fila está cheia (responder 429).
+     */
+    public boolean enfileirar(String observationId, String traceId) {
+        boolean aceita = fila.offer(new TarefaIngestao(observationId, traceId, System.nanoTime()));
+        if (aceita) {
+            aceitas.increment();
+        } else {
+            rejeitadas.increment();
+        }
+        return aceita;
+    }
+
+    /**
+     * Tempo estimado para a fila atual esvaziar, limitado entre 1 e 60 s
+     */
+    public long estimarRetryAfterSegundos() {
+        double vazao = vazaoPorSegundo;
+        if (vazao <= 0) {
+            return 1;
+        }
+        long segundos = (long) Math.ceil(fila.size() / vazao);
+        return Math.max(1, Math.min(60, segundos));
+    }
+
+    public IngestaoMetrics getMetricas() {
+        long totalProcessado = processadas.sum() + falhas.sum();
+        double esperaMedia = totalProcessado > 0 ? esperaTotalNanos.sum() / (double) totalProcessado / 1_000_000 : 0;
+
+        return new IngestaoMetrics(
+            fila.size(),
+            capacidadeFila,
+            emProcessamento.get(),
+            aceitas.sum(),
+            rejeitadas.sum(),
+            processadas.sum(),
+            falhas.sum(),
+            esperaMedia,
+            esperaMaximaNanos.get() / 1_000_000.0,
+            vazaoPorSegundo,
+            chamadasHapi.sum(),
+            chamadasHapi.sum() > 0 ? observationsBuscadas.sum() / (double) chamadasHapi.sum() : 0
+        );
+    }
+
+    @Scheduled(fixedRate = 5000)
+    public void atualizarVazao() {
+        long agora = System.nanoTime();
+        long contagem = processadas.sum() + falhas.sum();
+        long anterior = ultimaContagem.getAndSet(contagem);
+        double segundos = (agora - ultimaMedicaoNanos) / 1_000_000_000.0;
+        ultimaMedicaoNanos = agora;
+        if (segundos > 0) {
+            vazaoPorSegundo = (contagem - anterior) / segundos;
+        }
+    }
+
+    /**
+     * Armazena hemogramas e destaca casos com risco HIV para auditoria médica
+     */
+    public void armazenarHemogramas(List<HemogramaCompacto> hemogramas, String traceId) {
+        int riscoCount = 0;
+        for (HemogramaCompacto h : hemogramas) {
+            hemogramaStorageService.addHemograma(h);
+            if (h.isRiscoHiv()) {
+                riscoCount++;
+                logger.warn("🚨 Hemograma com risco HIV detectado - Trace: {}, ID: {}, Motivo: {}", 
+                           traceId, h.getObservationId(), hemogramaDtoMapper.descreverMotivo(h));
+            }
+        }
+        
+        if (riscoCount > 0) {
+            logger.warn("🚨 {} hemograma(s) com risco HIV de {} processados - Trace: {}", 
+                       riscoCount, hemogramas.size(), traceId);
+        }
+    }
+
+    public boolean isPayloadValido(String payload) {
+        return isPayloadValido(payload, maxPayloadSize);
+    }
+
+    private boolean isPayloadValido(String payload, long limite) {
+        if (payload == null || payload.isBlank()) {
+            logger.warn("Payload vazio recebido");
+            return false;
+        }
+
+        if (payload.length() > limite) {
+            logger.warn("Payload muito grande: {} bytes (maximo: {})", payload.length(), limite);
+            return false;
+        }
+
+        return true;
+    }
+
+    private void executarWorker() {
+        List<TarefaIngestao> lote = new ArrayList<>(tamanhoLote);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                coletarLote(lote);
+                processarLote(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("Erro inesperado no worker de ingestão FHIR: {}", e.getMessage(), e);
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    /**
+     * Bloqueia até a primeira notificação e junta as que chegarem dentro da janela (ou até encher o lote)
+     */
+    private void coletarLote(List<TarefaIngestao> lote) throws InterruptedException {
+        lote.add(fila.take());
+        long prazo = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(janelaMs);
+
+        while (lote.size() < tamanhoLote) {
+            fila.drainTo(lote, tamanhoLote - lote.size());
+            long restante = prazo - System.nanoTime();
+            if (lote.size() >= tamanhoLote || restante <= 0) {
+                break;
+            }
+            TarefaIngestao proxima = fila.poll(restante, TimeUnit.NANOSECONDS);
+            if (proxima == null) {
+                break;
+            }
+            lote.add(proxima);
+        }
+    }
+
+    private void processarLote(List<TarefaIngestao> lote) {
+        long inicioLote = System.nanoTime();
+        emProcessamento.addAndGet(lote.size());
+        try {
+            for (TarefaIngestao tarefa : lote) {
+                long espera = inicioLote - tarefa.enfileiradaEmNanos();
+                esperaTotalNanos.add(espera);
+                esperaMaximaNanos.accumulate(espera);
+            }
+
+            if (lote.size() == 1) {
+                processarTarefa(lote.get(0));
+            } else {
+                processarBuscaEmLote(lote);
+            }
+        } finally {
+            emProcessamento.addAndGet(-lote.size());
+        }
+        logger.debug("Lote de ingestão FHIR processado: {} notificações em {} ms",
+                    lote.size(), (System.nanoTime() - inicioLote) / 1_000_000);
+    }
+
+    /**
+     * Uma única busca _id no HAPI para o lote inteiro; o Bundle retornado vai para o parser de uma vez.
+     * Se a busca falhar, cai para a busca individual de cada notificação.
+     */
+    private void processarBuscaEmLote(List<TarefaIngestao> lote) {
+        Set<String> ids = new LinkedHashSet<>();
+        for (TarefaIngestao tarefa : lote) {
+            ids.add(tarefa.observationId());
+        }
+        String traceLote = lote.get(0).traceId() + "+" + (lote.size() - 1);
+
+        try {
+            MDC.put("traceId", traceLote);
+
+            chamadasHapi.increment();
+            observationsBuscadas.add(ids.size());
+            String bundle = hapiObservationService.buscarObservations(ids, traceLote);
+            if (!isPayloadValido(bundle, (long) maxPayloadSize * ids.size())) {
+                logger.warn("Busca em lote sem resultado válido - Trace: {}, buscando individualmente", traceLote);
+                MDC.clear();
+                lote.forEach(this::processarTarefa);
+                return;
+            }
+
+            Set<String> encontrados = new HashSet<>();
+            List<HemogramaCompacto> hemogramas = hemogramaParser.processarNotificacaoFhir(bundle,
+                    id -> encontrados.add(HemogramaFhirStreamingParser.idLogico(id)));
+            if (hemogramas.isEmpty()) {
+                logger.warn("Nenhum hemograma encontrado no lote - Trace: {}, IDs: {}", traceLote, ids.size());
+            } else {
+                armazenarHemogramas(hemogramas, traceLote);
+            }
+
+            // IDs que o searchset não trouxe (ainda não indexados, removidos...) vão pela busca individual
+            List<TarefaIngestao> ausentes = lote.stream()
+                    .filter(tarefa -> !encontrados.contains(HemogramaFhirStreamingParser.idLogico(tarefa.observationId())))
+                    .toList();
+            processadas.add(lote.size() - ausentes.size());
+            if (!ausentes.isEmpty()) {
+                logger.warn("{} de {} IDs ausentes na busca em lote - Trace: {}, buscando individualmente",
+                           ausentes.size(), lote.size(), traceLote);
+                MDC.clear();
+                ausentes.forEach(this::processarTarefa);
+            }
+
+        } catch (Exception e) {
+            falhas.add(lote.size());
+            logger.error("Erro ao processar lote de notificações FHIR - Trace: {}, IDs: {}, Erro: {}",
+                        traceLote, ids.size(), e.getMessage());
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    private void processarTarefa(TarefaIngestao tarefa) {
+        try {
+            MDC.put("traceId", tarefa.traceId());
+
+            chamadasHapi.increment();
+            observationsBuscadas.increment();
+            String fhirPayload = hapiObservationService.buscarObservation(tarefa.observationId(), tarefa.traceId());
+            if (!isPayloadValido(fhirPayload)) {
+                falhas.increment();
+                return;
+            }
+
+            List<HemogramaCompacto> hemogramas = hemogramaParser.processarNotificacaoFhir(fhirPayload);
+            if (hemogramas.isEmpty()) {
+                logger.warn("Nenhum hemograma encontrado no payload - Trace: {}", tarefa.traceId());
+            } else {
+                armazenarHemogramas(hemogramas, tarefa.traceId());
+            }
+            processadas.increment();
+
+        } catch (Exception e) {
+            falhas.increment();
+            logger.error("Erro ao processar notificação FHIR - Trace: {}, ID: {}, Erro: {}",
+                        tarefa.traceId(), tarefa.observationId(), e.getMessage());
+        } finally {
+            MDC.clear();
+        }
+    }
+}
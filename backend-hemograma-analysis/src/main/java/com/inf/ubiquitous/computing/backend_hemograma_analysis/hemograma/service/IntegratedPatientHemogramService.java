@@ -11,6 +11,7 @@ import org.springframework.stereotype.Service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.PacienteDto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.FaixaEtaria;
 
 /**
  * Serviço que integra a geração de pacientes com hemogramas.
@@ -87,21 +88,10 @@ public class IntegratedPatientHemogramService {
             demograficos.put("sexo", paciente.getSexo());
             demograficos.put("regiao", paciente.getRegiao());
             demograficos.put("estado", paciente.getEstado());
-            demograficos.put("faixaEtaria", calcularFaixaEtaria(paciente.getIdade()));
+            demograficos.put("faixaEtaria", FaixaEtaria.de(paciente.getIdade()));
         }
         
         return demograficos;
     }
     
-    /**
-     * Calcula faixa etária para agrupamento estatístico.
-     */
-    private String calcularFaixaEtaria(Integer idade) {
-        if (idade < 18) return "0-17";
-        if (idade < 30) return "18-29";
-        if (idade < 45) return "30-44";
-        if (idade < 60) return "45-59";
-        if (idade < 75) return "60-74";
-        return "75+";
-    }
 }
\ No newline at end of file
@@ -3,19 +3,25 @@ package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.servic
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.NotificacaoHivDto;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.Notificacao;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository.NotificacaoRepository;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
-import org.springframework.kafka.support.KafkaHeaders;
-import org.springframework.messaging.handler.annotation.Header;
-import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class NotificacaoConsumerService {
@@ -28,116 +34,200 @@ public class NotificacaoConsumerService {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private CacheEstatisticasService cacheEstatisticas;
+
+    @Autowired
+    private NotificacaoRetryService retryService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     /**
-     * Consome notificações de HIV detectado e envia via WebSocket
+     * Consome notificações de HIV detectado em lote e envia via WebSocket
      */
     @KafkaListener(
-            topics = "hiv-detectado",
+            topics = NotificacaoRetryService.TOPICO_HIV_DETECTADO,
             groupId = "notificacao-consumer-group",
-            containerFactory = "kafkaListenerContainerFactory"
+            containerFactory = "kafkaBatchListenerContainerFactory"
     )
-    @Transactional
-    public void consumirNotificacaoHiv(
-            @Payload NotificacaoHivDto dto,
-            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
-            @Header(KafkaHeaders.OFFSET) long offset,
-            Acknowledgment acknowledgment) {
-
-        try {
-            logger.info("📥 Recebendo notificação HIV - Partition: {} | Offset: {} | Região: {}",
-                    partition, offset, dto.getRegiao());
-
-            Notificacao notificacao = converterDtoParaEntidade(dto);
-            notificacao = notificacaoRepository.save(notificacao);
-
-            logger.info("✅ Notificação HIV salva no banco - ID: {} | Tipo: {}",
-                    notificacao.getId(), notificacao.getTipo());
-
-            // 🔥 ENVIA PARA TODOS OS CLIENTES CONECTADOS VIA WEBSOCKET
-            messagingTemplate.convertAndSend("/topic/notificacoes", notificacao);
-
-            // Envia também para o tópico específico de HIV
-            messagingTemplate.convertAndSend("/topic/notificacoes/hiv", notificacao);
-
-            // Se quiser enviar para uma região específica
-            if (dto.getRegiao() != null) {
-                messagingTemplate.convertAndSend("/topic/notificacoes/regiao/" + dto.getRegiao(), notificacao);
-            }
+    public void consumirNotificacoesHiv(List<ConsumerRecord<String, NotificacaoHivDto>> registros,
+                                        Acknowledgment acknowledgment) {
+        List<Notificacao> notificacoes = processar(registros);
+        logger.info("✅ {} notificações HIV salvas no banco", notificacoes.size());
 
-            logger.info("🔔 Notificação enviada via WebSocket para clientes conectados");
+        publicar(NotificacaoRetryService.TOPICO_HIV_DETECTADO, notificacoes);
+        logger.info("🔔 {} notificações enviadas via WebSocket para clientes conectados", notificacoes.size());
 
-            acknowledgment.acknowledge();
-
-        } catch (Exception e) {
-            logger.error("❌ ERRO ao processar notificação HIV: {}", e.getMessage(), e);
-        }
+        acknowledgment.acknowledge();
     }
 
     /**
-     * Consome notificações de estatísticas
+     * Consome notificações de estatísticas em lote
      */
     @KafkaListener(
-            topics = "estatisticas-hiv",
+            topics = NotificacaoRetryService.TOPICO_ESTATISTICAS,
             groupId = "notificacao-consumer-group",
-            containerFactory = "kafkaListenerContainerFactory"
+            containerFactory = "kafkaBatchListenerContainerFactory"
     )
-    @Transactional
-    public void consumirNotificacaoEstatisticas(
-            @Payload NotificacaoHivDto dto,
-            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition,
-            @Header(KafkaHeaders.OFFSET) long offset,
-            Acknowledgment acknowledgment) {
+    public void consumirNotificacoesEstatisticas(List<ConsumerRecord<String, NotificacaoHivDto>> registros,
+                                                 Acknowledgment acknowledgment) {
+        List<Notificacao> notificacoes = processar(registros);
+        logger.info("✅ {} notificações de estatísticas salvas", notificacoes.size());
 
-        try {
-            logger.info("📥 Recebendo notificação de estatísticas - Partition: {} | Offset: {}",
-                    partition, offset);
+        publicar(NotificacaoRetryService.TOPICO_ESTATISTICAS, notificacoes);
 
-            Notificacao notificacao = converterDtoParaEntidade(dto);
-            notificacao = notificacaoRepository.save(notificacao);
+        acknowledgment.acknowledge();
+    }
 
-            logger.info("✅ Notificação de estatísticas salva - ID: {}", notificacao.getId());
+    /**
+     * Consome notificações de lote processado
+     */
+    @KafkaListener(
+            topics = NotificacaoRetryService.TOPICO_LOTE,
+            groupId = "notificacao-consumer-group",
+            containerFactory = "kafkaBatchListenerContainerFactory"
+    )
+    public void consumirNotificacoesLote(List<ConsumerRecord<String, NotificacaoHivDto>> registros,
+                                         Acknowledgment acknowledgment) {
+        List<Notificacao> notificacoes = processar(registros);
+        logger.info("✅ {} notificações de lote salvas", notificacoes.size());
 
-            // Envia via WebSocket
-            messagingTemplate.convertAndSend("/topic/notificacoes", notificacao);
-            messagingTemplate.convertAndSend("/topic/notificacoes/estatisticas", notificacao);
+        publicar(NotificacaoRetryService.TOPICO_LOTE, notificacoes);
 
-            acknowledgment.acknowledge();
+        acknowledgment.acknowledge();
+    }
 
-        } catch (Exception e) {
-            logger.error("❌ ERRO ao processar notificação de estatísticas: {}", e.getMessage(), e);
+    /**
+     * Reprocessa os tópicos de retry (um container por nível). Registros ainda dentro da espera
+     * do nível fazem nack com pausa: o container dorme até o vencimento sem bloquear o fluxo principal.
+     */
+    @KafkaListener(id = "notificacao-retry-0", topics = "#{@notificacaoRetryService.topicosRetry(0)}",
+            groupId = "notificacao-consumer-group", containerFactory = "kafkaBatchListenerContainerFactory")
+    @KafkaListener(id = "notificacao-retry-1", topics = "#{@notificacaoRetryService.topicosRetry(1)}",
+            groupId = "notificacao-consumer-group", containerFactory = "kafkaBatchListenerContainerFactory")
+    @KafkaListener(id = "notificacao-retry-2", topics = "#{@notificacaoRetryService.topicosRetry(2)}",
+            groupId = "notificacao-consumer-group", containerFactory = "kafkaBatchListenerContainerFactory")
+    public void reprocessarNotificacoes(List<ConsumerRecord<String, NotificacaoHivDto>> registros,
+                                        Acknowledgment acknowledgment) {
+        for (int i = 0; i < registros.size(); i++) {
+            ConsumerRecord<String, NotificacaoHivDto> registro = registros.get(i);
+            long espera = NotificacaoRetryService.esperaRestante(registro);
+            if (espera > 0) {
+                acknowledgment.nack(i, Duration.ofMillis(espera));
+                return;
+            }
+            List<Notificacao> notificacoes = salvarOuEncaminhar(registro);
+            if (!notificacoes.isEmpty()) {
+                logger.info("🔁 Notificação {}-{}@{} gravada no retry", registro.topic(), registro.partition(), registro.offset());
+                publicar(NotificacaoRetryService.topicoOriginal(registro), notificacoes);
+            }
         }
+        acknowledgment.acknowledge();
     }
 
     /**
-     * Consome notificações de lote processado
+     * Grava o lote numa transação. Payloads inválidos vão direto para o DLT; se o lote falhar,
+     * grava registro a registro e só os que falham sozinhos seguem para o retry.
      */
-    @KafkaListener(
-            topics = "processamento-automatico",
-            groupId = "notificacao-consumer-group",
-            containerFactory = "kafkaListenerContainerFactory"
-    )
-    @Transactional
-    public void consumirNotificacaoLote(
-            @Payload NotificacaoHivDto dto,
-            Acknowledgment acknowledgment) {
+    private List<Notificacao> processar(List<ConsumerRecord<String, NotificacaoHivDto>> registros) {
+        List<NotificacaoHivDto> dtos = new ArrayList<>(registros.size());
+        List<ConsumerRecord<String, NotificacaoHivDto>> validos = new ArrayList<>(registros.size());
+        for (ConsumerRecord<String, NotificacaoHivDto> registro : registros) {
+            if (NotificacaoRetryService.isInvalido(registro)) {
+                retryService.encaminhar(registro, new IllegalArgumentException("Payload de notificação inválido"));
+            } else {
+                validos.add(registro);
+                dtos.add(registro.value());
+            }
+        }
 
         try {
-            logger.info("📥 Recebendo notificação de lote processado");
-
-            Notificacao notificacao = converterDtoParaEntidade(dto);
-            notificacao = notificacaoRepository.save(notificacao);
+            return transactionTemplate.execute(status -> salvarLote(dtos));
+        } catch (RuntimeException e) {
+            logger.warn("⚠️ Lote de {} notificações falhou ({}); gravando uma a uma", dtos.size(), e.getMessage());
+            List<Notificacao> notificacoes = new ArrayList<>(dtos.size());
+            for (ConsumerRecord<String, NotificacaoHivDto> registro : validos) {
+                notificacoes.addAll(salvarOuEncaminhar(registro));
+            }
+            return notificacoes;
+        }
+    }
 
-            logger.info("✅ Notificação de lote salva - ID: {}", notificacao.getId());
+    private List<Notificacao> salvarOuEncaminhar(ConsumerRecord<String, NotificacaoHivDto> registro) {
+        if (NotificacaoRetryService.isInvalido(registro)) {
+            retryService.encaminhar(registro, new IllegalArgumentException("Payload de notificação inválido"));
+            return List.of();
+        }
+        try {
+            return transactionTemplate.execute(status -> salvarLote(List.of(registro.value())));
+        } catch (RuntimeException e) {
+            retryService.encaminhar(registro, e);
+            return List.of();
+        }
+    }
 
-            // Envia via WebSocket
+    /**
+     * Envia as notificações gravadas via WebSocket, nos tópicos do tipo de origem
+     */
+    private void publicar(String topicoOrigem, List<Notificacao> notificacoes) {
+        for (Notificacao notificacao : notificacoes) {
+            // 🔥 ENVIA PARA TODOS OS CLIENTES CONECTADOS VIA WEBSOCKET
             messagingTemplate.convertAndSend("/topic/notificacoes", notificacao);
-            messagingTemplate.convertAndSend("/topic/notificacoes/lote", notificacao);
 
-            acknowledgment.acknowledge();
+            switch (topicoOrigem) {
+                case NotificacaoRetryService.TOPICO_HIV_DETECTADO -> {
+                    // Envia também para o tópico específico de HIV
+                    messagingTemplate.convertAndSend("/topic/notificacoes/hiv", notificacao);
+
+                    // Se quiser enviar para uma região específica
+                    if (notificacao.getRegiao() != null) {
+                        messagingTemplate.convertAndSend("/topic/notificacoes/regiao/" + notificacao.getRegiao(), notificacao);
+                    }
+                }
+                case NotificacaoRetryService.TOPICO_ESTATISTICAS ->
+                        messagingTemplate.convertAndSend("/topic/notificacoes/estatisticas", notificacao);
+                case NotificacaoRetryService.TOPICO_LOTE ->
+                        messagingTemplate.convertAndSend("/topic/notificacoes/lote", notificacao);
+                default -> { }
+            }
+        }
+    }
 
-        } catch (Exception e) {
-            logger.error("❌ ERRO ao processar notificação de lote: {}", e.getMessage(), e);
+    /**
+     * Grava o poll inteiro num único saveAll (INSERTs em lote, IDs da sequência em blocos).
+     * Eventos repetidos no poll ou já gravados (reentrega após rebalance/restart) são descartados,
+     * então não geram linha nem alerta WebSocket; a constraint uk_notificacao_evento cobre corridas.
+     * O flush acontece aqui, antes do ack, para um erro de banco não confirmar o offset.
+     */
+    private List<Notificacao> salvarLote(List<NotificacaoHivDto> dtos) {
+        List<NotificacaoHivDto> novos = new ArrayList<>(dtos.size());
+        Set<String> eventos = new HashSet<>();
+        for (NotificacaoHivDto dto : dtos) {
+            if (dto != null && (dto.getEventoId() == null || eventos.add(dto.getEventoId()))) {
+                novos.add(dto);
+            }
+        }
+        if (!eventos.isEmpty()) {
+            Set<String> existentes = notificacaoRepository.buscarEventosExistentes(eventos);
+            if (!existentes.isEmpty()) {
+                novos.removeIf(dto -> existentes.contains(dto.getEventoId()));
+            }
         }
+        if (novos.size() < dtos.size()) {
+            logger.info("♻️ {} notificações repetidas descartadas", dtos.size() - novos.size());
+        }
+
+        List<Notificacao> notificacoes = new ArrayList<>(novos.size());
+        for (NotificacaoHivDto dto : novos) {
+            notificacoes.add(converterDtoParaEntidade(dto));
+        }
+        if (notificacoes.isEmpty()) {
+            return notificacoes;
+        }
+        List<Notificacao> salvas = notificacaoRepository.saveAllAndFlush(notificacoes);
+        cacheEstatisticas.invalidarNotificacoes();
+        return salvas;
     }
 
     /**
@@ -155,11 +245,28 @@ public class NotificacaoConsumerService {
         notificacaoRepository.findById(notificacaoId).ifPresent(notificacao -> {
             notificacao.setLida(true);
             notificacaoRepository.save(notificacao);
+            cacheEstatisticas.invalidarNotificacoes();
         });
     }
 
+    /**
+     * Totais de notificações (total, lidas, não lidas), em cache até a próxima gravação
+     */
+    @Cacheable(cacheNames = CacheEstatisticasService.ESTATISTICAS_NOTIFICACOES, key = "#root.methodName", sync = true)
+    public Map<String, Object> obterEstatisticas() {
+        long total = notificacaoRepository.count();
+        long naoLidas = notificacaoRepository.countByLidaFalse();
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total", total);
+        stats.put("lidas", total - naoLidas);
+        stats.put("naoLidas", naoLidas);
+        return stats;
+    }
+
     private Notificacao converterDtoParaEntidade(NotificacaoHivDto dto) {
         Notificacao notificacao = new Notificacao();
+        notificacao.setEventoId(dto.getEventoId());
         notificacao.setTipo(dto.getTipo());
         notificacao.setHemogramaId(dto.getHemogramaId());
         notificacao.setPacienteId(dto.getPacienteId());
@@ -0,0 +1,266 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.stereotype.Service;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.NotificacaoHivDto;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Retry não bloqueante e dead-letter das notificações.
+ * Um registro que falha sozinho sai do fluxo principal para {@code <tópico>-retry-0}, depois
+ * {@code -retry-1} e {@code -retry-2}, cada nível com espera maior (atraso-inicial × multiplicador^nível),
+ * e por fim para {@code <tópico>-dlt}. Payload que nem desserializa vai direto para o DLT.
+ * O tópico principal nunca para por causa de um registro envenenado; a espera acontece no
+ * consumidor do nível de retry (nack com pausa), que tem containers próprios.
+ */
+@Service
+public class NotificacaoRetryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificacaoRetryService.class);
+
+    public static final String TOPICO_HIV_DETECTADO = "hiv-detectado";
+    public static final String TOPICO_ESTATISTICAS = "estatisticas-hiv";
+    public static final String TOPICO_LOTE = "processamento-automatico";
+
+    public static final List<String> TOPICOS = List.of(TOPICO_HIV_DETECTADO, TOPICO_ESTATISTICAS, TOPICO_LOTE);
+
+    public static final int NIVEIS_RETRY = 3;
+
+    // Tópico onde o registro entrou (o DLPR também grava kafka_dlt-original-topic, mas a cada salto)
+    private static final String HEADER_TOPICO_ORIGINAL = "notificacao-topico-original";
+    // Instante (epoch ms) a partir do qual o registro pode ser reprocessado
+    private static final String HEADER_REPROCESSAR_EM = "notificacao-reprocessar-em";
+
+    private static final String GRUPO_REPLAY = "notificacao-dlt-replay";
+
+    @Value("${notificacao.retry.atraso-inicial-ms:1000}")
+    private long atrasoInicialMs;
+
+    @Value("${notificacao.retry.multiplicador:5}")
+    private double multiplicador;
+
+    @Autowired
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    @Autowired
+    private KafkaTemplate<String, byte[]> dltKafkaTemplate;
+
+    @Autowired
+    private ConsumerFactory<String, Object> consumerFactory;
+
+    private DeadLetterPublishingRecoverer recoverer;
+
+    private DeadLetterPublishingRecoverer recuperadorDlt;
+
+    public record ResultadoReprocessamento(String topico, int reenviados, int descartados) {}
+
+    @PostConstruct
+    public void inicializar() {
+        // Payload inválido chega como byte[] (ErrorHandlingDeserializer); o resto é o DTO, com o serializer do kafkaTemplate
+        Map<Class<?>, KafkaOperations<?, ?>> templates = new LinkedHashMap<>();
+        templates.put(byte[].class, dltKafkaTemplate);
+        templates.put(Object.class, kafkaTemplate);
+        recoverer = new DeadLetterPublishingRecoverer(templates,
+                (registro, erro) -> new TopicPartition(destino(registro, erro), -1));
+        recoverer.setHeadersFunction(this::headersEncaminhamento);
+        recuperadorDlt = new DeadLetterPublishingRecoverer(templates,
+                (registro, erro) -> new TopicPartition(topicoDlt(topicoOriginal(registro)), -1));
+    }
+
+    /**
+     * Último recurso do error handler dos containers: manda o registro direto para o DLT do tópico de origem
+     */
+    public ConsumerRecordRecoverer getRecuperadorDlt() {
+        return recuperadorDlt;
+    }
+
+    public static String topicoRetry(String topico, int nivel) {
+        return topico + "-retry-" + nivel;
+    }
+
+    public static String topicoDlt(String topico) {
+        return topico + "-dlt";
+    }
+
+    /**
+     * Tópicos de um nível de retry (um container por nível: a pausa de um não atrasa os outros)
+     */
+    public String[] topicosRetry(int nivel) {
+        return TOPICOS.stream().map(topico -> topicoRetry(topico, nivel)).toArray(String[]::new);
+    }
+
+    /**
+     * Registro que o ErrorHandlingDeserializer não conseguiu ler (valor nulo + header de exceção)
+     */
+    public static boolean isInvalido(ConsumerRecord<?, ?> registro) {
+        return registro.value() == null
+                && registro.headers().lastHeader(SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER) != null;
+    }
+
+    public static String topicoOriginal(ConsumerRecord<?, ?> registro) {
+        Header header = registro.headers().lastHeader(HEADER_TOPICO_ORIGINAL);
+        return header != null ? new String(header.value()) : registro.topic();
+    }
+
+    /**
+     * Milissegundos que faltam para o registro de retry poder ser reprocessado (0 se já pode)
+     */
+    public static long esperaRestante(ConsumerRecord<?, ?> registro) {
+        Header header = registro.headers().lastHeader(HEADER_REPROCESSAR_EM);
+        if (header == null) {
+            return 0;
+        }
+        return Math.max(0, ByteBuffer.wrap(header.value()).getLong() - System.currentTimeMillis());
+    }
+
+    /**
+     * Publica o registro que falhou no próximo nível de retry (ou no DLT) e só retorna depois do envio confirmado
+     */
+    public void encaminhar(ConsumerRecord<?, ?> registro, Exception erro) {
+        recoverer.accept(registro, erro);
+        logger.warn("↪️ Notificação {}-{}@{} encaminhada para {}: {}", registro.topic(), registro.partition(),
+                registro.offset(), destino(registro, erro), erro.getMessage());
+    }
+
+    /**
+     * Devolve ao tópico principal até {@code limite} registros do DLT, a partir de onde o último replay parou
+     * (offsets do grupo notificacao-dlt-replay). No modo transacional (notificacao.kafka.transacional=true)
+     * os envios e os offsets lidos do DLT são confirmados na mesma transação Kafka (consume-transform-produce);
+     * fora dele os offsets só são gravados depois da confirmação dos envios, e a deduplicação por eventoId
+     * no consumidor torna seguro repetir o replay.
+     *
+     * @throws IllegalArgumentException se o tópico não é um dos tópicos de notificação
+     */
+    public ResultadoReprocessamento reprocessarDlt(String topico, int limite) {
+        if (!TOPICOS.contains(topico)) {
+            throw new IllegalArgumentException("Tópico de notificação desconhecido: " + topico);
+        }
+        String dlt = topicoDlt(topico);
+        Properties propriedades = new Properties();
+        propriedades.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, limite);
+        propriedades.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+
+        try (Consumer<String, Object> consumer = consumerFactory.createConsumer(GRUPO_REPLAY, null, null, propriedades)) {
+            List<TopicPartition> particoes = consumer.partitionsFor(dlt).stream()
+                    .map(info -> new TopicPartition(dlt, info.partition()))
+                    .toList();
+            consumer.assign(particoes);
+
+            List<ConsumerRecord<String, Object>> lote = new ArrayList<>();
+            while (lote.size() < limite) {
+                var registros = consumer.poll(Duration.ofSeconds(1));
+                if (registros.isEmpty()) {
+                    break;
+                }
+                for (ConsumerRecord<String, Object> registro : registros) {
+                    if (lote.size() < limite) {
+                        lote.add(registro);
+                    }
+                }
+            }
+
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+            List<ConsumerRecord<String, Object>> validos = new ArrayList<>(lote.size());
+            for (ConsumerRecord<String, Object> registro : lote) {
+                // Os registros vêm em ordem por partição, então o último offset de cada uma é o maior
+                offsets.put(new TopicPartition(registro.topic(), registro.partition()),
+                        new OffsetAndMetadata(registro.offset() + 1));
+                if (registro.value() instanceof NotificacaoHivDto) {
+                    validos.add(registro);
+                } else {
+                    logger.warn("🗑️ Registro {}-{}@{} do DLT descartado no replay: payload inválido",
+                            registro.topic(), registro.partition(), registro.offset());
+                }
+            }
+
+            if (kafkaTemplate.isTransactional()) {
+                kafkaTemplate.executeInTransaction(template -> {
+                    validos.forEach(registro -> template.send(topico, registro.key(), registro.value()));
+                    if (!offsets.isEmpty()) {
+                        template.sendOffsetsToTransaction(offsets, consumer.groupMetadata());
+                    }
+                    return null;
+                });
+            } else {
+                List<CompletableFuture<SendResult<String, Object>>> envios = new ArrayList<>(validos.size());
+                validos.forEach(registro -> envios.add(kafkaTemplate.send(topico, registro.key(), registro.value())));
+                CompletableFuture.allOf(envios.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+                if (!offsets.isEmpty()) {
+                    consumer.commitSync(offsets);
+                }
+            }
+            logger.info("🔁 Replay de {}: {} notificações devolvidas para {}, {} descartadas",
+                    dlt, validos.size(), topico, lote.size() - validos.size());
+            return new ResultadoReprocessamento(topico, validos.size(), lote.size() - validos.size());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Replay de " + dlt + " interrompido", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Erro no replay de " + dlt + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String destino(ConsumerRecord<?, ?> registro, Exception erro) {
+        String original = topicoOriginal(registro);
+        if (isInvalido(registro)) {
+            return topicoDlt(original);
+        }
+        int proximo = nivelAtual(registro) + 1;
+        return proximo < NIVEIS_RETRY ? topicoRetry(original, proximo) : topicoDlt(original);
+    }
+
+    private Headers headersEncaminhamento(ConsumerRecord<?, ?> registro, Exception erro) {
+        Headers headers = new RecordHeaders();
+        if (registro.headers().lastHeader(HEADER_TOPICO_ORIGINAL) == null) {
+            headers.add(HEADER_TOPICO_ORIGINAL, registro.topic().getBytes());
+        }
+        int proximo = nivelAtual(registro) + 1;
+        if (!isInvalido(registro) && proximo < NIVEIS_RETRY) {
+            long atraso = (long) (atrasoInicialMs * Math.pow(multiplicador, proximo));
+            headers.add(HEADER_REPROCESSAR_EM,
+                    ByteBuffer.allocate(Long.BYTES).putLong(System.currentTimeMillis() + atraso).array());
+        }
+        return headers;
+    }
+
+    /**
+     * Nível de retry do registro: -1 no tópico principal, n em {@code <tópico>-retry-n}
+     */
+    private static int nivelAtual(ConsumerRecord<?, ?> registro) {
+        String topico = registro.topic();
+        int indice = topico.lastIndexOf("-retry-");
+        return indice < 0 ? -1 : Integer.parseInt(topico.substring(indice + "-retry-".length()));
+    }
+}
@@ -2,14 +2,28 @@ package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.servic
 
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.NotificacaoHivDto;
 import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.PacienteDto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.FaixaEtaria;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 @Service
 public class NotificacaoService {
@@ -21,7 +35,51 @@ public class NotificacaoService {
     
     @Autowired
     private KafkaTemplate<String, Object> kafkaTemplate;
-    
+
+    @Value("${notificacao.kafka.perfil:baixa-latencia}")
+    private String perfil;
+
+    @Value("${notificacao.kafka.envio.max-em-voo:1000}")
+    private int maxEmVoo;
+
+    @Value("${notificacao.kafka.envio.espera-maxima-ms:30000}")
+    private long esperaMaximaMs;
+
+    // Envios sem confirmação do broker: quem envia espera uma vaga em vez de encher o buffer do produtor
+    private Semaphore emVoo;
+
+    // Métricas
+    private final LongAdder enviadas = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+    private final LongAdder rejeitadas = new LongAdder();
+    private final LongAdder esperas = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final LongAdder latenciaTotalNanos = new LongAdder();
+    private final LongAccumulator latenciaMaximaNanos = new LongAccumulator(Math::max, 0);
+
+    public record EnvioKafkaMetrics(
+        String perfil,
+        int emVoo,
+        int maxEmVoo,
+        long enviadas,
+        long falhas,
+        long rejeitadas,
+        long esperasPorVaga,
+        double esperaMediaMs,
+        double latenciaMediaMs,
+        double latenciaMaximaMs,
+        double ocupacaoMediaLote,
+        double registrosPorRequisicao,
+        long errosRegistroProdutor,
+        long retriesProdutor,
+        double bufferDisponivelBytes
+    ) {}
+
+    @PostConstruct
+    public void inicializar() {
+        emVoo = new Semaphore(maxEmVoo);
+    }
+
     /**
      * Envia notificação quando um caso de risco HIV é detectado
      */
@@ -33,13 +91,14 @@ public class NotificacaoService {
                 paciente.getId(),
                 paciente.getRegiao(),
                 paciente.getEstado(),
-                determinarFaixaEtaria(paciente.getIdade()),
+                FaixaEtaria.de(paciente.getIdade()),
                 paciente.getSexo(),
                 motivoRisco
             );
+            notificacao.setEventoId(eventoId(notificacao.getTipo(), hemogramaId));
             // Usa região como key para particionar messages por região
             CompletableFuture<SendResult<String, Object>> future = 
-                kafkaTemplate.send(TOPIC_HIV_DETECTADO, paciente.getRegiao(), notificacao);
+                enviar(TOPIC_HIV_DETECTADO, paciente.getRegiao(), notificacao);
             
             future.whenComplete((result, ex) -> {
                 if (ex == null) {
@@ -55,6 +114,38 @@ public class NotificacaoService {
         }
     }
     
+    /**
+     * Envia notificação de um achado de triagem para o tópico do detector
+     */
+    public void enviarNotificacaoTriagem(String topico, String tipo, String hemogramaId, PacienteDto paciente, String motivo) {
+        try {
+            NotificacaoHivDto notificacao = new NotificacaoHivDto(
+                tipo,
+                hemogramaId,
+                paciente.getId(),
+                paciente.getRegiao(),
+                paciente.getEstado(),
+                FaixaEtaria.de(paciente.getIdade()),
+                paciente.getSexo(),
+                motivo
+            );
+            notificacao.setEventoId(eventoId(tipo, hemogramaId));
+
+            enviar(topico, paciente.getRegiao(), notificacao)
+                .whenComplete((result, ex) -> {
+                    if (ex == null) {
+                        logger.info("🔬 Notificação de triagem enviada - Tópico: {} | Região: {} | Motivo: {}",
+                                   topico, paciente.getRegiao(), motivo);
+                    } else {
+                        logger.error("❌ ERRO ao enviar notificação de triagem para {}: {}", topico, ex.getMessage());
+                    }
+                });
+
+        } catch (Exception e) {
+            logger.error("❌ ERRO ao criar notificação de triagem: {}", e.getMessage(), e);
+        }
+    }
+
     /**
      * Envia notificação de estatísticas atualizadas
      */
@@ -65,10 +156,15 @@ public class NotificacaoService {
             notificacao.setRegiao(regiao);
             notificacao.setMotivoRisco("Total casos: " + totalCasos);
             
-            kafkaTemplate.send(TOPIC_ESTATISTICAS, regiao, notificacao);
-            
-            logger.info("📊 Notificação de estatísticas enviada para Kafka - Região: {} | Total: {}", 
-                       regiao, totalCasos);
+            enviar(TOPIC_ESTATISTICAS, regiao, notificacao)
+                .whenComplete((result, ex) -> {
+                    if (ex == null) {
+                        logger.info("📊 Notificação de estatísticas enviada para Kafka - Região: {} | Total: {}",
+                                   regiao, totalCasos);
+                    } else {
+                        logger.error("❌ ERRO ao enviar notificação de estatísticas: {}", ex.getMessage());
+                    }
+                });
             
         } catch (Exception e) {
             logger.error("❌ ERRO ao enviar notificação de estatísticas: {}", e.getMessage());
@@ -85,22 +181,136 @@ public class NotificacaoService {
             notificacao.setMotivoRisco(String.format("Processados: %d | HIV detectados: %d", 
                                                    totalProcessados, casosHivDetectados));
             
-            kafkaTemplate.send("processamento-automatico", "sistema", notificacao);
-            
-            logger.info("⚙️ Notificação de lote processado enviada - Processados: {} | HIV: {}", 
-                       totalProcessados, casosHivDetectados);
+            enviar("processamento-automatico", "sistema", notificacao)
+                .whenComplete((result, ex) -> {
+                    if (ex == null) {
+                        logger.info("⚙️ Notificação de lote processado enviada - Processados: {} | HIV: {}",
+                                   totalProcessados, casosHivDetectados);
+                    } else {
+                        logger.error("❌ ERRO ao enviar notificação de lote: {}", ex.getMessage());
+                    }
+                });
             
         } catch (Exception e) {
             logger.error("❌ ERRO ao enviar notificação de lote: {}", e.getMessage());
         }
     }
     
-    private String determinarFaixaEtaria(int idade) {
-        if (idade < 18) return "0-17";
-        if (idade < 30) return "18-29";
-        if (idade < 45) return "30-44";
-        if (idade < 60) return "45-59";
-        if (idade < 75) return "60-74";
-        return "75+";
+    public EnvioKafkaMetrics getMetricas() {
+        long concluidas = enviadas.sum() + falhas.sum();
+        Map<MetricName, ? extends Metric> produtor = metricasProdutor();
+        Object batchSize = kafkaTemplate.getProducerFactory().getConfigurationProperties()
+                .get(ProducerConfig.BATCH_SIZE_CONFIG);
+        double ocupacaoLote = batchSize instanceof Number tamanho && tamanho.doubleValue() > 0
+                ? metrica(produtor, "batch-size-avg") / tamanho.doubleValue()
+                : 0;
+
+        return new EnvioKafkaMetrics(
+            perfil,
+            maxEmVoo - emVoo.availablePermits(),
+            maxEmVoo,
+            enviadas.sum(),
+            falhas.sum(),
+            rejeitadas.sum(),
+            esperas.sum(),
+            esperas.sum() > 0 ? esperaTotalNanos.sum() / (double) esperas.sum() / 1_000_000 : 0,
+            concluidas > 0 ? latenciaTotalNanos.sum() / (double) concluidas / 1_000_000 : 0,
+            latenciaMaximaNanos.get() / 1_000_000.0,
+            ocupacaoLote,
+            metrica(produtor, "records-per-request-avg"),
+            (long) metrica(produtor, "record-error-total"),
+            (long) metrica(produtor, "record-retry-total"),
+            metrica(produtor, "buffer-available-bytes")
+        );
+    }
+
+    /**
+     * Espera uma vaga entre os envios em voo (até notificacao.kafka.envio.espera-maxima-ms) e libera a vaga
+     * quando o broker confirma ou o envio falha. Sem vaga no prazo, o futuro falha e a notificação é contada
+     * como rejeitada. O envio é sempre um send idempotente, sem transação (ver KafkaProducerConfig#kafkaTemplate).
+     */
+    private CompletableFuture<SendResult<String, Object>> enviar(String topico, String chave, NotificacaoHivDto notificacao) {
+        if (!reservarVaga()) {
+            rejeitadas.increment();
+            logger.error("❌ Notificação para {} rejeitada: {} envios aguardando o broker há mais de {}ms",
+                        topico, maxEmVoo, esperaMaximaMs);
+            return CompletableFuture.failedFuture(new IllegalStateException(
+                    "Sem vaga para envio Kafka em " + esperaMaximaMs + "ms (" + maxEmVoo + " em voo)"));
+        }
+
+        long inicio = System.nanoTime();
+        CompletableFuture<SendResult<String, Object>> future;
+        try {
+            future = kafkaTemplate.send(topico, chave, notificacao);
+        } catch (RuntimeException e) {
+            concluirEnvio(inicio, e);
+            throw e;
+        }
+        future.whenComplete((result, ex) -> concluirEnvio(inicio, ex));
+        return future;
+    }
+
+    private boolean reservarVaga() {
+        if (emVoo.tryAcquire()) {
+            return true;
+        }
+        esperas.increment();
+        long inicio = System.nanoTime();
+        try {
+            return emVoo.tryAcquire(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            esperaTotalNanos.add(System.nanoTime() - inicio);
+        }
     }
+
+    private void concluirEnvio(long inicio, Throwable erro) {
+        emVoo.release();
+        long latencia = System.nanoTime() - inicio;
+        latenciaTotalNanos.add(latencia);
+        latenciaMaximaNanos.accumulate(latencia);
+        if (erro == null) {
+            enviadas.increment();
+        } else {
+            falhas.increment();
+        }
+    }
+
+    private Map<MetricName, ? extends Metric> metricasProdutor() {
+        try {
+            return kafkaTemplate.metrics();
+        } catch (Exception e) {
+            logger.debug("Métricas do produtor Kafka indisponíveis: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * Valor de uma métrica do grupo producer-metrics (0 quando ainda não há amostras)
+     */
+    private static double metrica(Map<MetricName, ? extends Metric> metricas, String nome) {
+        for (Map.Entry<MetricName, ? extends Metric> entrada : metricas.entrySet()) {
+            if (nome.equals(entrada.getKey().name()) && "producer-metrics".equals(entrada.getKey().group())
+                    && entrada.getValue().metricValue() instanceof Number valor
+                    && Double.isFinite(valor.doubleValue())) {
+                return valor.doubleValue();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Mesmo tipo e hemograma (observationId) geram sempre o mesmo eventoId, então reprocessar o hemograma
+     * (reentrega FHIR, restart) não cria uma segunda notificação. Sem hemograma não há como reconhecer a
+     * repetição: o id é aleatório e a notificação nunca é descartada como duplicada.
+     */
+    private static String eventoId(String tipo, String hemogramaId) {
+        if (hemogramaId == null) {
+            return UUID.randomUUID().toString();
+        }
+        return UUID.nameUUIDFromBytes((tipo + "|" + hemogramaId).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,424 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem.TriagemService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Persistência durável (opcional) dos hemogramas em write-behind.
+ * O buffer só enfileira ({@link #enfileirar} nunca bloqueia; fila cheia descarta e conta);
+ * uma thread dedicada drena a fila e grava em lotes com JDBC batch
+ * ({@code INSERT ... ON CONFLICT DO NOTHING}, idempotente para reentregas do HAPI).
+ * A tabela hemograma é particionada por mês de coleta (RANGE em data_coleta) e as partições
+ * são criadas à frente por {@link #manterParticoes()}; datas fora do intervalo vão para a partição default
+ * e são movidas para a partição do mês quando ela é criada. Hemogramas sem data de coleta usam a data fixa
+ * {@link #DATA_SEM_COLETA} (partição default), para a chave (observation_id, data_coleta) não mudar entre reentregas.
+ * Não há entidade JPA: o ddl-auto do Hibernate não cria tabelas particionadas.
+ */
+@Service
+public class PersistenciaHemogramaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistenciaHemogramaService.class);
+
+    static final String TABELA = "hemograma";
+    private static final DateTimeFormatter SUFIXO_PARTICAO = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final int MAX_TENTATIVAS = 3;
+    static final LocalDate DATA_SEM_COLETA = LocalDate.of(1970, 1, 1);
+
+    private static final String[] COLUNAS_ANALITOS = new String[Analito.TOTAL];
+    static {
+        for (Analito analito : Analito.values()) {
+            COLUNAS_ANALITOS[analito.ordinal()] = analito.name().toLowerCase();
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private TriagemService triagemService;
+
+    @Value("${hemograma.persistencia.enabled:false}")
+    private boolean habilitada;
+
+    @Value("${hemograma.persistencia.fila.capacidade:50000}")
+    private int capacidadeFila;
+
+    @Value("${hemograma.persistencia.lote:1000}")
+    private int tamanhoLote;
+
+    // Espera máxima para completar um lote antes de gravar o que houver
+    @Value("${hemograma.persistencia.intervalo-ms:200}")
+    private long intervaloMs;
+
+    @Value("${hemograma.persistencia.particoes.meses-adiante:3}")
+    private int mesesAdiante;
+
+    private BlockingQueue<HemogramaCompacto> fila;
+    private Thread gravador;
+    private volatile boolean ativo;
+    private volatile boolean esquemaCriado;
+    private String sqlInsert;
+
+    // Lote que o gravador tinha em mãos quando foi interrompido; encerrar() grava junto com a fila
+    private final List<HemogramaCompacto> loteInterrompido = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicLong enfileirados = new AtomicLong();
+    private final AtomicLong descartados = new AtomicLong();
+    private final AtomicLong gravados = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    private volatile long ultimoLoteMs;
+
+    public record PersistenciaMetrics(
+        boolean habilitada,
+        int pendentes,
+        long enfileirados,
+        long descartados,
+        long gravados,
+        long lotes,
+        long falhas,
+        long ultimoLoteMs
+    ) {}
+
+    @PostConstruct
+    public void iniciar() {
+        if (!habilitada) {
+            return;
+        }
+        sqlInsert = montarInsert();
+        fila = new ArrayBlockingQueue<>(capacidadeFila);
+        manterParticoes();
+
+        ativo = true;
+        gravador = new Thread(this::executarGravador, "hemograma-persistencia");
+        gravador.setDaemon(true);
+        gravador.start();
+        logger.info("🗄️ Persistência de hemogramas: fila={}, lote={}, intervalo={}ms",
+                   capacidadeFila, tamanhoLote, intervaloMs);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        if (!habilitada) {
+            return;
+        }
+        ativo = false;
+        gravador.interrupt();
+        try {
+            gravador.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Grava o lote interrompido e o que sobrou na fila antes de desligar
+        List<HemogramaCompacto> restantes;
+        synchronized (loteInterrompido) {
+            restantes = new ArrayList<>(loteInterrompido);
+            loteInterrompido.clear();
+        }
+        fila.drainTo(restantes);
+        for (int inicio = 0; inicio < restantes.size(); inicio += tamanhoLote) {
+            gravarLote(restantes.subList(inicio, Math.min(inicio + tamanhoLote, restantes.size())));
+        }
+    }
+
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    /**
+     * Enfileira para gravação sem bloquear. Retorna false se a persistência está desligada ou a fila cheia.
+     */
+    public boolean enfileirar(HemogramaCompacto hemograma) {
+        if (!habilitada) {
+            return false;
+        }
+        if (fila.offer(hemograma)) {
+            enfileirados.incrementAndGet();
+            return true;
+        }
+        long total = descartados.incrementAndGet();
+        if (total % 1000 == 1) {
+            logger.warn("⚠️ Fila de persistência cheia ({}); {} hemogramas descartados até agora", capacidadeFila, total);
+        }
+        return false;
+    }
+
+    public PersistenciaMetrics getMetricas() {
+        return new PersistenciaMetrics(
+                habilitada,
+                fila != null ? fila.size() : 0,
+                enfileirados.get(),
+                descartados.get(),
+                gravados.get(),
+                lotes.get(),
+                falhas.get(),
+                ultimoLoteMs);
+    }
+
+    /**
+     * Cria a tabela particionada (se preciso) e as partições mensais do mês anterior até N meses adiante.
+     * Cada partição é independente: a falha de uma não impede as demais. Chamado também pelo gravador
+     * enquanto o esquema não existe (banco fora do ar na subida).
+     */
+    @Scheduled(cron = "${hemograma.persistencia.particoes.cron:0 15 3 * * *}")
+    public synchronized void manterParticoes() {
+        if (!habilitada) {
+            return;
+        }
+        if (!esquemaCriado) {
+            try {
+                criarEsquema();
+                esquemaCriado = true;
+            } catch (Exception e) {
+                logger.error("Erro ao criar a tabela {}: {}", TABELA, e.getMessage());
+                return;
+            }
+        }
+        LocalDate mes = LocalDate.now().withDayOfMonth(1).minusMonths(1);
+        for (int i = 0; i <= mesesAdiante + 1; i++) {
+            LocalDate inicioMes = mes.plusMonths(i);
+            try {
+                criarParticao(inicioMes);
+            } catch (Exception e) {
+                logger.error("Erro ao criar a partição {} de {}: {}", inicioMes.format(SUFIXO_PARTICAO), TABELA, e.getMessage());
+            }
+        }
+    }
+
+    private void criarEsquema() {
+        StringBuilder colunas = new StringBuilder();
+        for (String coluna : COLUNAS_ANALITOS) {
+            colunas.append(coluna).append(" DOUBLE PRECISION, ");
+        }
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABELA + " ("
+                + "observation_id VARCHAR(255) NOT NULL, "
+                + "data_coleta DATE NOT NULL, "
+                + "coletado_em TIMESTAMP, "
+                + colunas
+                + "presentes INTEGER NOT NULL, "
+                + "risco_hiv BOOLEAN NOT NULL, "
+                + "motivos_risco INTEGER NOT NULL, "
+                + "triagem VARCHAR(255), "
+                + "recebido_em TIMESTAMP NOT NULL, "
+                + "PRIMARY KEY (observation_id, data_coleta)"
+                + ") PARTITION BY RANGE (data_coleta)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABELA + "_default PARTITION OF " + TABELA + " DEFAULT");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_hemograma_risco_data ON " + TABELA
+                + " (data_coleta) WHERE risco_hiv");
+    }
+
+    /**
+     * CREATE TABLE ... PARTITION OF falha se a partição default já tem linhas do mês (data de coleta
+     * futura, digitada errado). Por isso a partição é criada solta, recebe as linhas do mês que estão na
+     * default e só então é anexada, tudo numa transação.
+     */
+    private void criarParticao(LocalDate inicioMes) {
+        String particao = TABELA + "_" + inicioMes.format(SUFIXO_PARTICAO);
+        Boolean existe = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, particao);
+        if (Boolean.TRUE.equals(existe)) {
+            return;
+        }
+        String faixa = "data_coleta >= '" + inicioMes + "' AND data_coleta < '" + inicioMes.plusMonths(1) + "'";
+        Integer movidas = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("CREATE TABLE " + particao + " (LIKE " + TABELA + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int linhas = jdbcTemplate.update("WITH movidas AS (DELETE FROM " + TABELA + "_default WHERE " + faixa
+                    + " RETURNING *) INSERT INTO " + particao + " SELECT * FROM movidas");
+            jdbcTemplate.execute("ALTER TABLE " + TABELA + " ATTACH PARTITION " + particao
+                    + " FOR VALUES FROM ('" + inicioMes + "') TO ('" + inicioMes.plusMonths(1) + "')");
+            return linhas;
+        });
+        if (movidas != null && movidas > 0) {
+            logger.info("🗄️ Partição {} criada com {} hemogramas movidos da partição default", particao, movidas);
+        }
+    }
+
+    private void executarGravador() {
+        List<HemogramaCompacto> lote = new ArrayList<>(tamanhoLote);
+        while (ativo) {
+            try {
+                coletarLote(lote);
+                if (!lote.isEmpty() && !gravarLote(lote)) {
+                    loteInterrompido.addAll(lote);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                loteInterrompido.addAll(lote);
+                return;
+            } catch (Exception e) {
+                logger.error("Erro inesperado no gravador de hemogramas: {}", e.getMessage(), e);
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    /**
+     * Bloqueia até o primeiro hemograma e completa o lote por até intervalo-ms
+     */
+    private void coletarLote(List<HemogramaCompacto> lote) throws InterruptedException {
+        lote.add(fila.take());
+        long prazo = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervaloMs);
+
+        while (lote.size() < tamanhoLote) {
+            fila.drainTo(lote, tamanhoLote - lote.size());
+            long restante = prazo - System.nanoTime();
+            if (lote.size() >= tamanhoLote || restante <= 0) {
+                break;
+            }
+            HemogramaCompacto proximo = fila.poll(restante, TimeUnit.NANOSECONDS);
+            if (proximo == null) {
+                break;
+            }
+            lote.add(proximo);
+        }
+    }
+
+    /**
+     * Retorna false se o encerramento interrompeu as tentativas: o lote fica para {@link #encerrar()}
+     */
+    private boolean gravarLote(List<HemogramaCompacto> lote) {
+        Timestamp agora = Timestamp.from(Instant.now());
+
+        for (int tentativa = 1; tentativa <= MAX_TENTATIVAS; tentativa++) {
+            long inicio = System.nanoTime();
+            try {
+                if (!esquemaCriado) {
+                    manterParticoes();
+                }
+                jdbcTemplate.batchUpdate(sqlInsert, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int linha) throws SQLException {
+                        preencher(ps, lote.get(linha), agora);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return lote.size();
+                    }
+                });
+
+                ultimoLoteMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+                gravados.addAndGet(lote.size());
+                lotes.incrementAndGet();
+                logger.debug("Lote de {} hemogramas gravado em {}ms", lote.size(), ultimoLoteMs);
+                return true;
+
+            } catch (Exception e) {
+                logger.warn("Falha ao gravar lote de {} hemogramas (tentativa {}/{}): {}",
+                           lote.size(), tentativa, MAX_TENTATIVAS, e.getMessage());
+                if (tentativa < MAX_TENTATIVAS && !esperar(tentativa * 1000L)) {
+                    if (!ativo) {
+                        return false;
+                    }
+                    break;
+                }
+            }
+        }
+
+        falhas.addAndGet(lote.size());
+        logger.error("❌ {} hemogramas não foram persistidos após {} tentativas", lote.size(), MAX_TENTATIVAS);
+        return true;
+    }
+
+    private boolean esperar(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void preencher(PreparedStatement ps, HemogramaCompacto h, Timestamp agora) throws SQLException {
+        int i = 1;
+        ps.setString(i++, h.getObservationId());
+        if (h.hasDataColeta()) {
+            Instant coleta = Instant.ofEpochMilli(h.getDataColetaMillis());
+            ps.setDate(i++, Date.valueOf(LocalDate.ofInstant(coleta, ZoneId.systemDefault())));
+            ps.setTimestamp(i++, Timestamp.from(coleta));
+        } else {
+            // Sem data de coleta: data fixa, a mesma em qualquer reentrega
+            ps.setDate(i++, Date.valueOf(DATA_SEM_COLETA));
+            ps.setNull(i++, Types.TIMESTAMP);
+        }
+        for (int a = 0; a < Analito.TOTAL; a++) {
+            if ((h.getPresentes() & (1 << a)) != 0) {
+                ps.setDouble(i++, h.valor(a));
+            } else {
+                ps.setNull(i++, Types.DOUBLE);
+            }
+        }
+        ps.setInt(i++, h.getPresentes());
+        ps.setBoolean(i++, h.isRiscoHiv());
+        ps.setInt(i++, h.getMotivosRisco());
+        ps.setString(i++, descreverTriagem(h));
+        ps.setTimestamp(i, agora);
+    }
+
+    /**
+     * Achados de triagem como "detector=GRAU,..." (null quando todos negativos)
+     */
+    private String descreverTriagem(HemogramaCompacto h) {
+        if (!h.hasTriagemPositiva()) {
+            return null;
+        }
+        StringJoiner joiner = new StringJoiner(",");
+        for (Map.Entry<String, String> achado : triagemService.descrever(h).entrySet()) {
+            joiner.add(achado.getKey() + "=" + achado.getValue());
+        }
+        return joiner.toString();
+    }
+
+    private static String montarInsert() {
+        StringBuilder colunas = new StringBuilder("observation_id, data_coleta, coletado_em");
+        StringBuilder valores = new StringBuilder("?, ?, ?");
+        for (String coluna : COLUNAS_ANALITOS) {
+            colunas.append(", ").append(coluna);
+            valores.append(", ?");
+        }
+        colunas.append(", presentes, risco_hiv, motivos_risco, triagem, recebido_em");
+        valores.append(", ?, ?, ?, ?, ?");
+
+        return "INSERT INTO " + TABELA + " (" + colunas + ") VALUES (" + valores + ")"
+                + " ON CONFLICT (observation_id, data_coleta) DO NOTHING";
+    }
+}
@@ -0,0 +1,301 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.ChaveContador;
+
+/**
+ * Totais correntes dos casos HIV por região, faixa etária, sexo e data.
+ * O valor consultado é a última leitura do banco somada aos casos deste nó que ainda não estavam
+ * gravados naquela leitura. Cada leitura (carga na subida e reconciliação periódica, que traz também
+ * os casos de outros nós) abre, com o flush bloqueado, uma transação REPEATABLE READ logo depois de
+ * gravar os pendentes e abrir uma época nova de incrementos locais. O flush é liberado em seguida e as
+ * consultas rodam nessa transação: o snapshot contém exatamente as épocas anteriores, mesmo com flushes
+ * gravando a época nova enquanto elas rodam. Região, faixa etária e sexo vêm do rollup mensal quando
+ * ele está pronto; só a janela por data lê a tabela diária.
+ * Consultar o total de uma região é O(1), independente do tamanho do histórico.
+ */
+@Service
+public class TotaisHivService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TotaisHivService.class);
+
+    private static final String TABELA = EsquemaContadorHivService.TABELA;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EsquemaContadorHivService esquemaContadores;
+
+    @Autowired
+    private AgregadorContadoresService agregadorContadores;
+
+    // Janela mantida no total por data
+    @Value("${contadores.totais.dias:90}")
+    private int diasPorData;
+
+    // Incremento (leitura) x troca de época (escrita): um caso nunca fica no agregador numa época e nos totais em outra
+    private final ReentrantReadWriteLock epoca = new ReentrantReadWriteLock();
+
+    private volatile Incrementos atual = new Incrementos();
+    private volatile Estado estado = new Estado(Leitura.VAZIA, List.of(atual));
+    private volatile boolean carregado;
+
+    /**
+     * Casos somados neste nó durante uma época
+     */
+    private static final class Incrementos {
+        private final Map<String, LongAdder> porRegiao = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> porFaixaEtaria = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> porSexo = new ConcurrentHashMap<>();
+        private final Map<LocalDate, LongAdder> porData = new ConcurrentHashMap<>();
+        private final LongAdder total = new LongAdder();
+
+        private void somar(ChaveContador chave) {
+            somar(porRegiao, chave.regiao());
+            somar(porFaixaEtaria, chave.faixaEtaria());
+            somar(porSexo, chave.sexo());
+            somar(porData, chave.data());
+            total.increment();
+        }
+
+        private static <K> void somar(Map<K, LongAdder> totais, K chave) {
+            if (chave != null) {
+                totais.computeIfAbsent(chave, k -> new LongAdder()).increment();
+            }
+        }
+    }
+
+    private record Leitura(Map<String, Long> regioes, Map<String, Long> faixas, Map<String, Long> sexos,
+                           Map<LocalDate, Long> datas, long total) {
+        static final Leitura VAZIA = new Leitura(Map.of(), Map.of(), Map.of(), Map.of(), 0L);
+    }
+
+    /**
+     * Última leitura do banco + épocas de incrementos locais posteriores a ela
+     */
+    private record Estado(Leitura banco, List<Incrementos> locais) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregar() {
+        try {
+            if (sincronizar()) {
+                carregado = true;
+                logger.info("📊 Totais HIV carregados: {} casos em {} regiões", getTotal(), getPorRegiao().size());
+            }
+        } catch (Exception e) {
+            logger.error("❌ Erro ao carregar totais HIV (nova tentativa na reconciliação): {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Grava o caso no agregador de contadores e soma nos totais, na mesma época
+     */
+    public void incrementar(ChaveContador chave) {
+        epoca.readLock().lock();
+        try {
+            agregadorContadores.incrementar(TABELA, chave);
+            atual.somar(chave);
+        } finally {
+            epoca.readLock().unlock();
+        }
+    }
+
+    public long totalRegiao(String regiao) {
+        Estado visao = estado;
+        long valor = visao.banco().regioes().getOrDefault(regiao, 0L);
+        for (Incrementos local : visao.locais()) {
+            LongAdder soma = local.porRegiao.get(regiao);
+            if (soma != null) {
+                valor += soma.sum();
+            }
+        }
+        return valor;
+    }
+
+    public long getTotal() {
+        Estado visao = estado;
+        long valor = visao.banco().total();
+        for (Incrementos local : visao.locais()) {
+            valor += local.total.sum();
+        }
+        return valor;
+    }
+
+    public Map<String, Long> getPorRegiao() { return somar(estado, Leitura::regioes, i -> i.porRegiao); }
+    public Map<String, Long> getPorFaixaEtaria() { return somar(estado, Leitura::faixas, i -> i.porFaixaEtaria); }
+    public Map<String, Long> getPorSexo() { return somar(estado, Leitura::sexos, i -> i.porSexo); }
+
+    public Map<LocalDate, Long> getPorData() {
+        Map<LocalDate, Long> datas = somar(estado, Leitura::datas, i -> i.porData);
+        LocalDate limite = LocalDate.now().minusDays(diasPorData);
+        datas.keySet().removeIf(data -> data.isBefore(limite));
+        return datas;
+    }
+
+    /**
+     * Confere os totais com o banco (e traz os casos gravados por outros nós)
+     */
+    @Scheduled(fixedDelayString = "${contadores.totais.reconciliacao-ms:300000}",
+               initialDelayString = "${contadores.totais.reconciliacao-ms:300000}")
+    public void reconciliar() {
+        if (!carregado) {
+            carregar();
+            return;
+        }
+        try {
+            sincronizar();
+        } catch (Exception e) {
+            logger.error("❌ Erro ao reconciliar totais HIV com o banco: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Com o flush bloqueado: grava os pendentes, abre uma época nova e fixa o snapshot de leitura.
+     * Fora do bloqueio: lê o banco nesse snapshot, que passa a ser a base somada só aos incrementos
+     * da época nova. Retorna false se os pendentes não puderam ser gravados.
+     */
+    private synchronized boolean sincronizar() {
+        DefaultTransactionDefinition definicao = new DefaultTransactionDefinition();
+        definicao.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        definicao.setReadOnly(true);
+
+        Incrementos novos = new Incrementos();
+        Estado[] anterior = {null};
+        TransactionStatus[] leitura = {null};
+        agregadorContadores.executarComFlushBloqueado(() -> {
+            epoca.writeLock().lock();
+            try {
+                agregadorContadores.flush();
+                if (agregadorContadores.getPendentes(TABELA) > 0) {
+                    logger.warn("⚠️ Reconciliação dos totais HIV adiada: incrementos não gravados no banco");
+                    return;
+                }
+                anterior[0] = estado;
+                List<Incrementos> locais = new ArrayList<>(anterior[0].locais());
+                locais.add(novos);
+                atual = novos;
+                estado = new Estado(anterior[0].banco(), locais);
+            } finally {
+                epoca.writeLock().unlock();
+            }
+            // No PostgreSQL o snapshot REPEATABLE READ é tirado na primeira consulta da transação
+            leitura[0] = transactionManager.getTransaction(definicao);
+            try {
+                jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+            } catch (RuntimeException e) {
+                transactionManager.rollback(leitura[0]);
+                throw e;
+            }
+        });
+        if (leitura[0] == null) {
+            return false;
+        }
+
+        // Se a leitura falhar, o estado acima continua somando todas as épocas sobre a base antiga
+        Leitura banco;
+        try {
+            banco = lerBanco();
+        } finally {
+            transactionManager.rollback(leitura[0]);
+        }
+        estado = new Estado(banco, List.of(novos));
+
+        if (carregado) {
+            long divergencias = divergencias(anterior[0], banco);
+            if (divergencias > 0) {
+                logger.warn("⚠️ Totais HIV corrigidos pelo banco: {} divergências (total={})", divergencias, banco.total());
+            } else {
+                logger.debug("Totais HIV conferidos com o banco (total={})", banco.total());
+            }
+        }
+        return true;
+    }
+
+    private Leitura lerBanco() {
+        // O rollup mensal tem as mesmas somas por dimensão que a tabela diária, em muito menos linhas
+        String tabela = esquemaContadores.isRollupsProntos() ? EsquemaContadorHivService.TABELA_MENSAL : TABELA;
+        Map<String, Long> regioes = lerAgrupado(tabela, "regiao");
+        Map<String, Long> faixas = lerAgrupado(tabela, "faixa_etaria");
+        Map<String, Long> sexos = lerAgrupado(tabela, "sexo");
+        Map<LocalDate, Long> datas = lerPorData();
+        long total = regioes.values().stream().mapToLong(Long::longValue).sum();
+        return new Leitura(regioes, faixas, sexos, datas, total);
+    }
+
+    /**
+     * Chaves em que o banco difere do que este nó esperava (épocas já gravadas sobre a leitura anterior):
+     * casos de outros nós ou divergência real
+     */
+    private long divergencias(Estado esperado, Leitura banco) {
+        return divergencias(somar(esperado, Leitura::regioes, i -> i.porRegiao), banco.regioes())
+                + divergencias(somar(esperado, Leitura::faixas, i -> i.porFaixaEtaria), banco.faixas())
+                + divergencias(somar(esperado, Leitura::sexos, i -> i.porSexo), banco.sexos());
+    }
+
+    private static <K> long divergencias(Map<K, Long> esperado, Map<K, Long> banco) {
+        long divergencias = banco.entrySet().stream()
+                .filter(linha -> !linha.getValue().equals(esperado.getOrDefault(linha.getKey(), 0L)))
+                .count();
+        return divergencias + esperado.entrySet().stream()
+                .filter(linha -> !banco.containsKey(linha.getKey()) && linha.getValue() != 0)
+                .count();
+    }
+
+    private static <K> Map<K, Long> somar(Estado visao, Function<Leitura, Map<K, Long>> doBanco,
+                                          Function<Incrementos, Map<K, LongAdder>> locais) {
+        Map<K, Long> resultado = new HashMap<>(doBanco.apply(visao.banco()));
+        for (Incrementos local : visao.locais()) {
+            locais.apply(local).forEach((chave, valor) -> resultado.merge(chave, valor.sum(), Long::sum));
+        }
+        return resultado;
+    }
+
+    private Map<String, Long> lerAgrupado(String tabela, String coluna) {
+        Map<String, Long> resultado = new HashMap<>();
+        jdbcTemplate.query("SELECT " + coluna + ", SUM(quantidade) FROM " + tabela + " GROUP BY " + coluna, rs -> {
+            String chave = rs.getString(1);
+            if (chave != null) {
+                resultado.put(chave, rs.getLong(2));
+            }
+        });
+        return resultado;
+    }
+
+    private Map<LocalDate, Long> lerPorData() {
+        Map<LocalDate, Long> resultado = new HashMap<>();
+        jdbcTemplate.query("SELECT data, SUM(quantidade) FROM " + TABELA + " WHERE data >= ? GROUP BY data",
+                rs -> {
+                    resultado.put(rs.getDate(1).toLocalDate(), rs.getLong(2));
+                },
+                Date.valueOf(LocalDate.now().minusDays(diasPorData)));
+        return resultado;
+    }
+}
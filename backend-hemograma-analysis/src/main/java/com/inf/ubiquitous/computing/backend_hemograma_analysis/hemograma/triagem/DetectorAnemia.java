@@ -0,0 +1,46 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.ContadorAnemia;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository.ContadorAnemiaRepository;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository.ContadorTriagemRepository;
+
+/**
+ * Grau de anemia pela hemoglobina (faixas da OMS para adultos):
+ * &lt; 12 leve, &lt; 11 moderada, &lt; 8 grave (g/dL)
+ */
+@Component
+public class DetectorAnemia implements DetectorTriagem<ContadorAnemia> {
+
+    @Autowired
+    private ContadorAnemiaRepository repositorio;
+
+    @Override
+    public String getNome() { return "anemia"; }
+
+    @Override
+    public String getTopico() { return "anemia-detectada"; }
+
+    @Override
+    public int avaliar(HemogramaCompacto h) {
+        if (!h.possui(Analito.HEMOGLOBINA)) {
+            return 0;
+        }
+        return GrauSeveridade.abaixoDe(h.valor(Analito.HEMOGLOBINA), 12, 11, 8);
+    }
+
+    @Override
+    public String descrever(int resultado) {
+        return "Anemia " + GrauSeveridade.porResultado(resultado).getDescricao();
+    }
+
+    @Override
+    public String getTabelaContador() { return "contador_anemia"; }
+
+    @Override
+    public ContadorTriagemRepository<ContadorAnemia> getRepositorio() { return repositorio; }
+}
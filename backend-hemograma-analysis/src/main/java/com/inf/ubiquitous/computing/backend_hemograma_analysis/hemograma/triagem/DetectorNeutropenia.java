@@ -0,0 +1,53 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.ContadorNeutropenia;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository.ContadorNeutropeniaRepository;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository.ContadorTriagemRepository;
+
+/**
+ * Neutropenia pela contagem absoluta de neutrófilos (ANC):
+ * &lt; 1500 leve, &lt; 1000 moderada, &lt; 500 grave (/μL).
+ * Sem o valor absoluto, calcula ANC = leucócitos × neutrófilos% / 100. Contagens em 10³/μL ou 10^9/L
+ * são convertidas pela unidade do laudo.
+ */
+@Component
+public class DetectorNeutropenia implements DetectorTriagem<ContadorNeutropenia> {
+
+    @Autowired
+    private ContadorNeutropeniaRepository repositorio;
+
+    @Override
+    public String getNome() { return "neutropenia"; }
+
+    @Override
+    public String getTopico() { return "neutropenia-detectada"; }
+
+    @Override
+    public int avaliar(HemogramaCompacto h) {
+        double anc;
+        if (h.possui(Analito.NEUTROFILOS_ABS)) {
+            anc = h.valorPorMicrolitro(Analito.NEUTROFILOS_ABS);
+        } else if (h.possui(Analito.LEUCOCITOS) && h.possui(Analito.NEUTROFILOS)) {
+            anc = h.valorPorMicrolitro(Analito.LEUCOCITOS) * h.valor(Analito.NEUTROFILOS) / 100;
+        } else {
+            return 0;
+        }
+        return GrauSeveridade.abaixoDe(anc, 1500, 1000, 500);
+    }
+
+    @Override
+    public String descrever(int resultado) {
+        return "Neutropenia " + GrauSeveridade.porResultado(resultado).getDescricao();
+    }
+
+    @Override
+    public String getTabelaContador() { return "contador_neutropenia"; }
+
+    @Override
+    public ContadorTriagemRepository<ContadorNeutropenia> getRepositorio() { return repositorio; }
+}
@@ -0,0 +1,46 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.ContadorPlaquetopenia;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository.ContadorPlaquetopeniaRepository;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository.ContadorTriagemRepository;
+
+/**
+ * Plaquetopenia (padrão sugestivo de dengue): &lt; 150.000 leve, &lt; 100.000 moderada, &lt; 50.000 grave (/μL)
+ */
+@Component
+public class DetectorPlaquetopenia implements DetectorTriagem<ContadorPlaquetopenia> {
+
+    @Autowired
+    private ContadorPlaquetopeniaRepository repositorio;
+
+    @Override
+    public String getNome() { return "plaquetopenia"; }
+
+    @Override
+    public String getTopico() { return "plaquetopenia-detectada"; }
+
+    @Override
+    public int avaliar(HemogramaCompacto h) {
+        if (!h.possui(Analito.PLAQUETAS)) {
+            return 0;
+        }
+        // Laudos em 10³/μL (ex.: 85) são convertidos para /μL pela unidade
+        return GrauSeveridade.abaixoDe(h.valorPorMicrolitro(Analito.PLAQUETAS), 150000, 100000, 50000);
+    }
+
+    @Override
+    public String descrever(int resultado) {
+        return "Plaquetopenia " + GrauSeveridade.porResultado(resultado).getDescricao();
+    }
+
+    @Override
+    public String getTabelaContador() { return "contador_plaquetopenia"; }
+
+    @Override
+    public ContadorTriagemRepository<ContadorPlaquetopenia> getRepositorio() { return repositorio; }
+}
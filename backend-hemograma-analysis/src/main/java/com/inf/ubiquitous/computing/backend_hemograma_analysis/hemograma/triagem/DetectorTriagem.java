@@ -0,0 +1,42 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.entity.ContadorTriagem;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.repository.ContadorTriagemRepository;
+
+/**
+ * Plugin de triagem executado sobre o hemograma já parseado.
+ * Basta declarar um bean que implemente esta interface: o {@link TriagemService} o registra,
+ * avalia junto com os demais na mesma passada e contabiliza os casos na tabela e no tópico do detector.
+ *
+ * @param <C> entidade de contador do detector
+ */
+public interface DetectorTriagem<C extends ContadorTriagem> {
+
+    /**
+     * Identificador curto e estável (usado em endpoints e no DTO)
+     */
+    String getNome();
+
+    /**
+     * Tópico Kafka onde os casos detectados são publicados
+     */
+    String getTopico();
+
+    /**
+     * Avalia o hemograma sem alocar; 0 = negativo, senão o grau/código do achado
+     */
+    int avaliar(HemogramaCompacto h);
+
+    /**
+     * Explicação do achado para um resultado diferente de 0
+     */
+    String descrever(int resultado);
+
+    /**
+     * Tabela física dos contadores do detector (mesmo nome do @Table da entidade)
+     */
+    String getTabelaContador();
+
+    ContadorTriagemRepository<C> getRepositorio();
+}
@@ -0,0 +1,37 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem;
+
+/**
+ * Graus usados pelos detectores graduados; o ordinal é o resultado devolvido por
+ * {@link DetectorTriagem#avaliar} (0 = negativo)
+ */
+public enum GrauSeveridade {
+
+    NENHUM("Sem alteração"),
+    LEVE("leve"),
+    MODERADO("moderada"),
+    GRAVE("grave");
+
+    private static final GrauSeveridade[] VALORES = values();
+
+    private final String descricao;
+
+    GrauSeveridade(String descricao) {
+        this.descricao = descricao;
+    }
+
+    public String getDescricao() { return descricao; }
+
+    public static GrauSeveridade porResultado(int resultado) {
+        return resultado > 0 && resultado < VALORES.length ? VALORES[resultado] : NENHUM;
+    }
+
+    /**
+     * Grau de um valor que cai abaixo de limites decrescentes (leve, moderado, grave)
+     */
+    public static int abaixoDe(double valor, double leve, double moderado, double grave) {
+        if (valor < grave) return GRAVE.ordinal();
+        if (valor < moderado) return MODERADO.ordinal();
+        if (valor < leve) return LEVE.ordinal();
+        return NENHUM.ordinal();
+    }
+}
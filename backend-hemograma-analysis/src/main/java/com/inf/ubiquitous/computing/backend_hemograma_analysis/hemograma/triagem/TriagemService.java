@@ -0,0 +1,113 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.PacienteDto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.ContadorTriagemService;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Etapa de triagem multi-doença. Registra todos os beans {@link DetectorTriagem} e os executa
+ * em sequência sobre o mesmo {@link HemogramaCompacto} já parseado: incluir um detector não
+ * adiciona outro parse, só o custo da regra dele.
+ *
+ * O resultado do detector i fica em {@code h.resultadoTriagem(i)}; a ordem dos detectores é
+ * estável (por nome) enquanto a aplicação estiver no ar.
+ */
+@Service
+public class TriagemService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TriagemService.class);
+
+    @Autowired
+    private List<DetectorTriagem<?>> detectoresRegistrados;
+
+    @Autowired
+    private ContadorTriagemService contadorTriagemService;
+
+    private DetectorTriagem<?>[] detectores;
+
+    @PostConstruct
+    public void inicializar() {
+        detectores = detectoresRegistrados.stream()
+                .sorted(Comparator.comparing(DetectorTriagem::getNome))
+                .toArray(DetectorTriagem<?>[]::new);
+        logger.info("🔬 Triagem com {} detectores: {}", detectores.length,
+                   detectoresRegistrados.stream().map(DetectorTriagem::getNome).sorted().toList());
+    }
+
+    /**
+     * Executa todos os detectores no hemograma. Só aloca o array de resultados se algum for positivo.
+     */
+    public void avaliar(HemogramaCompacto h) {
+        int[] resultados = null;
+        for (int i = 0; i < detectores.length; i++) {
+            int resultado = detectores[i].avaliar(h);
+            if (resultado != 0) {
+                if (resultados == null) {
+                    resultados = new int[detectores.length];
+                }
+                resultados[i] = resultado;
+            }
+        }
+        h.setResultadosTriagem(resultados);
+    }
+
+    /**
+     * Contabiliza (tabela + tópico de cada detector) os achados positivos do hemograma
+     */
+    public void registrarCasos(HemogramaCompacto h, PacienteDto paciente) {
+        if (!h.hasTriagemPositiva()) {
+            return;
+        }
+        for (int i = 0; i < detectores.length; i++) {
+            int resultado = h.resultadoTriagem(i);
+            if (resultado != 0) {
+                try {
+                    contadorTriagemService.incrementarContador(detectores[i], h.getObservationId(), paciente, resultado);
+                } catch (Exception e) {
+                    logger.error("Erro ao registrar caso de {}: {}", detectores[i].getNome(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Achados positivos por nome do detector (vazio quando não há nenhum)
+     */
+    public Map<String, String> descrever(HemogramaCompacto h) {
+        Map<String, String> achados = new LinkedHashMap<>();
+        if (h.hasTriagemPositiva()) {
+            for (int i = 0; i < detectores.length; i++) {
+                int resultado = h.resultadoTriagem(i);
+                if (resultado != 0) {
+                    achados.put(detectores[i].getNome(), detectores[i].descrever(resultado));
+                }
+            }
+        }
+        return achados;
+    }
+
+    public List<DetectorTriagem<?>> getDetectores() {
+        return List.of(detectores);
+    }
+
+    public DetectorTriagem<?> getDetector(String nome) {
+        for (DetectorTriagem<?> detector : detectores) {
+            if (detector.getNome().equals(nome)) {
+                return detector;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,125 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.regras;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+
+/**
+ * Avaliações de risco HIV por segundo: motor de regras compilado x critérios fixos da versão
+ * anterior (BigDecimal por analito, motivo montado comparando tudo de novo).
+ * Executar pelo {@link #main} com o classpath de teste (após mvn test-compile).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MotorRegrasRiscoHivBenchmark {
+
+	private static final int TOTAL = 1024;
+
+	private final HemogramaCompacto[] compactos = new HemogramaCompacto[TOTAL];
+	private final HemogramaLegado[] legados = new HemogramaLegado[TOTAL];
+	private MotorRegrasRiscoHiv motor;
+	private int proximo;
+
+	@Setup
+	public void preparar() {
+		motor = new MotorRegrasRiscoHiv();
+		ReflectionTestUtils.setField(motor, "resourceLoader", new DefaultResourceLoader());
+		ReflectionTestUtils.setField(motor, "arquivoRegras", "classpath:regras/risco-hiv.json");
+		motor.inicializar();
+
+		// ~1/3 dos hemogramas abaixo de algum limite
+		Random random = new Random(42);
+		for (int i = 0; i < TOTAL; i++) {
+			double leucocitos = 3000 + random.nextInt(6000);
+			double linfocitos = 15 + random.nextInt(30);
+			double hemoglobina = 10 + random.nextInt(60) / 10.0;
+			double linfocitosAbs = 800 + random.nextInt(2500);
+
+			HemogramaCompacto h = new HemogramaCompacto();
+			h.definir(Analito.LEUCOCITOS, leucocitos, "/uL");
+			h.definir(Analito.LINFOCITOS, linfocitos, "%");
+			h.definir(Analito.HEMOGLOBINA, hemoglobina, "g/dL");
+			h.definir(Analito.LINFOCITOS_ABS, linfocitosAbs, "/uL");
+			compactos[i] = h;
+			legados[i] = new HemogramaLegado(BigDecimal.valueOf(leucocitos), BigDecimal.valueOf(linfocitos),
+					BigDecimal.valueOf(hemoglobina), BigDecimal.valueOf(linfocitosAbs));
+		}
+	}
+
+	@Benchmark
+	public void motorCompilado(Blackhole bh) {
+		HemogramaCompacto h = compactos[proximo++ & (TOTAL - 1)];
+		int motivos = motor.avaliar(h);
+		bh.consume(motivos);
+		if (motivos != 0) {
+			bh.consume(motor.descrever(motivos));
+		}
+	}
+
+	@Benchmark
+	public void criteriosFixos(Blackhole bh) {
+		HemogramaLegado h = legados[proximo++ & (TOTAL - 1)];
+		boolean risco = h.avaliarRiscoHiv();
+		bh.consume(risco);
+		if (risco) {
+			bh.consume(h.gerarMotivoRisco());
+		}
+	}
+
+	/**
+	 * Critérios como estavam no HemogramaFhirParserService antes do motor de regras
+	 */
+	private record HemogramaLegado(BigDecimal leucocitos, BigDecimal linfocitos, BigDecimal hemoglobina,
+								   BigDecimal linfocitosAbs) {
+
+		boolean avaliarRiscoHiv() {
+			if (leucocitos == null && linfocitos == null && hemoglobina == null) {
+				return false;
+			}
+			boolean leucopenia = leucocitos != null && leucocitos.doubleValue() < 4000;
+			boolean linfopenia = linfocitos != null && linfocitos.doubleValue() < 20;
+			boolean anemia = hemoglobina != null && hemoglobina.doubleValue() < 11;
+			boolean linfopeniaAbs = linfocitosAbs != null && linfocitosAbs.doubleValue() < 1000;
+			return leucopenia || linfopenia || anemia || linfopeniaAbs;
+		}
+
+		String gerarMotivoRisco() {
+			List<String> motivos = new ArrayList<>();
+			if (leucocitos != null && leucocitos.doubleValue() < 4000) motivos.add("Leucopenia (< 4000/μL)");
+			if (linfocitos != null && linfocitos.doubleValue() < 20) motivos.add("Linfopenia (< 20%)");
+			if (hemoglobina != null && hemoglobina.doubleValue() < 11) motivos.add("Anemia (< 11 g/dL)");
+			if (linfocitosAbs != null && linfocitosAbs.doubleValue() < 1000) motivos.add("Linfopenia absoluta (< 1000/μL)");
+			return motivos.isEmpty() ? "Risco indeterminado" : String.join(", ", motivos);
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(MotorRegrasRiscoHivBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,102 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.regras;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+
+class MotorRegrasRiscoHivTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void recargasComMaisDe32IdsDistintosReaproveitamBits() throws IOException {
+		Path arquivo = dir.resolve("regras.json");
+		MotorRegrasRiscoHiv motor = motor(arquivo, regras("R0", "R1"));
+
+		for (int versao = 2; versao < 50; versao++) {
+			Files.writeString(arquivo, regras("R" + versao, "R" + (versao + 100)));
+			assertTrue(motor.recarregar(), "recarga " + versao);
+		}
+
+		HemogramaCompacto h = new HemogramaCompacto();
+		h.definir(Analito.LEUCOCITOS, 3000, "/uL");
+		int motivos = motor.avaliar(h);
+		assertEquals(2, Integer.bitCount(motivos));
+		String descricao = motor.descrever(motivos);
+		assertTrue(descricao.contains("R49") && descricao.contains("R149"), descricao);
+	}
+
+	@Test
+	void regraMantidaContinuaComOMesmoBit() throws IOException {
+		Path arquivo = dir.resolve("regras.json");
+		MotorRegrasRiscoHiv motor = motor(arquivo, regras("A", "B"));
+		HemogramaCompacto h = new HemogramaCompacto();
+		h.definir(Analito.LEUCOCITOS, 3000, "/uL");
+		int antes = motor.avaliar(h);
+
+		Files.writeString(arquivo, regras("B", "C"));
+		assertTrue(motor.recarregar());
+		int depois = motor.avaliar(h);
+
+		// B conserva o bit; C ocupa um bit nunca usado, então a máscara antiga ainda descreve A
+		assertEquals(1, Integer.bitCount(antes & depois));
+		assertEquals("A, B", motor.descrever(antes));
+		assertEquals("B, C", motor.descrever(depois));
+	}
+
+	@Test
+	void bitsPersistidosSobrevivemARestartComRegrasReordenadas() throws IOException {
+		Path arquivo = dir.resolve("regras.json");
+		Path bits = dir.resolve("bits.json");
+		MotorRegrasRiscoHiv antes = motor(arquivo, regras("A", "B"), bits);
+		HemogramaCompacto h = new HemogramaCompacto();
+		h.definir(Analito.LEUCOCITOS, 3000, "/uL");
+		int gravada = antes.avaliar(h);
+
+		// Restart com A removida, C incluída e ordem trocada
+		MotorRegrasRiscoHiv depois = motor(arquivo, regras("C", "B"), bits);
+
+		assertEquals("A, B", depois.descrever(gravada));
+		assertEquals("B, C", depois.descrever(depois.avaliar(h)));
+		assertEquals(1, Integer.bitCount(gravada & depois.avaliar(h)));
+	}
+
+	private MotorRegrasRiscoHiv motor(Path arquivo, String conteudo) throws IOException {
+		return motor(arquivo, conteudo, null);
+	}
+
+	private MotorRegrasRiscoHiv motor(Path arquivo, String conteudo, Path bits) throws IOException {
+		Files.writeString(arquivo, conteudo);
+		MotorRegrasRiscoHiv motor = new MotorRegrasRiscoHiv();
+		ReflectionTestUtils.setField(motor, "resourceLoader", new DefaultResourceLoader());
+		ReflectionTestUtils.setField(motor, "arquivoRegras", arquivo.toUri().toString());
+		if (bits != null) {
+			ReflectionTestUtils.setField(motor, "arquivoBits", bits.toString());
+		}
+		motor.inicializar();
+		return motor;
+	}
+
+	private static String regras(String... ids) {
+		StringBuilder json = new StringBuilder("{\"versao\":\"t\",\"regras\":[");
+		for (int i = 0; i < ids.length; i++) {
+			if (i > 0) json.append(',');
+			json.append("{\"id\":\"").append(ids[i])
+				.append("\",\"analito\":\"LEUCOCITOS\",\"operador\":\"<\",\"limite\":4000,\"descricao\":\"")
+				.append(ids[i]).append("\"}");
+		}
+		return json.append("]}").toString();
+	}
+}
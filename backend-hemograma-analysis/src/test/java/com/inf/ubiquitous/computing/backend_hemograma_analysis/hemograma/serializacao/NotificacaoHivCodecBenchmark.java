@@ -0,0 +1,100 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.serializacao;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.NotificacaoHivDto;
+
+/**
+ * Custo por mensagem de {@link NotificacaoHivDto}: formato binário ({@link NotificacaoHivCodec}) x JSON
+ * do Spring Kafka com headers de tipo (formato anterior). O tamanho de cada formato é impresso no setup.
+ * Executar pelo {@link #main} com o classpath de teste (após mvn test-compile).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificacaoHivCodecBenchmark {
+
+	private static final String TOPICO = "estatisticas-hiv";
+
+	private final NotificacaoHivDto dto = new NotificacaoHivDto(UUID.randomUUID().toString(), "HIV_DETECTADO",
+			"Observation/12345/_history/1", "FHIR-1730000000000", "Sudeste", "SP", "30-44", "F",
+			"Leucopenia (< 4000/μL), Linfopenia (< 20%)", LocalDateTime.of(2025, 3, 1, 12, 30, 45));
+
+	private JsonSerializer<Object> jsonSerializer;
+	private JsonDeserializer<Object> jsonDeserializer;
+	private byte[] binario;
+	private byte[] json;
+	private RecordHeaders headersJson;
+
+	@Setup
+	public void preparar() {
+		jsonSerializer = new JsonSerializer<>();
+		jsonDeserializer = new JsonDeserializer<>();
+		jsonDeserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "*"), false);
+
+		binario = NotificacaoHivCodec.codificar(dto);
+		headersJson = new RecordHeaders();
+		json = jsonSerializer.serialize(TOPICO, headersJson, dto);
+
+		int bytesHeaders = 0;
+		for (var header : headersJson) {
+			bytesHeaders += header.key().length() + header.value().length;
+		}
+		System.out.printf("%nbinário: %d bytes | json: %d bytes + %d bytes de headers de tipo%n",
+				binario.length, json.length, bytesHeaders);
+	}
+
+	@TearDown
+	public void encerrar() {
+		jsonSerializer.close();
+		jsonDeserializer.close();
+	}
+
+	@Benchmark
+	public byte[] codificarBinario() {
+		return NotificacaoHivCodec.codificar(dto);
+	}
+
+	@Benchmark
+	public byte[] codificarJson() {
+		return jsonSerializer.serialize(TOPICO, new RecordHeaders(), dto);
+	}
+
+	@Benchmark
+	public NotificacaoHivDto decodificarBinario() {
+		return NotificacaoHivCodec.decodificar(binario);
+	}
+
+	@Benchmark
+	public Object decodificarJson() {
+		return jsonDeserializer.deserialize(TOPICO, headersJson, json);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(NotificacaoHivCodecBenchmark.class.getSimpleName()).build()).run();
+	}
+}
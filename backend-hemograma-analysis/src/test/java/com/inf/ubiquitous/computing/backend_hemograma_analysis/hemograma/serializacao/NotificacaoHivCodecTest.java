@@ -0,0 +1,114 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.serializacao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.dto.NotificacaoHivDto;
+
+class NotificacaoHivCodecTest {
+
+	@Test
+	void idaEVoltaComTodosOsCampos() {
+		NotificacaoHivDto dto = new NotificacaoHivDto(UUID.randomUUID().toString(), "HIV_DETECTADO", "Observation/1/_history/2",
+				"FHIR-1", "Sudeste", "SP", "30-44", "F", "Leucopenia (< 4000/μL), Anemia (< 11 g/dL)",
+				LocalDateTime.of(2025, 3, 1, 12, 30, 45));
+
+		byte[] dados = NotificacaoHivCodec.codificar(dto);
+
+		assertTrue(NotificacaoHivCodec.isBinario(dados));
+		assertIguais(dto, NotificacaoHivCodec.decodificar(dados));
+	}
+
+	@Test
+	void idaEVoltaComTodosOsCamposNulos() {
+		NotificacaoHivDto dto = new NotificacaoHivDto(null, null, null, null, null, null, null, null, null, null);
+
+		byte[] dados = NotificacaoHivCodec.codificar(dto);
+
+		assertEquals(5, dados.length);
+		assertIguais(dto, NotificacaoHivCodec.decodificar(dados));
+	}
+
+	@Test
+	void eventoIdQueNaoEUuidCanonicoVoltaIgual() {
+		for (String eventoId : new String[] {"evento-1", "", "F47AC10B-58CC-4372-A567-0E02B2C3D479", "ção"}) {
+			NotificacaoHivDto dto = new NotificacaoHivDto(eventoId, "HIV_DETECTADO", null, null, null, null, null, null, null, null);
+			assertEquals(eventoId, NotificacaoHivCodec.decodificar(NotificacaoHivCodec.codificar(dto)).getEventoId());
+		}
+	}
+
+	@Test
+	void timestampAntesDe1970() {
+		NotificacaoHivDto dto = new NotificacaoHivDto("e", null, null, null, null, null, null, null, null,
+				LocalDateTime.of(1960, 1, 1, 0, 0, 1));
+
+		assertEquals(dto.getTimestamp(), NotificacaoHivCodec.decodificar(NotificacaoHivCodec.codificar(dto)).getTimestamp());
+	}
+
+	@Test
+	void mensagemTruncadaFalhaComSerializationException() {
+		NotificacaoHivDto dto = new NotificacaoHivDto(UUID.randomUUID().toString(), "HIV_DETECTADO", "Observation/1",
+				"FHIR-1", "Sul", "RS", "18-29", "M", "Linfopenia (< 20%)", LocalDateTime.of(2025, 1, 1, 0, 0));
+		byte[] dados = NotificacaoHivCodec.codificar(dto);
+
+		for (int tamanho = 0; tamanho < dados.length; tamanho++) {
+			byte[] truncado = Arrays.copyOf(dados, tamanho);
+			assertThrows(SerializationException.class, () -> NotificacaoHivCodec.decodificar(truncado), "tamanho " + tamanho);
+		}
+	}
+
+	@Test
+	void esquemaDesconhecidoFalhaComSerializationException() {
+		byte[] dados = ByteBuffer.allocate(5).put(NotificacaoHivCodec.MAGICO).putShort((short) 99).putShort((short) 0).array();
+
+		SerializationException erro = assertThrows(SerializationException.class, () -> NotificacaoHivCodec.decodificar(dados));
+		assertTrue(erro.getMessage().contains("99"), erro.getMessage());
+	}
+
+	@Test
+	void timestampForaDoIntervaloFalhaComSerializationException() {
+		byte[] dados = NotificacaoHivCodec.codificar(new NotificacaoHivDto(null, null, null, null, null, null, null, null, null,
+				LocalDateTime.of(2025, 1, 1, 0, 0)));
+		ByteBuffer invalido = ByteBuffer.allocate(5 + 9).put(dados, 0, 5);
+		for (int i = 0; i < 8; i++) {
+			invalido.put((byte) 0xFF);
+		}
+		invalido.put((byte) 0x7F);
+
+		assertThrows(SerializationException.class, () -> NotificacaoHivCodec.decodificar(invalido.array()));
+	}
+
+	@Test
+	void jsonNaoEConfundidoComBinario() {
+		byte[] json = "{\"tipo\":\"HIV_DETECTADO\"}".getBytes(StandardCharsets.UTF_8);
+
+		assertTrue(!NotificacaoHivCodec.isBinario(json));
+		assertThrows(SerializationException.class, () -> NotificacaoHivCodec.decodificar(json));
+		assertNull(new NotificacaoHivDeserializer().deserialize("t", null));
+		assertEquals("HIV_DETECTADO", new NotificacaoHivDeserializer().deserialize("t", json).getTipo());
+	}
+
+	private static void assertIguais(NotificacaoHivDto esperado, NotificacaoHivDto lido) {
+		assertEquals(esperado.getEventoId(), lido.getEventoId());
+		assertEquals(esperado.getTipo(), lido.getTipo());
+		assertEquals(esperado.getHemogramaId(), lido.getHemogramaId());
+		assertEquals(esperado.getPacienteId(), lido.getPacienteId());
+		assertEquals(esperado.getRegiao(), lido.getRegiao());
+		assertEquals(esperado.getEstado(), lido.getEstado());
+		assertEquals(esperado.getFaixaEtaria(), lido.getFaixaEtaria());
+		assertEquals(esperado.getSexo(), lido.getSexo());
+		assertEquals(esperado.getMotivoRisco(), lido.getMotivoRisco());
+		assertEquals(esperado.getTimestamp(), lido.getTimestamp());
+	}
+}
@@ -0,0 +1,131 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.ChaveContador;
+
+class AgregadorContadoresServiceTest {
+
+	private static final String DIARIA = EsquemaContadorHivService.TABELA;
+	private static final String MENSAL = EsquemaContadorHivService.TABELA_MENSAL;
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final Map<String, List<BatchPreparedStatementSetter>> lotes = new HashMap<>();
+	private AgregadorContadoresService agregador;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void configurar() {
+		TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+		doAnswer(invocacao -> {
+			((Consumer<TransactionStatus>) invocacao.getArgument(0)).accept(null);
+			return null;
+		}).when(transactionTemplate).executeWithoutResult(any());
+		when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class))).thenAnswer(invocacao -> {
+			String sql = invocacao.getArgument(0);
+			String tabela = sql.substring("INSERT INTO ".length(), sql.indexOf(' ', "INSERT INTO ".length()));
+			lotes.computeIfAbsent(tabela, t -> new ArrayList<>()).add(invocacao.getArgument(1));
+			return new int[0];
+		});
+
+		agregador = new AgregadorContadoresService();
+		ReflectionTestUtils.setField(agregador, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(agregador, "transactionTemplate", transactionTemplate);
+		ReflectionTestUtils.setField(agregador, "eventPublisher", mock(ApplicationEventPublisher.class));
+		ReflectionTestUtils.setField(agregador, "maxPendentes", 1000L);
+		agregador.registrarTabela(DIARIA, false);
+		agregador.registrarRollup(DIARIA, MENSAL, EsquemaContadorHivService::inicioMes);
+	}
+
+	@Test
+	void rollupSomaOLotePorMes() throws SQLException {
+		incrementar("2024-03-04", 2);
+		incrementar("2024-03-20", 1);
+		incrementar("2024-04-02", 1);
+
+		agregador.flush();
+
+		assertEquals(Map.of(d("2024-03-04"), 2L, d("2024-03-20"), 1L, d("2024-04-02"), 1L), linhas(DIARIA));
+		assertEquals(Map.of(d("2024-03-01"), 3L, d("2024-04-01"), 1L), linhas(MENSAL));
+		assertEquals(0, agregador.getPendentes(DIARIA));
+
+		ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+		verify(jdbcTemplate, times(2)).batchUpdate(sql.capture(), any(BatchPreparedStatementSetter.class));
+		assertTrue(sql.getAllValues().get(1).contains("ON CONFLICT (data, faixa_etaria, sexo, regiao, estado) DO UPDATE SET "
+				+ "quantidade = " + MENSAL + ".quantidade + EXCLUDED.quantidade"), sql.getAllValues().get(1));
+	}
+
+	@Test
+	void falhaNoRollupDevolveOLoteInteiro() {
+		when(jdbcTemplate.batchUpdate(startsWith("INSERT INTO " + MENSAL + " "),
+				any(BatchPreparedStatementSetter.class)))
+				.thenThrow(new DataAccessResourceFailureException("banco fora"));
+		incrementar("2024-03-04", 2);
+		incrementar("2024-04-02", 1);
+
+		agregador.flush();
+
+		assertEquals(3, agregador.getPendentes(DIARIA));
+		assertEquals(3, agregador.getTotalPendente());
+	}
+
+	private void incrementar(String data, int vezes) {
+		for (int i = 0; i < vezes; i++) {
+			agregador.incrementar(DIARIA, new ChaveContador(d(data), "30-44", "F", "Sul", "RS"));
+		}
+	}
+
+	/**
+	 * data -> quantidade de todas as linhas enviadas para a tabela
+	 */
+	private Map<LocalDate, Long> linhas(String tabela) throws SQLException {
+		Map<LocalDate, Long> resultado = new HashMap<>();
+		for (BatchPreparedStatementSetter lote : lotes.getOrDefault(tabela, List.of())) {
+			for (int linha = 0; linha < lote.getBatchSize(); linha++) {
+				PreparedStatement ps = mock(PreparedStatement.class);
+				lote.setValues(ps, linha);
+				ArgumentCaptor<Date> data = ArgumentCaptor.forClass(Date.class);
+				ArgumentCaptor<Long> quantidade = ArgumentCaptor.forClass(Long.class);
+				verify(ps).setDate(eq(1), data.capture());
+				verify(ps).setLong(eq(6), quantidade.capture());
+				resultado.merge(data.getValue().toLocalDate(), quantidade.getValue(), Long::sum);
+			}
+		}
+		return resultado;
+	}
+
+	private static LocalDate d(String data) {
+		return LocalDate.parse(data);
+	}
+}
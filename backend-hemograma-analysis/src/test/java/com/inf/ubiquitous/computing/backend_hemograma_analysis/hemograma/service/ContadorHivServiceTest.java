@@ -0,0 +1,121 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service.ContadorHivService.Trecho;
+
+class ContadorHivServiceTest {
+
+	private static final String MENSAL = EsquemaContadorHivService.TABELA_MENSAL;
+	private static final String SEMANAL = EsquemaContadorHivService.TABELA_SEMANAL;
+	private static final String DIARIA = EsquemaContadorHivService.TABELA;
+
+	// 2024-03-01 é sexta; 2024-01-08, 2024-03-04, 2024-03-11, 2024-03-18 e 2024-04-01 são segundas
+
+	@Test
+	void semLimitesLeSoOMensal() {
+		assertEquals(List.of(new Trecho(MENSAL, null, null)), ContadorHivService.planejar(null, null));
+	}
+
+	@Test
+	void semInicioLeMesesAteOFimESemanasEDiasDaPonta() {
+		assertEquals(List.of(
+				new Trecho(MENSAL, null, d("2024-03-01")),
+				new Trecho(SEMANAL, d("2024-03-04"), d("2024-03-18")),
+				new Trecho(DIARIA, d("2024-03-01"), d("2024-03-04")),
+				new Trecho(DIARIA, d("2024-03-18"), d("2024-03-20"))),
+				ContadorHivService.planejar(null, d("2024-03-20")));
+	}
+
+	@Test
+	void semFimTerminandoOsDiasNumaSegundaQueEhDia1() {
+		assertEquals(List.of(
+				new Trecho(MENSAL, d("2024-04-01"), null),
+				new Trecho(SEMANAL, d("2024-03-11"), d("2024-04-01")),
+				new Trecho(DIARIA, d("2024-03-05"), d("2024-03-11"))),
+				ContadorHivService.planejar(d("2024-03-05"), null));
+	}
+
+	@Test
+	void intervaloDentroDeUmMesNaoLeOMensal() {
+		assertEquals(List.of(
+				new Trecho(SEMANAL, d("2024-03-11"), d("2024-03-18")),
+				new Trecho(DIARIA, d("2024-03-05"), d("2024-03-11")),
+				new Trecho(DIARIA, d("2024-03-18"), d("2024-03-20"))),
+				ContadorHivService.planejar(d("2024-03-05"), d("2024-03-20")));
+	}
+
+	@Test
+	void intervaloDentroDeUmaSemanaLeSoDias() {
+		assertEquals(List.of(new Trecho(DIARIA, d("2024-03-12"), d("2024-03-15"))),
+				ContadorHivService.planejar(d("2024-03-12"), d("2024-03-15")));
+	}
+
+	@Test
+	void intervaloCruzandoOMesSemMesInteiro() {
+		assertEquals(List.of(
+				new Trecho(SEMANAL, d("2024-02-26"), d("2024-03-04")),
+				new Trecho(DIARIA, d("2024-02-20"), d("2024-02-26")),
+				new Trecho(DIARIA, d("2024-03-04"), d("2024-03-06"))),
+				ContadorHivService.planejar(d("2024-02-20"), d("2024-03-06")));
+	}
+
+	@Test
+	void inicioEFimNoDia1LeemSoOMensal() {
+		assertEquals(List.of(new Trecho(MENSAL, d("2024-03-01"), d("2024-05-01"))),
+				ContadorHivService.planejar(d("2024-03-01"), d("2024-05-01")));
+	}
+
+	@Test
+	void inicioEFimNumaSegundaNaoLeemDiasNessasPontas() {
+		assertEquals(List.of(
+				new Trecho(MENSAL, d("2024-02-01"), d("2024-04-01")),
+				new Trecho(SEMANAL, d("2024-01-08"), d("2024-01-29")),
+				new Trecho(DIARIA, d("2024-01-29"), d("2024-02-01")),
+				new Trecho(SEMANAL, d("2024-04-01"), d("2024-04-15"))),
+				ContadorHivService.planejar(d("2024-01-08"), d("2024-04-15")));
+	}
+
+	@Test
+	void intervaloVazioNaoLeNada() {
+		assertEquals(List.of(), ContadorHivService.planejar(d("2024-03-05"), d("2024-03-05")));
+	}
+
+	@Test
+	void planoCobreCadaDiaDoIntervaloUmaVez() {
+		Random random = new Random(42);
+		LocalDate base = d("2023-01-01");
+		for (int caso = 0; caso < 2000; caso++) {
+			LocalDate inicio = base.plusDays(random.nextInt(1100));
+			LocalDate fim = inicio.plusDays(random.nextInt(400));
+
+			List<LocalDate> esperado = inicio.datesUntil(fim).toList();
+			List<LocalDate> coberto = new ArrayList<>();
+			for (Trecho trecho : ContadorHivService.planejar(inicio, fim)) {
+				LocalDate periodo = trecho.inicio();
+				while (periodo.isBefore(trecho.fim())) {
+					LocalDate proximo = switch (trecho.tabela()) {
+						case MENSAL -> periodo.plusMonths(1);
+						case SEMANAL -> periodo.plusWeeks(1);
+						default -> periodo.plusDays(1);
+					};
+					coberto.addAll(periodo.datesUntil(proximo).toList());
+					periodo = proximo;
+				}
+			}
+			coberto.sort(null);
+			assertEquals(esperado, coberto, inicio + " a " + fim);
+		}
+	}
+
+	private static LocalDate d(String data) {
+		return LocalDate.parse(data);
+	}
+}
@@ -0,0 +1,177 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.regras.MotorRegrasRiscoHiv;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem.TriagemService;
+
+class HemogramaFhirParserServiceTest {
+
+	// Searchset com: CBC com "component" antes de "code" e resourceType no fim; Observation que não é CBC;
+	// CBC sem id com fullUrl versionado depois do resource; CBC sem id com fullUrl urn; Patient
+	private static final String BUNDLE = """
+		{
+		  "resourceType": "Bundle",
+		  "type": "searchset",
+		  "entry": [
+		    {
+		      "fullUrl": "http://servidor/fhir/Observation/cbc1",
+		      "resource": {
+		        "id": "cbc1",
+		        "meta": {"versionId": "2"},
+		        "component": [
+		          {"code": {"coding": [{"system": "http://loinc.org", "code": "6690-2"}]},
+		           "valueQuantity": {"value": 3200, "unit": "/uL"}},
+		          {"code": {"coding": [{"system": "http://loinc.org", "code": "718-7"}]},
+		           "valueQuantity": {"value": 10.5, "unit": "g/dL"}},
+		          {"code": {"coding": [{"system": "http://loinc.org", "code": "736-9"}]},
+		           "valueQuantity": {"value": 18, "unit": "%"}},
+		          {"code": {"coding": [{"system": "http://loinc.org", "code": "9999-9"}]},
+		           "valueQuantity": {"value": 1, "unit": "x"}},
+		          {"code": {"coding": [{"system": "http://loinc.org", "code": "777-3"}]}}
+		        ],
+		        "code": {"coding": [{"system": "http://loinc.org", "code": "58410-2"}]},
+		        "status": "final",
+		        "effectiveDateTime": "2024-03-05T10:15:00-03:00",
+		        "resourceType": "Observation"
+		      }
+		    },
+		    {
+		      "fullUrl": "http://servidor/fhir/Observation/glic1",
+		      "resource": {
+		        "resourceType": "Observation",
+		        "id": "glic1",
+		        "status": "final",
+		        "code": {"coding": [{"system": "http://loinc.org", "code": "2345-7", "display": "Glucose"}]},
+		        "component": [
+		          {"code": {"coding": [{"system": "http://loinc.org", "code": "6690-2"}]},
+		           "valueQuantity": {"value": 1000, "unit": "/uL"}}
+		        ]
+		      }
+		    },
+		    {
+		      "resource": {
+		        "resourceType": "Observation",
+		        "status": "final",
+		        "code": {"coding": [{"display": "Hemograma"}]},
+		        "issued": "2024-03-06T08:00:00.000Z",
+		        "component": [
+		          {"code": {"coding": [{"system": "http://loinc.org", "code": "26464-8"}]},
+		           "valueQuantity": {"value": 7.5, "unit": "10*3/uL"}},
+		          {"code": {"coding": [{"system": "http://loinc.org", "code": "777-3"}]},
+		           "valueQuantity": {"value": 90, "unit": "10*3/uL"}}
+		        ]
+		      },
+		      "fullUrl": "http://servidor/fhir/Observation/cbc3/_history/7"
+		    },
+		    {
+		      "fullUrl": "urn:uuid:0b4b9c2e-6c1e-4a57-9a53-3f5f2f1f6a10",
+		      "resource": {
+		        "resourceType": "Observation",
+		        "status": "final",
+		        "code": {"coding": [{"system": "http://loinc.org", "code": "57021-8"}]},
+		        "component": [
+		          {"code": {"coding": [{"system": "http://loinc.org", "code": "718-7"}]},
+		           "valueQuantity": {"value": 13.2, "unit": "g/dL"}}
+		        ]
+		      }
+		    },
+		    {
+		      "fullUrl": "http://servidor/fhir/Patient/p1",
+		      "resource": {"resourceType": "Patient", "id": "p1"}
+		    }
+		  ]
+		}
+		""";
+
+	@Test
+	void streamingEHapiProduzemOsMesmosHemogramas() {
+		List<String> lidasStreaming = new ArrayList<>();
+		List<String> lidasHapi = new ArrayList<>();
+		List<HemogramaCompacto> streaming = parser(true).processarNotificacaoFhir(BUNDLE, lidasStreaming::add);
+		List<HemogramaCompacto> hapi = parser(false).processarNotificacaoFhir(BUNDLE, lidasHapi::add);
+
+		assertEquals(3, streaming.size());
+		assertEquals(hapi.size(), streaming.size());
+		for (int i = 0; i < hapi.size(); i++) {
+			assertMesmoHemograma(hapi.get(i), streaming.get(i));
+		}
+		assertEquals(lidasHapi, lidasStreaming);
+	}
+
+	@Test
+	void componentesAntesDoCodigoSaoMapeados() {
+		HemogramaCompacto cbc = parser(true).processarNotificacaoFhir(BUNDLE).get(0);
+
+		assertEquals(3200, cbc.valor(Analito.LEUCOCITOS));
+		assertEquals(10.5, cbc.valor(Analito.HEMOGLOBINA));
+		assertEquals(18, cbc.valor(Analito.LINFOCITOS));
+		// Componente sem valueQuantity não é mapeado
+		assertFalse(cbc.possui(Analito.PLAQUETAS));
+		assertTrue(cbc.isRiscoHiv());
+		assertEquals(3, Integer.bitCount(cbc.getMotivosRisco()));
+	}
+
+	@Test
+	void observationQueNaoEhCbcEhLidaMasDescartada() {
+		List<String> lidas = new ArrayList<>();
+		List<HemogramaCompacto> hemogramas = parser(true).processarNotificacaoFhir(BUNDLE, lidas::add);
+
+		assertTrue(lidas.contains("Observation/glic1"));
+		assertTrue(hemogramas.stream().noneMatch(h -> "Observation/glic1".equals(h.getObservationId())));
+	}
+
+	@Test
+	void idsNormalizadosPeloIdOuPeloFullUrl() {
+		List<String> ids = parser(true).processarNotificacaoFhir(BUNDLE).stream()
+				.map(HemogramaCompacto::getObservationId)
+				.toList();
+
+		assertEquals(List.of(
+				"Observation/cbc1/_history/2",
+				"Observation/cbc3/_history/7",
+				"urn:uuid:0b4b9c2e-6c1e-4a57-9a53-3f5f2f1f6a10"), ids);
+	}
+
+	private static void assertMesmoHemograma(HemogramaCompacto esperado, HemogramaCompacto obtido) {
+		String id = esperado.getObservationId();
+		assertEquals(id, obtido.getObservationId());
+		assertEquals(esperado.getDataColetaMillis(), obtido.getDataColetaMillis(), id);
+		assertEquals(esperado.getPresentes(), obtido.getPresentes(), id);
+		for (Analito analito : Analito.values()) {
+			if (esperado.possui(analito)) {
+				assertEquals(esperado.valor(analito), obtido.valor(analito), id + " " + analito);
+				assertEquals(esperado.unidade(analito), obtido.unidade(analito), id + " " + analito);
+			}
+		}
+		assertEquals(esperado.isRiscoHiv(), obtido.isRiscoHiv(), id);
+		assertEquals(esperado.getMotivosRisco(), obtido.getMotivosRisco(), id);
+	}
+
+	private static HemogramaFhirParserService parser(boolean streaming) {
+		MotorRegrasRiscoHiv motor = new MotorRegrasRiscoHiv();
+		ReflectionTestUtils.setField(motor, "resourceLoader", new DefaultResourceLoader());
+		ReflectionTestUtils.setField(motor, "arquivoRegras", "classpath:regras/risco-hiv.json");
+		motor.inicializar();
+
+		HemogramaFhirParserService parser = new HemogramaFhirParserService();
+		ReflectionTestUtils.setField(parser, "motorRegrasRiscoHiv", motor);
+		ReflectionTestUtils.setField(parser, "streamingParser", new HemogramaFhirStreamingParser());
+		ReflectionTestUtils.setField(parser, "triagemService", mock(TriagemService.class));
+		ReflectionTestUtils.setField(parser, "contadorHivService", mock(ContadorHivService.class));
+		ReflectionTestUtils.setField(parser, "streamingEnabled", streaming);
+		return parser;
+	}
+}
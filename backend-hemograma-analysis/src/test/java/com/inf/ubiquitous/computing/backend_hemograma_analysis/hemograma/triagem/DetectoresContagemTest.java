@@ -0,0 +1,48 @@
+package com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.triagem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.Analito;
+import com.inf.ubiquitous.computing.backend_hemograma_analysis.hemograma.model.HemogramaCompacto;
+
+class DetectoresContagemTest {
+
+	private final DetectorPlaquetopenia plaquetopenia = new DetectorPlaquetopenia();
+	private final DetectorNeutropenia neutropenia = new DetectorNeutropenia();
+
+	@Test
+	void plaquetasMuitoBaixasEmMicrolitroSaoGraves() {
+		assertEquals(GrauSeveridade.GRAVE.ordinal(), plaquetopenia.avaliar(com(Analito.PLAQUETAS, 1500, "/µL")));
+	}
+
+	@Test
+	void plaquetasEmMilharesSaoConvertidasPelaUnidade() {
+		assertEquals(GrauSeveridade.MODERADO.ordinal(), plaquetopenia.avaliar(com(Analito.PLAQUETAS, 85, "10*3/uL")));
+		assertEquals(GrauSeveridade.LEVE.ordinal(), plaquetopenia.avaliar(com(Analito.PLAQUETAS, 120, "10^9/L")));
+		assertEquals(0, plaquetopenia.avaliar(com(Analito.PLAQUETAS, 250, "x10³/μL")));
+		assertEquals(0, plaquetopenia.avaliar(com(Analito.PLAQUETAS, 250000, "/µL")));
+	}
+
+	@Test
+	void ancMuitoBaixoEmMicrolitroEGrave() {
+		assertEquals(GrauSeveridade.GRAVE.ordinal(), neutropenia.avaliar(com(Analito.NEUTROFILOS_ABS, 80, "/µL")));
+		assertEquals(GrauSeveridade.GRAVE.ordinal(), neutropenia.avaliar(com(Analito.NEUTROFILOS_ABS, 80, null)));
+	}
+
+	@Test
+	void ancEmMilharesECalculadoPelosLeucocitos() {
+		assertEquals(GrauSeveridade.LEVE.ordinal(), neutropenia.avaliar(com(Analito.NEUTROFILOS_ABS, 1.2, "10*3/uL{cells}")));
+
+		HemogramaCompacto h = com(Analito.LEUCOCITOS, 2.0, "10*3/uL");
+		h.definir(Analito.NEUTROFILOS, 40, "%");
+		assertEquals(GrauSeveridade.MODERADO.ordinal(), neutropenia.avaliar(h));
+	}
+
+	private static HemogramaCompacto com(Analito analito, double valor, String unidade) {
+		HemogramaCompacto h = new HemogramaCompacto();
+		h.definir(analito, valor, unidade);
+		return h;
+	}
+}
@@ -2,11 +2,16 @@ package com.inf.ubiquitous.computing.generator;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpResponse;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,7 +54,7 @@ public class HemogramaGenerator {
         this.patientsPerBatch = Integer.parseInt(System.getenv().getOrDefault("PATIENTS_PER_BATCH", "5"));
         this.hivRiskPercentage = Integer.parseInt(System.getenv().getOrDefault("HIV_RISK_PERCENTAGE", "20"));
         
-        this.httpClient = HttpClients.createDefault();
+        this.httpClient = criarHttpClient();
         this.objectMapper = new ObjectMapper();
         
         logger.info("Gerador de hemogramas iniciado");
@@ -57,6 +62,35 @@ public class HemogramaGenerator {
         logger.info("Intervalo: {}s, Lote: {}, Risco HIV: {}%", generationInterval, patientsPerBatch, hivRiskPercentage);
     }
 
+    /**
+     * Cliente com pool e keep-alive para o HAPI (mesmos parâmetros do backend, via variáveis de ambiente)
+     */
+    private static CloseableHttpClient criarHttpClient() {
+        int maxTotal = Integer.parseInt(System.getenv().getOrDefault("HAPI_HTTP_MAX_TOTAL", "10"));
+        int maxPorRota = Integer.parseInt(System.getenv().getOrDefault("HAPI_HTTP_MAX_PER_ROUTE", "10"));
+        long connectTimeoutMs = Long.parseLong(System.getenv().getOrDefault("HAPI_HTTP_CONNECT_TIMEOUT_MS", "2000"));
+        long responseTimeoutMs = Long.parseLong(System.getenv().getOrDefault("HAPI_HTTP_RESPONSE_TIMEOUT_MS", "10000"));
+        long keepAliveMs = Long.parseLong(System.getenv().getOrDefault("HAPI_HTTP_KEEP_ALIVE_MS", "30000"));
+
+        return HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxTotal)
+                        .setMaxConnPerRoute(maxPorRota)
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                                .setSocketTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                                .build())
+                        .build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAliveMs))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(keepAliveMs * 2))
+                .build();
+    }
+
     /**
      * Gera um hemograma FHIR Observation sintético
      * Baseado no método do SyntheticHemogramGeneratorService
@@ -232,6 +266,11 @@ public class HemogramaGenerator {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             logger.info("Encerrando gerador de hemogramas");
             scheduler.shutdown();
+            try {
+                httpClient.close();
+            } catch (Exception e) {
+                logger.warn("Erro ao fechar cliente HTTP: {}", e.getMessage());
+            }
         }));
     }
 
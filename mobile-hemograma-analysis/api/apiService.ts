@@ -27,7 +27,16 @@ export const isFirstUser = () => apiClient.get('/api/auth/is-first-user');
 export const registerFirstUser = (data: any) => apiClient.post('/api/auth/register-first-user', data);
 export const login = (data: any) => apiClient.post('/api/auth/login', data);
 
-export const getRecentHemogramas = () => apiClient.get('/api/hemogramas/recentes');
+// Paginação por cursor: o header 'x-proximo-cursor' da resposta vai no parâmetro 'antes' da próxima chamada
+export const getRecentHemogramas = (antes?: string, limite = 100) =>
+  apiClient.get('/api/hemogramas/recentes', { params: { limite, antes } });
+
+// Listagens paginadas por cursor: repassar 'proximoCursor' do corpo da resposta (null na última página)
+export const getContadoresHiv = (filtros: Record<string, string> = {}, cursor?: string, size = 20) =>
+  apiClient.get('/api/estatisticas/lista', { params: { ...filtros, size, cursor, keyset: true } });
+
+export const getNotificacoes = (cursor?: string, size = 20) =>
+  apiClient.get('/api/notificacao', { params: { size, cursor, keyset: true } });
 
 export const createUser = (userData: any) => apiClient.post('/users', userData);
 